@@ -0,0 +1,52 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.gson.Gson;
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/** Container class for the comment cache's counters on this instance */
+class CacheStats {
+  private long localHits; // Pages served from this instance's memory
+  private long memcacheHits; // Pages served from Memcache
+  private long misses; // Pages read from the comment store
+  private double hitRate; // The fraction of pages not read from the comment store
+
+  public CacheStats(long localHits, long memcacheHits, long misses) {
+    this.localHits = localHits;
+    this.memcacheHits = memcacheHits;
+    this.misses = misses;
+    long total = localHits + memcacheHits + misses;
+    this.hitRate = total == 0 ? 0 : (double) (localHits + memcacheHits) / total;
+  }
+}
+
+/** Servlet that reports how often GET /data was answered without reading the comment store */
+@WebServlet("/data/cache-stats")
+public class CommentCacheStatsServlet extends HttpServlet {
+  private static final Gson GSON = new Gson();
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    CommentPageCache cache = DataServlet.CACHE;
+    CacheStats stats = new CacheStats(cache.localHits(), cache.memcacheHits(), cache.misses());
+    response.setContentType("application/json;");
+    response.getWriter().println(GSON.toJson(stats));
+  }
+}
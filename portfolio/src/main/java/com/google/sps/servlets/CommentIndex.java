@@ -0,0 +1,251 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over the nickname and text of every comment, so searches never touch
+ * the comment store. Comments are added as they are stored, and each word in a query matches any
+ * indexed word it is a prefix of, so results can update as someone types.
+ *
+ * <p>Every query word must match. Results are ranked by tf-idf, with words matched only by prefix
+ * counting for half as much as exact ones. Ties are listed in the order comments were added to
+ * the index, which for comments indexed together is the order of the list they came in.
+ *
+ * <p>A search only looks at the comments that match its words, not at every comment indexed.
+ *
+ * <p>CommentIndex is thread-safe. Searches run alongside each other and only wait for adds.
+ */
+class CommentIndex {
+  private static final int MAX_QUERY_WORDS = 8;
+  private static final float PREFIX_WEIGHT = 0.5f;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final List<FormData> comments = new ArrayList<FormData>();
+  private final TreeMap<String, Postings> postingsByWord = new TreeMap<String, Postings>();
+
+  /** Indexes comments, which must not have been added before */
+  public void addAll(List<FormData> newComments) {
+    lock.writeLock().lock();
+    try {
+      for (FormData comment : newComments) {
+        add(comment);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Drops every comment from the index */
+  public void clear() {
+    lock.writeLock().lock();
+    try {
+      comments.clear();
+      postingsByWord.clear();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Returns the number of comments indexed */
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return comments.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the best limit comments matching every word of query, along with how many matched in
+   * all. A query without words matches nothing.
+   */
+  public SearchResults search(String query, int limit) {
+    // A word given twice only has to match once.
+    List<String> words = new ArrayList<String>(new LinkedHashSet<String>(tokenize(query)));
+    if (words.size() > MAX_QUERY_WORDS) {
+      throw new IllegalArgumentException("q can have at most " + MAX_QUERY_WORDS + " words");
+    }
+
+    lock.readLock().lock();
+    try {
+      return search(words, limit);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private SearchResults search(List<String> words, int limit) {
+    if (words.isEmpty()) {
+      return new SearchResults(Collections.<FormData>emptyList(), 0);
+    }
+
+    // Only comments matching the first word can match them all, so scores are only kept for
+    // those, and dropped as soon as a comment misses a word.
+    Map<Integer, Candidate> candidates = new HashMap<Integer, Candidate>();
+    for (int i = 0; i < words.size(); i++) {
+      String word = words.get(i);
+      for (Map.Entry<String, Postings> entry : withPrefix(word).entrySet()) {
+        Postings postings = entry.getValue();
+        float weight = idf(postings.size) * (entry.getKey().equals(word) ? 1 : PREFIX_WEIGHT);
+        for (int p = 0; p < postings.size; p++) {
+          Candidate candidate = candidates.get(postings.docs[p]);
+          if (candidate == null) {
+            if (i > 0) {
+              continue;
+            }
+            candidate = new Candidate(postings.docs[p]);
+            candidates.put(candidate.doc, candidate);
+          }
+          candidate.matched = i + 1;
+          candidate.score += weight * postings.counts[p];
+        }
+      }
+
+      final int matchedAll = i + 1;
+      candidates.values().removeIf(candidate -> candidate.matched != matchedAll);
+      if (candidates.isEmpty()) {
+        break;
+      }
+    }
+
+    // Keep the best limit matches, with the worst of them on top to be replaced.
+    Comparator<Candidate> byRank = new Comparator<Candidate>() {
+      @Override
+      public int compare(Candidate a, Candidate b) {
+        int byScore = Float.compare(a.score, b.score);
+        return byScore != 0 ? byScore : Integer.compare(b.doc, a.doc);
+      }
+    };
+    PriorityQueue<Candidate> best =
+        new PriorityQueue<Candidate>(Math.min(limit, candidates.size()) + 1, byRank);
+    for (Candidate candidate : candidates.values()) {
+      if (best.size() < limit || byRank.compare(candidate, best.peek()) > 0) {
+        best.add(candidate);
+        if (best.size() > limit) {
+          best.poll();
+        }
+      }
+    }
+
+    FormData[] results = new FormData[best.size()];
+    for (int i = results.length - 1; i >= 0; i--) {
+      results[i] = comments.get(best.poll().doc);
+    }
+    return new SearchResults(Arrays.asList(results), candidates.size());
+  }
+
+  /** Returns the postings of every indexed word starting with prefix */
+  private NavigableMap<String, Postings> withPrefix(String prefix) {
+    // No word after prefix + Character.MAX_VALUE can start with prefix.
+    return postingsByWord.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+  }
+
+  private float idf(int documentFrequency) {
+    return (float) Math.log(1 + (double) comments.size() / documentFrequency);
+  }
+
+  private void add(FormData comment) {
+    int doc = comments.size();
+    comments.add(comment);
+
+    Map<String, Integer> counts = new HashMap<String, Integer>();
+    for (String word : tokenize(comment.getNickname())) {
+      counts.merge(word, 1, Integer::sum);
+    }
+    for (String word : tokenize(comment.getComment())) {
+      counts.merge(word, 1, Integer::sum);
+    }
+
+    for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+      Postings postings = postingsByWord.get(entry.getKey());
+      if (postings == null) {
+        postings = new Postings();
+        postingsByWord.put(entry.getKey(), postings);
+      }
+      postings.add(doc, entry.getValue());
+    }
+  }
+
+  /** Splits text into lowercase runs of letters and digits */
+  static List<String> tokenize(String text) {
+    List<String> words = new ArrayList<String>();
+    if (text == null) {
+      return words;
+    }
+
+    String lower = text.toLowerCase(Locale.ROOT);
+    int start = -1;
+    for (int i = 0; i < lower.length(); ) {
+      int codePoint = lower.codePointAt(i);
+      if (Character.isLetterOrDigit(codePoint)) {
+        if (start < 0) {
+          start = i;
+        }
+      } else if (start >= 0) {
+        words.add(lower.substring(start, i));
+        start = -1;
+      }
+      i += Character.charCount(codePoint);
+    }
+    if (start >= 0) {
+      words.add(lower.substring(start));
+    }
+    return words;
+  }
+
+  /** A comment that has matched every query word so far */
+  private static class Candidate {
+    private final int doc;
+    private int matched; // How many query words it has matched
+    private float score;
+
+    Candidate(int doc) {
+      this.doc = doc;
+    }
+  }
+
+  /** The comments a word appears in, in the order they were added, and how often it does */
+  private static class Postings {
+    private int[] docs = new int[2];
+    private int[] counts = new int[2];
+    private int size;
+
+    void add(int doc, int count) {
+      if (size == docs.length) {
+        docs = Arrays.copyOf(docs, size * 2);
+        counts = Arrays.copyOf(counts, size * 2);
+      }
+      docs[size] = doc;
+      counts[size] = count;
+      size++;
+    }
+  }
+}
@@ -0,0 +1,36 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import java.util.List;
+
+/** Container class for one page of comments */
+class CommentPage {
+  private List<FormData> comments; // The comments on this page
+  private String nextCursor; // Where the next page starts, or null if this is the last page
+
+  public CommentPage(List<FormData> comments, String nextCursor) {
+    this.comments = comments;
+    this.nextCursor = nextCursor;
+  }
+
+  List<FormData> getComments() {
+    return comments;
+  }
+
+  String getNextCursor() {
+    return nextCursor;
+  }
+}
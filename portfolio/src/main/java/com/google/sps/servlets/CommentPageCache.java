@@ -0,0 +1,168 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.memcache.Expiration;
+import com.google.appengine.api.memcache.MemcacheService;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read-through cache of serialized comment pages, keyed by page size and cursor. Pages are kept in
+ * process, and optionally in Memcache so that every instance shares them.
+ *
+ * <p>A new comment can move every page, so writes invalidate the whole cache. With Memcache, the
+ * cache keeps a version number there: a write bumps it, and an instance that sees it change drops
+ * its own pages. Pages also expire after a minute, since a Datastore query run just after a write
+ * may not see the write yet.
+ */
+class CommentPageCache {
+  private static final int MAX_LOCAL_PAGES = 256;
+  private static final int EXPIRY_SECONDS = 60;
+  private static final long EXPIRY_MILLIS = EXPIRY_SECONDS * 1000L;
+  private static final String VERSION_KEY = "comments-version";
+
+  private final MemcacheService memcache; // null when only caching in process
+  private final Map<String, Page> pages = new LinkedHashMap<String, Page>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Page> eldest) {
+      return size() > MAX_LOCAL_PAGES;
+    }
+  };
+
+  private long generation; // Bumped whenever cached pages are dropped
+  private long version; // The last version seen in Memcache
+
+  private final LongAdder localHits = new LongAdder();
+  private final LongAdder memcacheHits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  public CommentPageCache(MemcacheService memcache) {
+    this.memcache = memcache;
+  }
+
+  /** Returns the cached JSON for a page, or null if it has to be read from Datastore */
+  public String get(String pageKey) {
+    Long sharedVersion = null;
+    if (memcache != null) {
+      Object value = memcache.get(VERSION_KEY);
+      sharedVersion = value instanceof Long ? (Long) value : 0L;
+    }
+
+    long now = System.currentTimeMillis();
+    long memcacheVersion;
+    synchronized (this) {
+      if (sharedVersion != null && sharedVersion != version) {
+        // Someone else changed the comments.
+        drop();
+        version = sharedVersion;
+      }
+
+      Page page = pages.get(pageKey);
+      if (page != null && page.expires > now) {
+        localHits.increment();
+        return page.json;
+      }
+      memcacheVersion = version;
+    }
+
+    if (memcache != null) {
+      Object json = memcache.get(memcacheKey(memcacheVersion, pageKey));
+      if (json instanceof String) {
+        memcacheHits.increment();
+        synchronized (this) {
+          if (memcacheVersion == version) {
+            pages.put(pageKey, new Page((String) json, now + EXPIRY_MILLIS));
+          }
+        }
+        return (String) json;
+      }
+    }
+
+    misses.increment();
+    return null;
+  }
+
+  /** Returns the current generation, to pass to put along with a page read after calling this */
+  public synchronized long generation() {
+    return generation;
+  }
+
+  /** Caches a page, unless the comments changed since generation was read */
+  public void put(String pageKey, String json, long generation) {
+    long memcacheVersion;
+    synchronized (this) {
+      if (generation != this.generation) {
+        return;
+      }
+      pages.put(pageKey, new Page(json, System.currentTimeMillis() + EXPIRY_MILLIS));
+      memcacheVersion = version;
+    }
+
+    if (memcache != null) {
+      memcache.put(memcacheKey(memcacheVersion, pageKey), json,
+          Expiration.byDeltaSeconds(EXPIRY_SECONDS));
+    }
+  }
+
+  /** Drops every cached page, here and on every other instance */
+  public void invalidate() {
+    Long sharedVersion = null;
+    if (memcache != null) {
+      // Pages are stored under the version, so bumping it orphans them all at once.
+      sharedVersion = memcache.increment(VERSION_KEY, 1, 0L);
+    }
+
+    synchronized (this) {
+      drop();
+      if (sharedVersion != null) {
+        version = sharedVersion;
+      }
+    }
+  }
+
+  public long localHits() {
+    return localHits.sum();
+  }
+
+  public long memcacheHits() {
+    return memcacheHits.sum();
+  }
+
+  public long misses() {
+    return misses.sum();
+  }
+
+  private void drop() {
+    pages.clear();
+    generation++;
+  }
+
+  private static String memcacheKey(long version, String pageKey) {
+    return "comments:" + version + ":" + pageKey;
+  }
+
+  /** A cached page and when it stops being served */
+  private static class Page {
+    private final String json;
+    private final long expires;
+
+    Page(String json, long expires) {
+      this.json = json;
+      this.expires = expires;
+    }
+  }
+}
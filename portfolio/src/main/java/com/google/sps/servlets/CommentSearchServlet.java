@@ -0,0 +1,83 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.gson.Gson;
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet that searches comments. GET returns at most {@code limit} comments containing every
+ * word of {@code q}, where the last letters of a word may be left off.
+ *
+ * <p>The index is kept in memory and only sees the comments written through this instance, so
+ * search is only offered when comments are kept in a local log file, which a single instance owns.
+ * With Datastore, other instances' comments would be missing, so GET answers 501.
+ */
+@WebServlet("/data/search")
+public class CommentSearchServlet extends HttpServlet {
+  private static final int DEFAULT_LIMIT = 20;
+  private static final int MAX_LIMIT = 100;
+
+  private static final Gson GSON = new Gson();
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String query = request.getParameter("q");
+    if (query == null) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "q is required");
+      return;
+    }
+
+    if (!DataServlet.SEARCHABLE) {
+      response.sendError(HttpServletResponse.SC_NOT_IMPLEMENTED,
+          "Search needs comments kept in a log file (portfolio.commentLog)");
+      return;
+    }
+
+    SearchResults results;
+    try {
+      results = DataServlet.INDEX.search(query, getLimit(request));
+    } catch (IllegalArgumentException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+      return;
+    }
+
+    response.setContentType("application/json;");
+    response.getWriter().println(GSON.toJson(results));
+  }
+
+  /** Reads the number of results to return from the limit parameter */
+  private int getLimit(HttpServletRequest request) {
+    String value = request.getParameter("limit");
+    if (value == null) {
+      return DEFAULT_LIMIT;
+    }
+
+    int limit;
+    try {
+      limit = Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("limit must be a number");
+    }
+    if (limit <= 0 || limit > MAX_LIMIT) {
+      throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+    }
+    return limit;
+  }
+}
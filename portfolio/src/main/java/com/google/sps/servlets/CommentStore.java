@@ -0,0 +1,36 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Where comments are kept. Pages list comments by nickname, last first, and each page hands back
+ * an opaque cursor to pass in for the page after it.
+ *
+ * <p>Implementations must be safe to read from many threads while one thread writes.
+ */
+interface CommentStore extends Closeable {
+  /** Stores comments, returning once they are durable */
+  void putAll(List<FormData> comments) throws IOException;
+
+  /**
+   * Reads up to limit comments, starting after the one cursor was returned for, or from the first
+   * if cursor is null. Throws IllegalArgumentException if cursor is not one this store returned.
+   */
+  CommentPage readPage(int limit, String cursor) throws IOException;
+}
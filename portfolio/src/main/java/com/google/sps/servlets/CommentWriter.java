@@ -0,0 +1,157 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind queue for comments. Requests hand comments to {@link #submit} and return straight
+ * away, while a single writer thread gathers whatever has queued up into one batched put.
+ *
+ * <p>The writer thread comes from the given ThreadFactory. On App Engine that must be
+ * ThreadManager's background factory, since only its threads can call App Engine APIs after a
+ * request ends, and it only works with basic or manual scaling. Without a factory, each comment
+ * is written on the thread that submits it instead.
+ *
+ * <p>The queue is bounded: when it is full, submit waits briefly and then gives up, so a slow
+ * {@link CommentStore} pushes back on clients instead of growing the heap. Batches are written one
+ * at a time and in order, and {@code afterWrite} is handed each batch once it is stored. It must
+ * not keep the list.
+ */
+class CommentWriter {
+  private static final Logger logger = Logger.getLogger(CommentWriter.class.getName());
+
+  private static final int MAX_QUEUED = 1_000;
+  private static final int MAX_BATCH = 100;
+  private static final long SUBMIT_TIMEOUT_MILLIS = 500;
+  private static final long LINGER_MILLIS = 20; // How long to wait for a batch to fill up
+  private static final int MAX_ATTEMPTS = 3;
+  private static final long RETRY_DELAY_MILLIS = 200;
+
+  private final BlockingQueue<FormData> queue = new ArrayBlockingQueue<FormData>(MAX_QUEUED);
+  private final CommentStore store;
+  private final Consumer<List<FormData>> afterWrite;
+  private final Thread writer; // Null if comments are written as they are submitted
+
+  private volatile boolean closing;
+
+  /** Writes comments on a thread from threadFactory, or on the submitting thread if it is null */
+  public CommentWriter(
+      CommentStore store, Consumer<List<FormData>> afterWrite, ThreadFactory threadFactory) {
+    this.store = store;
+    this.afterWrite = afterWrite;
+    if (threadFactory == null) {
+      this.writer = null;
+    } else {
+      this.writer = threadFactory.newThread(this::writeBatches);
+      this.writer.setName("comment-writer");
+      this.writer.start();
+    }
+  }
+
+  /**
+   * Queues a comment to be written. Returns false if the queue stayed full for the whole timeout
+   * or the writer is shutting down. Without a writer thread, writes the comment straight away and
+   * returns false if that failed.
+   */
+  public boolean submit(FormData comment) throws InterruptedException {
+    if (closing) {
+      return false;
+    } else if (writer == null) {
+      return write(Collections.singletonList(comment));
+    }
+    return queue.offer(comment, SUBMIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /** Stops accepting comments and waits up to timeoutMillis for the queued ones to be written */
+  public void close(long timeoutMillis) throws InterruptedException {
+    closing = true;
+    if (writer == null) {
+      return;
+    }
+
+    writer.join(timeoutMillis);
+    if (writer.isAlive()) {
+      logger.warning("Gave up waiting for " + queue.size() + " queued comments to be written");
+      return;
+    }
+
+    // A submit that raced with closing may have queued after the writer finished.
+    List<FormData> stragglers = new ArrayList<FormData>();
+    queue.drainTo(stragglers);
+    if (!stragglers.isEmpty()) {
+      write(stragglers);
+    }
+  }
+
+  private void writeBatches() {
+    List<FormData> batch = new ArrayList<FormData>(MAX_BATCH);
+    while (!closing || !queue.isEmpty()) {
+      try {
+        FormData first = queue.poll(LINGER_MILLIS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+
+        // Give a burst a moment to arrive, so it goes out as one put.
+        batch.add(first);
+        if (!closing && queue.size() < MAX_BATCH - 1) {
+          Thread.sleep(LINGER_MILLIS);
+        }
+        queue.drainTo(batch, MAX_BATCH - 1);
+
+        write(batch);
+      } catch (InterruptedException e) {
+        // Only close stops the writer, and it does that by setting closing.
+        Thread.currentThread().interrupt();
+        logger.log(Level.WARNING, "Comment writer interrupted", e);
+        return;
+      } catch (RuntimeException e) {
+        // Retrying won't fix a bug or a bad comment, but the writer must live on for the rest.
+        logger.log(Level.SEVERE, "Dropped " + batch.size() + " comments", e);
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  /** Writes a batch, retrying failed puts, and returns whether it was stored */
+  private boolean write(List<FormData> batch) throws InterruptedException {
+    for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+      try {
+        store.putAll(batch);
+        afterWrite.accept(batch);
+        return true;
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Writing " + batch.size() + " comments failed", e);
+        if (attempt < MAX_ATTEMPTS) {
+          Thread.sleep(RETRY_DELAY_MILLIS * attempt);
+        }
+      }
+    }
+    logger.severe("Dropped " + batch.size() + " comments after " + MAX_ATTEMPTS + " attempts");
+    return false;
+  }
+}
@@ -14,62 +14,206 @@
 
 package com.google.sps.servlets;
 
-import com.google.appengine.api.datastore.DatastoreService;
-import com.google.appengine.api.datastore.DatastoreServiceFactory;
-import com.google.appengine.api.datastore.Entity;
-import com.google.appengine.api.datastore.PreparedQuery;
-import com.google.appengine.api.datastore.Query;
-import com.google.appengine.api.datastore.Query.SortDirection;
-import java.io.IOException;
-import java.util.ArrayList;
+import com.google.appengine.api.ThreadManager;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
 import com.google.gson.Gson;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** Container class for Form data */
-class FormData {
-  private String nickname; // The alias of the commenter
-  private String comment; // The associated comment
-  
-  public FormData(String nickname, String comment) {
-    this.nickname = nickname;
-    this.comment = comment;
+/**
+ * Servlet that stores and returns comments. GET returns one page of at most {@code limit}
+ * comments, starting from the {@code cursor} returned with the previous page, so a page load only
+ * reads the comments it shows.
+ */
+@WebServlet(urlPatterns = "/data", loadOnStartup = 1)
+public class DataServlet extends HttpServlet {
+  private static final Logger logger = Logger.getLogger(DataServlet.class.getName());
+
+  private static final int DEFAULT_PAGE_SIZE = 20;
+  private static final int MAX_PAGE_SIZE = 100;
+
+  // Nicknames are indexed to sort pages by, and Datastore only indexes strings up to 1500 bytes,
+  // which 100 characters of any script stay within.
+  private static final int MAX_NICKNAME_LENGTH = 100;
+  private static final int MAX_COMMENT_LENGTH = 10_000;
+
+  private static final Gson GSON = new Gson();
+
+  private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000;
+  private static final int INDEX_PAGE_SIZE = 500; // Comments read at a time to build the index
+
+  private static final boolean USE_MEMCACHE = Boolean.getBoolean("portfolio.memcache");
+
+  /**
+   * Whether comments kept in Datastore are batched on a background thread, if set in
+   * appengine-web.xml. Comments kept in the log file always are.
+   */
+  private static final boolean BACKGROUND_WRITER = Boolean.getBoolean("portfolio.backgroundWriter");
+
+  /** A file to keep comments in instead of Datastore, if set in appengine-web.xml */
+  private static final String COMMENT_LOG = System.getProperty("portfolio.commentLog", "");
+
+  /** Pages of comments as JSON, shared through Memcache if set in appengine-web.xml */
+  static final CommentPageCache CACHE =
+      new CommentPageCache(USE_MEMCACHE ? MemcacheServiceFactory.getMemcacheService() : null);
+
+  /**
+   * Whether /data/search is offered. Its index only sees comments written through this instance,
+   * so it needs the log file, which only one instance can own.
+   */
+  static final boolean SEARCHABLE = !COMMENT_LOG.isEmpty();
+
+  /** Every stored comment, for /data/search. Empty unless SEARCHABLE */
+  static final CommentIndex INDEX = new CommentIndex();
+
+  private CommentStore store;
+  private CommentWriter writer;
+
+  /** Runs when the instance starts, since loadOnStartup is set, so search has the whole index */
+  @Override
+  public void init() throws ServletException {
+    if (COMMENT_LOG.isEmpty()) {
+      store = new DatastoreCommentStore();
+    } else {
+      try {
+        store = LogCommentStore.open(Paths.get(COMMENT_LOG));
+      } catch (IOException e) {
+        throw new ServletException("Cannot open comment log " + COMMENT_LOG, e);
+      }
+    }
+
+    if (SEARCHABLE) {
+      try {
+        buildIndex();
+      } catch (IOException e) {
+        throw new ServletException("Cannot read comments to index them", e);
+      }
+    }
+
+    // Comments are indexed and cached pages dropped once new comments are stored, not when they
+    // are queued, so a read in between can't cache a page without them.
+    writer = new CommentWriter(store, batch -> {
+      if (SEARCHABLE) {
+        INDEX.addAll(batch);
+      }
+      CACHE.invalidate();
+    }, writerThreads());
+  }
+
+  /**
+   * Returns where the writer gets its thread, or null to write on request threads. The log file is
+   * used off App Engine, where ThreadManager can't make threads, and batching is what lets its
+   * writes share an fsync, so it gets an ordinary thread.
+   */
+  private static ThreadFactory writerThreads() {
+    if (!COMMENT_LOG.isEmpty()) {
+      return Executors.defaultThreadFactory();
+    }
+    return BACKGROUND_WRITER ? ThreadManager.backgroundThreadFactory() : null;
+  }
+
+  /**
+   * Indexes the comments already stored, in the order pages list them, which is the order ties in
+   * search results start out in. From then on, the writer indexes new ones as they are written.
+   */
+  private void buildIndex() throws IOException {
+    INDEX.clear();
+    String cursor = null;
+    do {
+      CommentPage page = store.readPage(INDEX_PAGE_SIZE, cursor);
+      INDEX.addAll(page.getComments());
+      cursor = page.getNextCursor();
+    } while (cursor != null);
+    logger.info("Indexed " + INDEX.size() + " comments");
+  }
+
+  @Override
+  public void destroy() {
+    try {
+      writer.close(SHUTDOWN_TIMEOUT_MILLIS);
+      store.close();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Closing the comment store failed", e);
+    }
   }
-}
 
-/** Servlet that returns some example content. TODO: modify this file to handle comments data */
-@WebServlet("/data")
-public class DataServlet extends HttpServlet {
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    Query query = new Query("Comment").addSort("nickname", SortDirection.DESCENDING);
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    PreparedQuery results = datastore.prepare(query);
-
-    List<FormData> comments = new ArrayList<FormData>();
-    for (Entity entity : results.asIterable()) {
-      String nickname = (String) entity.getProperty("nickname");
-      String comment = (String) entity.getProperty("comment");
-      comments.add(new FormData(nickname, comment));
+    int limit;
+    try {
+      limit = getLimit(request);
+    } catch (IllegalArgumentException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+      return;
     }
 
-    response.setContentType("text/json;");
-    response.getWriter().println(new Gson().toJson(comments));
+    String cursor = request.getParameter("cursor");
+    String pageKey = limit + ":" + (cursor == null ? "" : cursor);
+    String json = CACHE.get(pageKey);
+    if (json == null) {
+      long generation = CACHE.generation();
+      CommentPage page;
+      try {
+        page = store.readPage(limit, cursor);
+      } catch (IllegalArgumentException e) {
+        // The cursor isn't one the store handed out.
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+        return;
+      }
+      json = GSON.toJson(page);
+      CACHE.put(pageKey, json, generation);
+    }
+
+    response.setContentType("application/json;");
+    response.getWriter().println(json);
   }
 
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
     String nickname = getParameter(request, "nickname", "anon");
     String comment = getParameter(request, "comment", "");
-    updateDatastore(nickname, comment);
+    if (nickname.length() > MAX_NICKNAME_LENGTH || comment.length() > MAX_COMMENT_LENGTH) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Nicknames may be at most "
+          + MAX_NICKNAME_LENGTH + " characters and comments " + MAX_COMMENT_LENGTH);
+      return;
+    }
+    if (!updateStore(nickname, comment)) {
+      // The write queue is full or the store is failing, so ask the client to back off.
+      response.setHeader("Retry-After", "1");
+      response.sendError(
+          HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many comments, try again later");
+      return;
+    }
     List<FormData> formData = Arrays.asList(new FormData(nickname, comment));
     response.setContentType("application/json;");
-    response.getWriter().println(new Gson().toJson(formData));
+    response.getWriter().println(GSON.toJson(formData));
+  }
+
+  /** Reads the page size from the limit parameter */
+  private int getLimit(HttpServletRequest request) {
+    int limit;
+    try {
+      limit = Integer.parseInt(getParameter(request, "limit", String.valueOf(DEFAULT_PAGE_SIZE)));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("limit must be a number");
+    }
+    if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+      throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+    }
+    return limit;
   }
 
   private String getParameter(HttpServletRequest request, String name, String defaultValue) {
@@ -80,11 +224,13 @@ public class DataServlet extends HttpServlet {
     return value;
   }
 
-  private void updateDatastore(String nickname, String comment) {
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    Entity commentEntity = new Entity("Comment");
-    commentEntity.setProperty("nickname", nickname);
-    commentEntity.setProperty("comment", comment);
-    datastore.put(commentEntity);
+  /** Hands the comment to the writer, returning false if it could not take it */
+  private boolean updateStore(String nickname, String comment) throws IOException {
+    try {
+      return writer.submit(new FormData(nickname, comment));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while queueing comment", e);
+    }
   }
 }
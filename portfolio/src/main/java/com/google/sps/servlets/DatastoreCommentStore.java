@@ -0,0 +1,99 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.AsyncDatastoreService;
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.SortDirection;
+import com.google.appengine.api.datastore.QueryResultList;
+import com.google.appengine.api.datastore.Text;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Keeps comments as Comment entities in Datastore, paging with Datastore cursors. The comment
+ * itself is stored as Text, which isn't indexed and so has no 1500 byte limit
+ */
+class DatastoreCommentStore implements CommentStore {
+  private final AsyncDatastoreService datastore;
+
+  public DatastoreCommentStore() {
+    this.datastore = DatastoreServiceFactory.getAsyncDatastoreService();
+  }
+
+  @Override
+  public void putAll(List<FormData> comments) throws IOException {
+    List<Entity> entities = new ArrayList<Entity>(comments.size());
+    for (FormData comment : comments) {
+      Entity commentEntity = new Entity("Comment");
+      commentEntity.setProperty("nickname", comment.getNickname());
+      commentEntity.setUnindexedProperty("comment", new Text(comment.getComment()));
+      entities.add(commentEntity);
+    }
+
+    try {
+      datastore.put(entities).get();
+    } catch (ExecutionException e) {
+      throw new IOException("Writing " + entities.size() + " comments failed", e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while writing comments");
+    }
+  }
+
+  @Override
+  public CommentPage readPage(int limit, String cursor) {
+    FetchOptions fetchOptions = FetchOptions.Builder.withLimit(limit);
+    if (cursor != null) {
+      // fromWebSafeString throws an IllegalArgumentException for a malformed cursor.
+      fetchOptions.startCursor(Cursor.fromWebSafeString(cursor));
+    }
+
+    Query query = new Query("Comment").addSort("nickname", SortDirection.DESCENDING);
+    QueryResultList<Entity> results = datastore.prepare(query).asQueryResultList(fetchOptions);
+
+    List<FormData> comments = new ArrayList<FormData>(results.size());
+    for (Entity entity : results) {
+      String nickname = (String) entity.getProperty("nickname");
+      comments.add(new FormData(nickname, getText(entity, "comment")));
+    }
+
+    // A short page means there is nothing after it.
+    String nextCursor = null;
+    if (results.size() == limit) {
+      nextCursor = results.getCursor().toWebSafeString();
+    }
+    return new CommentPage(comments, nextCursor);
+  }
+
+  @Override
+  public void close() {}
+
+  /** Reads a property stored as Text, or as a String by older versions of this servlet */
+  private static String getText(Entity entity, String name) {
+    Object value = entity.getProperty(name);
+    if (value instanceof Text) {
+      return ((Text) value).getValue();
+    }
+    return (String) value;
+  }
+}
@@ -0,0 +1,34 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+/** Container class for Form data */
+class FormData {
+  private String nickname; // The alias of the commenter
+  private String comment; // The associated comment
+  
+  public FormData(String nickname, String comment) {
+    this.nickname = nickname;
+    this.comment = comment;
+  }
+
+  String getNickname() {
+    return nickname;
+  }
+
+  String getComment() {
+    return comment;
+  }
+}
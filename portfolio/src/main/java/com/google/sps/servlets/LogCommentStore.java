@@ -0,0 +1,267 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.logging.Logger;
+
+/**
+ * Keeps comments in a local append-only file, for running the servlet without App Engine. Each
+ * comment is one line of JSON, and an index of every comment's nickname and place in the file is
+ * kept in memory, sorted the way pages list them. Reading a page walks the index and reads just
+ * the lines it needs.
+ *
+ * <p>A batch of comments is appended with one write and made durable with one fsync, so the cost
+ * of syncing is shared by everything the {@link CommentWriter} batched up. Comments are indexed
+ * only once they are synced, so a page never shows a comment that a crash could lose.
+ *
+ * <p>On opening, the file is read through to rebuild the index. A crash before a batch is synced
+ * can leave its lines cut short or garbled, so unreadable lines at the end of the file are
+ * truncated away. Unreadable lines followed by readable ones mean the file is corrupt, and opening
+ * fails. A batch that fails to be written is truncated away at once.
+ */
+class LogCommentStore implements CommentStore {
+  private static final Logger logger = Logger.getLogger(LogCommentStore.class.getName());
+
+  private static final Gson GSON = new Gson();
+
+  private final FileChannel log;
+  private final NavigableSet<IndexEntry> index = new ConcurrentSkipListSet<IndexEntry>();
+
+  private long end; // Where the next comment is appended
+  private long nextSequence; // The sequence number of the next comment
+
+  private LogCommentStore(FileChannel log) {
+    this.log = log;
+  }
+
+  /** Opens the log at path, creating it if needed, and indexes the comments already in it */
+  public static LogCommentStore open(Path path) throws IOException {
+    return open(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE));
+  }
+
+  /** Uses an open channel as the log, closing it if the comments in it can't be read */
+  static LogCommentStore open(FileChannel log) throws IOException {
+    LogCommentStore store = new LogCommentStore(log);
+    try {
+      store.recover();
+    } catch (IOException e) {
+      log.close();
+      throw e;
+    }
+    return store;
+  }
+
+  private void recover() throws IOException {
+    InputStream in = new BufferedInputStream(Channels.newInputStream(log));
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    long position = 0;
+    long unreadableFrom = -1; // Where the unreadable lines since the last readable one start
+    int b;
+    while ((b = in.read()) != -1) {
+      position++;
+      if (b != '\n') {
+        line.write(b);
+        continue;
+      }
+
+      long offset = position - line.size() - 1;
+      FormData comment = tryParse(line.toByteArray());
+      if (comment == null) {
+        if (unreadableFrom < 0) {
+          unreadableFrom = offset;
+        }
+      } else if (unreadableFrom >= 0) {
+        throw new IOException("Corrupt comment in the log at " + unreadableFrom);
+      } else {
+        index.add(new IndexEntry(comment.getNickname(), nextSequence++, offset, line.size()));
+        end = position;
+      }
+      line.reset();
+    }
+
+    // Everything after the last readable line is what a crash left of an unsynced batch.
+    if (position > end) {
+      logger.warning("Dropping " + (position - end) + " bytes of unfinished comments from the log");
+      log.truncate(end);
+      log.force(true);
+    }
+  }
+
+  @Override
+  public synchronized void putAll(List<FormData> comments) throws IOException {
+    ByteArrayOutputStream lines = new ByteArrayOutputStream();
+    List<IndexEntry> entries = new ArrayList<IndexEntry>(comments.size());
+    long position = end;
+    for (FormData comment : comments) {
+      // Gson escapes line breaks inside strings, so every comment is exactly one line.
+      byte[] json = GSON.toJson(comment).getBytes(StandardCharsets.UTF_8);
+      entries.add(new IndexEntry(comment.getNickname(), nextSequence + entries.size(), position,
+          json.length));
+      lines.write(json, 0, json.length);
+      lines.write('\n');
+      position += json.length + 1;
+    }
+
+    ByteBuffer buffer = ByteBuffer.wrap(lines.toByteArray());
+    long writeAt = end;
+    try {
+      while (buffer.hasRemaining()) {
+        writeAt += log.write(buffer, writeAt);
+      }
+      log.force(false);
+    } catch (IOException e) {
+      // The next batch is written from end too. If it's shorter, what's left of this one would
+      // follow it as a garbled line, so cut it off now.
+      try {
+        log.truncate(end);
+      } catch (IOException truncateFailure) {
+        e.addSuppressed(truncateFailure);
+      }
+      throw e;
+    }
+
+    end = position;
+    nextSequence += entries.size();
+    index.addAll(entries);
+  }
+
+  @Override
+  public CommentPage readPage(int limit, String cursor) throws IOException {
+    Iterator<IndexEntry> entries;
+    if (cursor == null) {
+      entries = index.iterator();
+    } else {
+      entries = index.tailSet(IndexEntry.fromCursor(cursor), false).iterator();
+    }
+
+    List<FormData> comments = new ArrayList<FormData>(limit);
+    IndexEntry last = null;
+    while (comments.size() < limit && entries.hasNext()) {
+      last = entries.next();
+      comments.add(read(last));
+    }
+
+    // A short page means there is nothing after it.
+    String nextCursor = null;
+    if (comments.size() == limit) {
+      nextCursor = last.toCursor();
+    }
+    return new CommentPage(comments, nextCursor);
+  }
+
+  @Override
+  public void close() throws IOException {
+    log.close();
+  }
+
+  /** Reads the comment an index entry points at, using a positional read so readers can share */
+  private FormData read(IndexEntry entry) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(entry.length);
+    while (buffer.hasRemaining()) {
+      if (log.read(buffer, entry.offset + buffer.position()) < 0) {
+        throw new EOFException("Comment log ends inside the comment at " + entry.offset);
+      }
+    }
+    return parse(buffer.array(), entry.offset);
+  }
+
+  private static FormData parse(byte[] line, long offset) throws IOException {
+    FormData comment = tryParse(line);
+    if (comment == null) {
+      throw new IOException("Corrupt comment in the log at " + offset);
+    }
+    return comment;
+  }
+
+  /** Returns the comment on a line, or null if the line doesn't hold one */
+  private static FormData tryParse(byte[] line) {
+    FormData comment;
+    try {
+      comment = GSON.fromJson(new String(line, StandardCharsets.UTF_8), FormData.class);
+    } catch (JsonParseException e) {
+      return null;
+    }
+    if (comment == null || comment.getNickname() == null) {
+      return null;
+    }
+    return comment;
+  }
+
+  /**
+   * Where a comment is in the log. Entries sort by nickname, last first, and then in the order the
+   * comments were written.
+   */
+  private static class IndexEntry implements Comparable<IndexEntry> {
+    private final String nickname;
+    private final long sequence;
+    private final long offset;
+    private final int length; // Not counting the line break
+
+    IndexEntry(String nickname, long sequence, long offset, int length) {
+      this.nickname = nickname;
+      this.sequence = sequence;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    /** Returns a cursor for the page starting after this entry */
+    String toCursor() {
+      byte[] nicknameBytes = nickname.getBytes(StandardCharsets.UTF_8);
+      return Base64.getUrlEncoder().withoutPadding().encodeToString(nicknameBytes) + "."
+          + sequence;
+    }
+
+    /** Returns an entry to search from, which sorts where the one the cursor came from did */
+    static IndexEntry fromCursor(String cursor) {
+      int dot = cursor.lastIndexOf('.');
+      if (dot < 0) {
+        throw new IllegalArgumentException("Malformed cursor");
+      }
+      // Both decoders throw IllegalArgumentExceptions for malformed input.
+      byte[] nicknameBytes = Base64.getUrlDecoder().decode(cursor.substring(0, dot));
+      long sequence = Long.parseLong(cursor.substring(dot + 1));
+      return new IndexEntry(new String(nicknameBytes, StandardCharsets.UTF_8), sequence, 0, 0);
+    }
+
+    @Override
+    public int compareTo(IndexEntry other) {
+      int byNickname = other.nickname.compareTo(nickname);
+      if (byNickname != 0) {
+        return byNickname;
+      }
+      return Long.compare(sequence, other.sequence);
+    }
+  }
+}
@@ -0,0 +1,36 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import java.util.List;
+
+/** Container class for the best comments matching a search */
+class SearchResults {
+  private List<FormData> comments; // The best matches, best first
+  private int matches; // How many comments matched in all
+
+  public SearchResults(List<FormData> comments, int matches) {
+    this.comments = comments;
+    this.matches = matches;
+  }
+
+  List<FormData> getComments() {
+    return comments;
+  }
+
+  int getMatches() {
+    return matches;
+  }
+}
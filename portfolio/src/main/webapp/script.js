@@ -31,14 +31,62 @@ const addCommentElement = (comment) => {
   return commentElement;
 }
 
+const COMMENTS_PAGE_SIZE = 20;
+const COMMENTS_SCROLL_MARGIN = 100; // Pixels from the bottom at which the next page is fetched.
+
+/* Where the next page of comments starts. null once every page has been fetched. */
+let nextCommentsCursor = null;
+/* The page being fetched, if any. Only one is in flight at a time, so pages arrive in order. */
+let commentsRequest = null;
+/* Bumped on every refresh, so pages requested before it are dropped. */
+let commentsGeneration = 0;
+
+const fetchCommentsPage = (cursor) => {
+  const params = new URLSearchParams({limit: COMMENTS_PAGE_SIZE});
+  if (cursor) params.set('cursor', cursor);
+  return fetch('/data?' + params).then(data => data.json());
+};
+
+const requestCommentsPage = (cursor) => {
+  const generation = commentsGeneration;
+  commentsRequest = fetchCommentsPage(cursor)
+  .then(page => {
+    if (generation !== commentsGeneration) return;
+    commentsRequest = null;
+    appendCommentsPage(page);
+  })
+  .catch(error => {
+    console.log(error);
+    if (generation === commentsGeneration) commentsRequest = null;
+  });
+};
+
+/* Appends a page to the container, then keeps fetching until the container can scroll. */
+const appendCommentsPage = (page) => {
+  const container = document.getElementById('comments-container');
+  page.comments.forEach(comment => container.appendChild(addCommentElement(comment)));
+  nextCommentsCursor = page.nextCursor || null;
+  if (container.scrollHeight <= container.clientHeight) loadMoreComments();
+};
+
 const getComments = () => {
-  fetch('/data')
-  .then(data => data.json())
-  .then(comments => {
-    console.log(comments);
-    const container = document.getElementById('comments-container');
-    container.innerHTML = ''; // First Clear Children
-    comments.forEach(comment => container.appendChild(addCommentElement(comment)));
+  const container = document.getElementById('comments-container');
+  container.innerHTML = ''; // First Clear Children
+  commentsGeneration++;
+  nextCommentsCursor = null;
+  requestCommentsPage(null);
+};
+
+const loadMoreComments = () => {
+  if (commentsRequest !== null || nextCommentsCursor === null) return;
+  requestCommentsPage(nextCommentsCursor);
+};
+
+const initialiseCommentScrolling = () => {
+  const container = document.getElementById('comments-container');
+  container.addEventListener('scroll', () => {
+    const remaining = container.scrollHeight - container.scrollTop - container.clientHeight;
+    if (remaining < COMMENTS_SCROLL_MARGIN) loadMoreComments();
   });
 };
 
@@ -91,7 +139,8 @@ const onload = () => {
     reject(false);
   })
   .then(_ => initialiseNavigation())
-  .then(_ => initialiseCommentRefreshButton());
+  .then(_ => initialiseCommentRefreshButton())
+  .then(_ => initialiseCommentScrolling());
 };
 
 window.onload = () => onload();
@@ -0,0 +1,111 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class CommentIndexTest {
+  private static final FormData ANN = new FormData("Ann", "Cats are great");
+  private static final FormData BOB = new FormData("Bob", "I like catalogs");
+  private static final FormData CAL = new FormData("Cal", "Dogs and cats");
+  private static final FormData DEE = new FormData("Dee", "Dogs only");
+
+  private static CommentIndex index(FormData... comments) {
+    CommentIndex index = new CommentIndex();
+    index.addAll(Arrays.asList(comments));
+    return index;
+  }
+
+  private static List<String> nicknames(SearchResults results) {
+    List<String> nicknames = new ArrayList<>();
+    for (FormData comment : results.getComments()) {
+      nicknames.add(comment.getNickname());
+    }
+    return nicknames;
+  }
+
+  @Test
+  public void tokenizeSplitsOnAnythingButLettersAndDigits() {
+    Assert.assertEquals(Arrays.asList("héllo", "world", "42", "x"),
+        CommentIndex.tokenize("  HÉLLO, world!42 x"));
+    Assert.assertEquals(Arrays.asList(), CommentIndex.tokenize(null));
+  }
+
+  @Test
+  public void nicknamesAreSearched() {
+    SearchResults results = index(ANN, BOB).search("bob", 10);
+
+    Assert.assertEquals(Arrays.asList("Bob"), nicknames(results));
+  }
+
+  @Test
+  public void exactMatchesRankAbovePrefixMatches() {
+    // "cat" is a prefix of "cats" and "catalogs", but Eve's comment says it exactly.
+    FormData exact = new FormData("Eve", "my cat");
+    SearchResults results = index(BOB, ANN, exact).search("cat", 10);
+
+    Assert.assertEquals(Arrays.asList("Eve", "Bob", "Ann"), nicknames(results));
+  }
+
+  @Test
+  public void everyWordMustMatch() {
+    SearchResults results = index(ANN, BOB, CAL, DEE).search("dog cat", 10);
+
+    Assert.assertEquals(Arrays.asList("Cal"), nicknames(results));
+    Assert.assertEquals(1, results.getMatches());
+  }
+
+  @Test
+  public void unmatchedWordMatchesNothing() {
+    SearchResults results = index(ANN, BOB, CAL, DEE).search("cat zebra", 10);
+
+    Assert.assertEquals(Arrays.asList(), nicknames(results));
+    Assert.assertEquals(0, results.getMatches());
+  }
+
+  @Test
+  public void limitCapsCommentsButNotMatches() {
+    SearchResults results = index(ANN, BOB, CAL, DEE).search("cat", 2);
+
+    Assert.assertEquals(2, results.getComments().size());
+    Assert.assertEquals(3, results.getMatches());
+  }
+
+  @Test
+  public void tiesAreListedInTheOrderCommentsWereAdded() {
+    CommentIndex index = index(new FormData("Ann", "hello"), new FormData("Bob", "hello"));
+    index.addAll(Arrays.asList(new FormData("Cal", "hello")));
+
+    SearchResults results = index.search("hello", 10);
+
+    Assert.assertEquals(Arrays.asList("Ann", "Bob", "Cal"), nicknames(results));
+  }
+
+  @Test
+  public void queryWithoutWordsMatchesNothing() {
+    SearchResults results = index(ANN, BOB).search(" ?! ", 10);
+
+    Assert.assertEquals(Arrays.asList(), nicknames(results));
+    Assert.assertEquals(0, results.getMatches());
+  }
+}
@@ -0,0 +1,286 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class LogCommentStoreTest {
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  /** A log file that can be made to fail part way through a write, like a full disk */
+  private static class FailingChannel extends FileChannel {
+    private final FileChannel file;
+    private boolean failWrites;
+
+    FailingChannel(Path path) throws IOException {
+      file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    @Override
+    public int write(ByteBuffer src, long position) throws IOException {
+      if (!failWrites) {
+        return file.write(src, position);
+      }
+      // Write the first half, then give up.
+      ByteBuffer half = src.duplicate();
+      half.limit(src.position() + src.remaining() / 2);
+      file.write(half, position);
+      throw new IOException("No space left on device");
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+      return file.read(dst);
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+      return file.read(dsts, offset, length);
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+      return file.write(src);
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+      return file.write(srcs, offset, length);
+    }
+
+    @Override
+    public long position() throws IOException {
+      return file.position();
+    }
+
+    @Override
+    public FileChannel position(long newPosition) throws IOException {
+      file.position(newPosition);
+      return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+      return file.size();
+    }
+
+    @Override
+    public FileChannel truncate(long size) throws IOException {
+      file.truncate(size);
+      return this;
+    }
+
+    @Override
+    public void force(boolean metaData) throws IOException {
+      file.force(metaData);
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target)
+        throws IOException {
+      return file.transferTo(position, count, target);
+    }
+
+    @Override
+    public long transferFrom(ReadableByteChannel src, long position, long count)
+        throws IOException {
+      return file.transferFrom(src, position, count);
+    }
+
+    @Override
+    public int read(ByteBuffer dst, long position) throws IOException {
+      return file.read(dst, position);
+    }
+
+    @Override
+    public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+      return file.map(mode, position, size);
+    }
+
+    @Override
+    public FileLock lock(long position, long size, boolean shared) throws IOException {
+      return file.lock(position, size, shared);
+    }
+
+    @Override
+    public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+      return file.tryLock(position, size, shared);
+    }
+
+    @Override
+    protected void implCloseChannel() throws IOException {
+      file.close();
+    }
+  }
+
+  private static List<String> comments(CommentPage page) {
+    List<String> comments = new ArrayList<>();
+    for (FormData comment : page.getComments()) {
+      comments.add(comment.getNickname() + ": " + comment.getComment());
+    }
+    return comments;
+  }
+
+  @Test
+  public void commentsSurviveReopening() throws IOException {
+    Path path = folder.newFile().toPath();
+    try (LogCommentStore store = LogCommentStore.open(path)) {
+      store.putAll(Arrays.asList(new FormData("Ann", "Hi"), new FormData("Bob", "Two\nlines")));
+    }
+
+    try (LogCommentStore store = LogCommentStore.open(path)) {
+      CommentPage page = store.readPage(10, null);
+
+      Assert.assertEquals(Arrays.asList("Bob: Two\nlines", "Ann: Hi"), comments(page));
+      Assert.assertNull(page.getNextCursor());
+    }
+  }
+
+  @Test
+  public void recoverTruncatesHalfWrittenLastLine() throws IOException {
+    Path path = folder.newFile().toPath();
+    try (LogCommentStore store = LogCommentStore.open(path)) {
+      store.putAll(Arrays.asList(new FormData("Ann", "First")));
+    }
+    long complete = Files.size(path);
+
+    // A crash part way through appending a comment leaves a line with no line break.
+    Files.write(path, "{\"nickname\":\"Bob\",\"comm".getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.APPEND);
+
+    try (LogCommentStore store = LogCommentStore.open(path)) {
+      Assert.assertEquals(complete, Files.size(path));
+      Assert.assertEquals(Arrays.asList("Ann: First"), comments(store.readPage(10, null)));
+
+      store.putAll(Arrays.asList(new FormData("Cat", "After")));
+    }
+
+    try (LogCommentStore store = LogCommentStore.open(path)) {
+      Assert.assertEquals(
+          Arrays.asList("Cat: After", "Ann: First"), comments(store.readPage(10, null)));
+    }
+  }
+
+  @Test
+  public void recoverTruncatesGarbledLastLines() throws IOException {
+    Path path = folder.newFile().toPath();
+    try (LogCommentStore store = LogCommentStore.open(path)) {
+      store.putAll(Arrays.asList(new FormData("Ann", "First")));
+    }
+    long complete = Files.size(path);
+
+    // A crash before a batch is synced can leave whole lines of zeros, or of old bytes.
+    Files.write(path, new byte[] {0, 0, 0, 0, '\n', '{', '"', 'x', '\n', 0, 0},
+        StandardOpenOption.APPEND);
+
+    try (LogCommentStore store = LogCommentStore.open(path)) {
+      Assert.assertEquals(complete, Files.size(path));
+      Assert.assertEquals(Arrays.asList("Ann: First"), comments(store.readPage(10, null)));
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void recoverRejectsCorruptionBeforeTheEnd() throws IOException {
+    Path path = folder.newFile().toPath();
+    try (LogCommentStore store = LogCommentStore.open(path)) {
+      store.putAll(Arrays.asList(new FormData("Ann", "First")));
+    }
+    // Zeros followed by a readable comment can't be what a crash left, so the log is damaged.
+    Files.write(path, new byte[] {0, 0, 0, 0, '\n'}, StandardOpenOption.APPEND);
+    Files.write(path, "{\"nickname\":\"Bob\",\"comment\":\"Second\"}\n"
+        .getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+    LogCommentStore.open(path).close();
+  }
+
+  @Test
+  public void failedWritesAreTruncated() throws IOException {
+    Path path = folder.newFile().toPath();
+    FailingChannel channel = new FailingChannel(path);
+    try (LogCommentStore store = LogCommentStore.open(channel)) {
+      store.putAll(Arrays.asList(new FormData("Ann", "First")));
+      long complete = Files.size(path);
+
+      channel.failWrites = true;
+      try {
+        store.putAll(Arrays.asList(new FormData("Bob", "A much longer comment than the next")));
+        Assert.fail("Expected the write to fail");
+      } catch (IOException expected) {
+        // The write failed part way through, like it would on a full disk.
+      }
+      Assert.assertEquals(complete, Files.size(path));
+
+      channel.failWrites = false;
+      store.putAll(Arrays.asList(new FormData("Cat", "Short")));
+    }
+
+    try (LogCommentStore store = LogCommentStore.open(path)) {
+      Assert.assertEquals(
+          Arrays.asList("Cat: Short", "Ann: First"), comments(store.readPage(10, null)));
+    }
+  }
+
+  @Test
+  public void cursorsResumeWhereThePageEnded() throws IOException {
+    try (LogCommentStore store = LogCommentStore.open(folder.newFile().toPath())) {
+      // Pages list nicknames last first, then comments in the order they were written. The dot
+      // and the non-ASCII nickname check that cursors encode any nickname.
+      store.putAll(Arrays.asList(new FormData("b.b", "1"), new FormData("a", "2"),
+          new FormData("☕", "3"), new FormData("b.b", "4")));
+
+      CommentPage first = store.readPage(2, null);
+      Assert.assertEquals(Arrays.asList("☕: 3", "b.b: 1"), comments(first));
+
+      // A comment written after the cursor was handed out, sorting just after where it points.
+      store.putAll(Arrays.asList(new FormData("b.b", "5")));
+
+      CommentPage second = store.readPage(2, first.getNextCursor());
+      Assert.assertEquals(Arrays.asList("b.b: 4", "b.b: 5"), comments(second));
+
+      CommentPage third = store.readPage(2, second.getNextCursor());
+      Assert.assertEquals(Arrays.asList("a: 2"), comments(third));
+      Assert.assertNull(third.getNextCursor());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void malformedCursorsAreRejected() throws IOException {
+    try (LogCommentStore store = LogCommentStore.open(folder.newFile().toPath())) {
+      store.readPage(2, "not a cursor");
+    }
+  }
+}
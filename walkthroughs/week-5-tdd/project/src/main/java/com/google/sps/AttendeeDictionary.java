@@ -0,0 +1,168 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps attendee names to small integer IDs, so that the scheduler can compare attendees as ints
+ * instead of hashing Strings. Each name is stored once however many events mention it.
+ *
+ * <p>A name is only kept while something refers to it: every {@link AttendeeSet} holds on to the
+ * names in it, and the dictionary itself only holds them weakly. Once the last event or request
+ * naming someone is gone, the garbage collector lets go of the name and its ID is handed out again,
+ * so a long-running server that sees many short-lived attendees doesn't grow without bound. An ID
+ * never changes while any set holding it is reachable.
+ *
+ * <p>AttendeeDictionary is thread-safe. Looking up a name that is already known never blocks.
+ */
+public final class AttendeeDictionary {
+  private static final AttendeeDictionary SHARED = new AttendeeDictionary();
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final ConcurrentHashMap<String, NameReference> ids = new ConcurrentHashMap<>();
+  // The name for each ID. A name is stored here before its ID is published in ids, so anyone who
+  // has an ID can read its name.
+  private volatile NameReference[] names = new NameReference[INITIAL_CAPACITY];
+  // Names that nothing refers to any more, waiting for their IDs to be freed.
+  private final ReferenceQueue<Name> released = new ReferenceQueue<>();
+  // Freed IDs, which are reused before new ones are handed out.
+  private int[] freeIds = new int[INITIAL_CAPACITY];
+  private int freeCount;
+  private int nextId;
+
+  /**
+   * Creates an empty dictionary. Events and requests use {@link #shared()}; separate dictionaries
+   * are for tools and tests.
+   */
+  public AttendeeDictionary() {}
+
+  /**
+   * Returns the dictionary used by every {@code Event} and {@code MeetingRequest}.
+   */
+  public static AttendeeDictionary shared() {
+    return SHARED;
+  }
+
+  /**
+   * Returns {@code name} interned, giving it a free ID if it doesn't have one yet. The ID
+   * stays the name's for as long as the returned object is reachable.
+   */
+  Name intern(String name) {
+    Name interned = find(name);
+    if (interned != null) {
+      return interned;
+    }
+
+    synchronized (this) {
+      expungeReleased();
+      interned = find(name);
+      if (interned != null) {
+        return interned;
+      }
+
+      int id = freeCount > 0 ? freeIds[--freeCount] : nextId++;
+      if (id == names.length) {
+        names = Arrays.copyOf(names, id * 2);
+      }
+      interned = new Name(id, name);
+      NameReference reference = new NameReference(interned, released);
+      names[id] = reference;
+      ids.put(name, reference);
+      return interned;
+    }
+  }
+
+  /**
+   * Returns {@code name} interned, or null if nothing refers to it.
+   */
+  Name find(String name) {
+    NameReference reference = ids.get(name);
+    return reference == null ? null : reference.get();
+  }
+
+  /**
+   * Returns the ID of {@code name}, or -1 if nothing refers to it.
+   */
+  public int lookup(String name) {
+    Name interned = find(name);
+    return interned == null ? -1 : interned.id;
+  }
+
+  /**
+   * Returns the name with ID {@code id}.
+   */
+  public String name(int id) {
+    NameReference[] current = names;
+    NameReference reference = id >= 0 && id < current.length ? current[id] : null;
+    Name interned = reference == null ? null : reference.get();
+    if (interned == null) {
+      throw new IllegalArgumentException("Unknown attendee ID: " + id);
+    }
+    return interned.value;
+  }
+
+  /**
+   * Returns the number of names in use. Names nothing refers to any more are only dropped once the
+   * garbage collector has noticed.
+   */
+  public synchronized int size() {
+    expungeReleased();
+    return nextId - freeCount;
+  }
+
+  /** Frees the IDs of names the garbage collector has let go of. Must hold the lock. */
+  private void expungeReleased() {
+    Reference<? extends Name> next;
+    while ((next = released.poll()) != null) {
+      NameReference reference = (NameReference) next;
+      // The name may have been interned again under a new ID since it was let go.
+      ids.remove(reference.name, reference);
+      names[reference.id] = null;
+      if (freeCount == freeIds.length) {
+        freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+      }
+      freeIds[freeCount++] = reference.id;
+    }
+  }
+
+  /** An interned name. Holding it keeps its ID from being reused. */
+  static final class Name {
+    final int id;
+    final String value;
+
+    private Name(int id, String value) {
+      this.id = id;
+      this.value = value;
+    }
+  }
+
+  /** The dictionary's weak hold on a name, which outlives the name to say which ID to free. */
+  private static final class NameReference extends WeakReference<Name> {
+    private final int id;
+    private final String name;
+
+    NameReference(Name interned, ReferenceQueue<Name> queue) {
+      super(interned, queue);
+      this.id = interned.id;
+      this.name = interned.value;
+    }
+  }
+}
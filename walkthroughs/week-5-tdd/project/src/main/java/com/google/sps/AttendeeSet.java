@@ -0,0 +1,226 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable set of attendees, stored as the sorted IDs given to them by an
+ * {@link AttendeeDictionary}. A set of a few attendees takes a few ints rather than a hash table of
+ * Strings, and checking whether two sets share an attendee compares ints without hashing. A set
+ * holds on to its attendees' names, which keeps their IDs from being reused while it is reachable.
+ */
+public final class AttendeeSet {
+  /** The set with no attendees. */
+  public static final AttendeeSet EMPTY = new AttendeeSet(
+      AttendeeDictionary.shared(), new int[0], new AttendeeDictionary.Name[0]);
+
+  // Below this ratio of sizes, walking both sets together beats binary searching the larger one.
+  private static final int MERGE_RATIO = 8;
+
+  private static final Comparator<AttendeeDictionary.Name> BY_ID =
+      new Comparator<AttendeeDictionary.Name>() {
+        @Override
+        public int compare(AttendeeDictionary.Name a, AttendeeDictionary.Name b) {
+          return Integer.compare(a.id, b.id);
+        }
+      };
+
+  private final AttendeeDictionary dictionary;
+  private final int[] ids;
+  // The interned name of each ID, in the same order.
+  private final AttendeeDictionary.Name[] names;
+
+  private AttendeeSet(AttendeeDictionary dictionary, int[] ids, AttendeeDictionary.Name[] names) {
+    this.dictionary = dictionary;
+    this.ids = ids;
+    this.names = names;
+  }
+
+  /**
+   * Returns the set of {@code names}, interning any that {@code dictionary} doesn't know yet.
+   */
+  public static AttendeeSet intern(AttendeeDictionary dictionary, Collection<String> names) {
+    AttendeeDictionary.Name[] interned = new AttendeeDictionary.Name[names.size()];
+    int count = 0;
+    for (String name : names) {
+      interned[count++] = dictionary.intern(name);
+    }
+    return sortedUnique(dictionary, interned, count);
+  }
+
+  /**
+   * Returns the set of {@code names} that {@code dictionary} already knows. Names it doesn't know
+   * can't be attending anything, so they are left out rather than interned.
+   */
+  public static AttendeeSet lookup(AttendeeDictionary dictionary, Collection<String> names) {
+    AttendeeDictionary.Name[] interned = new AttendeeDictionary.Name[names.size()];
+    int count = 0;
+    for (String name : names) {
+      AttendeeDictionary.Name found = dictionary.find(name);
+      if (found != null) {
+        interned[count++] = found;
+      }
+    }
+    return sortedUnique(dictionary, interned, count);
+  }
+
+  /**
+   * Returns the number of attendees in the set.
+   */
+  public int size() {
+    return ids.length;
+  }
+
+  /**
+   * Returns whether the set has no attendees.
+   */
+  public boolean isEmpty() {
+    return ids.length == 0;
+  }
+
+  /**
+   * Returns the {@code index}th smallest ID in the set.
+   */
+  public int id(int index) {
+    return ids[index];
+  }
+
+  /**
+   * Returns whether the attendee with ID {@code id} is in the set.
+   */
+  public boolean contains(int id) {
+    return Arrays.binarySearch(ids, id) >= 0;
+  }
+
+  /**
+   * Returns whether this set and {@code other} have any attendee in common.
+   */
+  public boolean intersects(AttendeeSet other) {
+    int[] small = ids.length <= other.ids.length ? ids : other.ids;
+    int[] large = small == ids ? other.ids : ids;
+    if (small.length == 0) {
+      return false;
+    }
+
+    // Look each attendee of a much smaller set up in the larger one.
+    if ((long) small.length * MERGE_RATIO < large.length) {
+      for (int id : small) {
+        if (Arrays.binarySearch(large, id) >= 0) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    int i = 0;
+    int j = 0;
+    while (i < small.length && j < large.length) {
+      if (small[i] == large[j]) {
+        return true;
+      } else if (small[i] < large[j]) {
+        i++;
+      } else {
+        j++;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns a read-only view of the attendees' names.
+   */
+  public Set<String> names() {
+    return new AbstractSet<String>() {
+      @Override
+      public Iterator<String> iterator() {
+        return new Iterator<String>() {
+          private int next;
+
+          @Override
+          public boolean hasNext() {
+            return next < ids.length;
+          }
+
+          @Override
+          public String next() {
+            if (next >= ids.length) {
+              throw new NoSuchElementException();
+            }
+            return names[next++].value;
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return ids.length;
+      }
+
+      @Override
+      public boolean contains(Object name) {
+        if (!(name instanceof String)) {
+          return false;
+        }
+
+        int id = dictionary.lookup((String) name);
+        return id >= 0 && AttendeeSet.this.contains(id);
+      }
+    };
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof AttendeeSet
+        && dictionary == ((AttendeeSet) other).dictionary
+        && Arrays.equals(ids, ((AttendeeSet) other).ids);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(ids);
+  }
+
+  @Override
+  public String toString() {
+    return names().toString();
+  }
+
+  private static AttendeeSet sortedUnique(
+      AttendeeDictionary dictionary, AttendeeDictionary.Name[] names, int count) {
+    Arrays.sort(names, 0, count, BY_ID);
+    int unique = 0;
+    for (int i = 0; i < count; i++) {
+      if (unique == 0 || names[i] != names[unique - 1]) {
+        names[unique++] = names[i];
+      }
+    }
+    if (unique != names.length) {
+      names = Arrays.copyOf(names, unique);
+    }
+
+    int[] ids = new int[unique];
+    for (int i = 0; i < unique; i++) {
+      ids[i] = names[i].id;
+    }
+    return new AttendeeSet(dictionary, ids, names);
+  }
+}
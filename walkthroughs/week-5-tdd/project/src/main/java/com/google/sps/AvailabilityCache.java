@@ -0,0 +1,325 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A size-bounded, least-recently-used cache of occupancy masks, keyed by a set of attendees and the
+ * window the mask covers. Entries for single attendees and for whole groups live side by side.
+ *
+ * <p>When an event changes, {@link #invalidate} drops only the entries that include one of its
+ * attendees, and records when those attendees were last invalidated. A mask computed while one of
+ * its own attendees was invalidated is not stored, so a slow reader can't put stale data back after
+ * a writer has cleared it, while changes to other attendees leave it alone.
+ *
+ * <p>AvailabilityCache is thread-safe. Entries are split across segments by key, each with its own
+ * lock and its own least-recently-used order, and masks are copied outside the locks, so lookups
+ * of different keys rarely wait on each other. Only puts and invalidations touch the index of keys
+ * by attendee, which has a lock of its own. Masks are copied on the way in and out, so callers
+ * are free to modify what they get.
+ */
+public final class AvailabilityCache {
+  // Large caches are split so concurrent lookups rarely share a lock. Small ones stay whole, so
+  // their least-recently-used order is exact.
+  private static final int MAX_SEGMENTS = 16;
+  private static final int MIN_ENTRIES_PER_SEGMENT = 64;
+  // Attendees share invalidation times by hash, which bounds the memory used to track them. A
+  // collision only means a put is occasionally skipped.
+  private static final int INVALIDATION_STRIPES = 256;
+
+  private final Segment[] segments;
+  // Which keys mention each attendee, so invalidation doesn't have to scan every entry. Guarded by
+  // itself.
+  private final Map<String, Set<Key>> keysByAttendee = new HashMap<>();
+
+  private final AtomicLong generation = new AtomicLong();
+  // The generation at which attendees hashing to each stripe were last invalidated.
+  private final AtomicLongArray invalidatedAt = new AtomicLongArray(INVALIDATION_STRIPES);
+
+  private final LongAdder groupHits = new LongAdder();
+  private final LongAdder groupMisses = new LongAdder();
+  private final LongAdder attendeeHits = new LongAdder();
+  private final LongAdder attendeeMisses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * Creates a cache holding at most {@code maxEntries} masks.
+   */
+  public AvailabilityCache(int maxEntries) {
+    if (maxEntries <= 0) {
+      throw new IllegalArgumentException("maxEntries must be positive");
+    }
+
+    int segmentCount = Integer.highestOneBit(
+        Math.max(1, Math.min(MAX_SEGMENTS, maxEntries / MIN_ENTRIES_PER_SEGMENT)));
+    this.segments = new Segment[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      // Spread the remainder so the segments add up to exactly maxEntries.
+      int capacity = maxEntries / segmentCount + (i < maxEntries % segmentCount ? 1 : 0);
+      segments[i] = new Segment(capacity);
+    }
+  }
+
+  /**
+   * Returns a copy of the cached mask for {@code attendees} over {@code window}, or null if there
+   * isn't one.
+   */
+  public OccupancyMask get(Collection<String> attendees, TimeRange window) {
+    Key key = new Key(attendees, window);
+    OccupancyMask mask = segmentFor(key).get(key);
+
+    boolean group = key.attendees.size() > 1;
+    if (mask == null) {
+      (group ? groupMisses : attendeeMisses).increment();
+      return null;
+    }
+
+    (group ? groupHits : attendeeHits).increment();
+    return mask.copy();
+  }
+
+  /**
+   * Returns the current generation. Pass it to {@link #put} along with a mask computed after
+   * reading it.
+   */
+  public long generation() {
+    return generation.get();
+  }
+
+  /**
+   * Caches a copy of {@code mask} for {@code attendees}, unless any of them was invalidated since
+   * {@code generation} was read.
+   */
+  public void put(Collection<String> attendees, OccupancyMask mask, long generation) {
+    Key key = new Key(attendees, mask.window());
+    if (invalidatedSince(key, generation)) {
+      return;
+    }
+
+    OccupancyMask copy = mask.copy();
+    Segment segment = segmentFor(key);
+    segment.put(key, copy);
+
+    // invalidate bumps the stripes before dropping entries, so either it saw this entry and
+    // dropped it, or this check sees the bump.
+    if (invalidatedSince(key, generation)) {
+      segment.remove(key, copy);
+    }
+  }
+
+  /**
+   * Drops every entry that includes any of {@code attendees}.
+   */
+  public void invalidate(Collection<String> attendees) {
+    long now = generation.incrementAndGet();
+    for (String attendee : attendees) {
+      int stripe = stripeOf(attendee);
+      long last;
+      do {
+        last = invalidatedAt.get(stripe);
+      } while (last < now && !invalidatedAt.compareAndSet(stripe, last, now));
+    }
+
+    for (String attendee : attendees) {
+      Set<Key> keys;
+      synchronized (keysByAttendee) {
+        keys = keysByAttendee.remove(attendee);
+      }
+      if (keys == null) {
+        continue;
+      }
+
+      for (Key key : keys) {
+        segmentFor(key).remove(key, null);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of masks currently cached.
+   */
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  /**
+   * Returns how many lookups of a group of attendees found a mask.
+   */
+  public long groupHits() {
+    return groupHits.sum();
+  }
+
+  /**
+   * Returns how many lookups of a group of attendees found nothing.
+   */
+  public long groupMisses() {
+    return groupMisses.sum();
+  }
+
+  /**
+   * Returns how many lookups of a single attendee found a mask.
+   */
+  public long attendeeHits() {
+    return attendeeHits.sum();
+  }
+
+  /**
+   * Returns how many lookups of a single attendee found nothing.
+   */
+  public long attendeeMisses() {
+    return attendeeMisses.sum();
+  }
+
+  /**
+   * Returns how many masks were dropped to stay within the size bound.
+   */
+  public long evictions() {
+    return evictions.sum();
+  }
+
+  private boolean invalidatedSince(Key key, long generation) {
+    for (String attendee : key.attendees) {
+      if (invalidatedAt.get(stripeOf(attendee)) > generation) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static int stripeOf(String attendee) {
+    return spread(attendee.hashCode()) & (INVALIDATION_STRIPES - 1);
+  }
+
+  private Segment segmentFor(Key key) {
+    return segments[spread(key.hashCode()) & (segments.length - 1)];
+  }
+
+  // Mixes the high bits of a hash into the low ones, which pick the stripe or segment.
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  private void index(Key key) {
+    synchronized (keysByAttendee) {
+      for (String attendee : key.attendees) {
+        Set<Key> keys = keysByAttendee.get(attendee);
+        if (keys == null) {
+          keys = new HashSet<>();
+          keysByAttendee.put(attendee, keys);
+        }
+        keys.add(key);
+      }
+    }
+  }
+
+  private void unindex(Key key) {
+    synchronized (keysByAttendee) {
+      for (String attendee : key.attendees) {
+        Set<Key> keys = keysByAttendee.get(attendee);
+        if (keys != null) {
+          keys.remove(key);
+          if (keys.isEmpty()) {
+            keysByAttendee.remove(attendee);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * One lock's worth of entries, in least-recently-used order. Keys are indexed by attendee while
+   * the segment's lock is held, so a key is indexed exactly while it has an entry.
+   */
+  private final class Segment {
+    private final int capacity;
+    // Access order makes iteration order least-recently-used first.
+    private final LinkedHashMap<Key, OccupancyMask> entries =
+        new LinkedHashMap<Key, OccupancyMask>(16, 0.75f, true);
+
+    Segment(int capacity) {
+      this.capacity = capacity;
+    }
+
+    synchronized OccupancyMask get(Key key) {
+      return entries.get(key);
+    }
+
+    synchronized void put(Key key, OccupancyMask mask) {
+      if (entries.put(key, mask) == null) {
+        index(key);
+      }
+
+      if (entries.size() > capacity) {
+        Iterator<Key> leastRecentlyUsed = entries.keySet().iterator();
+        Key evicted = leastRecentlyUsed.next();
+        leastRecentlyUsed.remove();
+        unindex(evicted);
+        evictions.increment();
+      }
+    }
+
+    // Removes key if it still maps to mask, or whatever it maps to if mask is null.
+    synchronized void remove(Key key, OccupancyMask mask) {
+      boolean removed = mask == null ? entries.remove(key) != null : entries.remove(key, mask);
+      if (removed) {
+        unindex(key);
+      }
+    }
+
+    synchronized int size() {
+      return entries.size();
+    }
+  }
+
+  /** Identifies a mask by who it is for and the window it covers. */
+  private static final class Key {
+    private final Set<String> attendees;
+    private final TimeRange window;
+    private final int hashCode;
+
+    Key(Collection<String> attendees, TimeRange window) {
+      this.attendees = Collections.unmodifiableSet(new HashSet<>(attendees));
+      this.window = window;
+      this.hashCode = this.attendees.hashCode() * 31 + window.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof Key
+          && attendees.equals(((Key) other).attendees)
+          && window.equals(((Key) other).window);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
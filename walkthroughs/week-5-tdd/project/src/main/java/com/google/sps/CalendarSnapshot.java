@@ -0,0 +1,404 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * A read-only calendar stored in a compact binary file, which is memory-mapped and queried in
+ * place. Opening a snapshot reads a fixed-size header and nothing else, so a large organization's
+ * calendar is ready as soon as it is mapped instead of after every event has been parsed.
+ *
+ * <p>Events are stored in columns of ints, one entry per event: start, duration, end of the last
+ * occurrence, title and recurrence. Attendee names and titles are each stored once, in string
+ * tables, and events refer to them by index. Every attendee also has the list of events they go
+ * to, so finding someone's busy times only reads their own events. Attendee names are sorted, so
+ * looking one up is a binary search over the mapped bytes.
+ *
+ * <p>All ints are big-endian. The layout, in order:
+ * <pre>
+ *   header       MAGIC, VERSION, events, names, titles, attendances
+ *   per event    starts, durations, lastEnds, titleIds, periods, counts, untils
+ *   attendees    attendeeOffsets[events + 1], attendeeIds[attendances]
+ *   per name     eventOffsets[names + 1], eventIds[attendances]
+ *   strings      nameOffsets[names + 1], titleOffsets[titles + 1], name bytes, title bytes
+ * </pre>
+ * A period of 0 marks an event that doesn't recur. Strings are UTF-8, and each offsets array
+ * starts at 0 and ends with the total length of what it indexes.
+ *
+ * <p>CalendarSnapshot is thread-safe. Every read is an absolute get on the mapped buffer.
+ */
+public final class CalendarSnapshot {
+  private static final int MAGIC = 0x43414C53; // "CALS"
+  private static final int VERSION = 1;
+  private static final int HEADER_INTS = 6;
+  private static final int EVENT_COLUMNS = 7;
+
+  private final ByteBuffer buffer;
+  private final int eventCount;
+  private final int nameCount;
+
+  // Byte positions of each section within buffer.
+  private final int starts;
+  private final int durations;
+  private final int lastEnds;
+  private final int titleIds;
+  private final int periods;
+  private final int counts;
+  private final int untils;
+  private final int attendeeOffsets;
+  private final int attendeeIds;
+  private final int eventOffsets;
+  private final int eventIds;
+  private final int nameOffsets;
+  private final int titleOffsets;
+  private final int nameBytes;
+  private final int titleBytes;
+
+  private CalendarSnapshot(ByteBuffer buffer) throws IOException {
+    if (buffer.limit() < HEADER_INTS * 4 || buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not a calendar snapshot");
+    }
+
+    if (buffer.getInt(4) != VERSION) {
+      throw new IOException("Unsupported snapshot version " + buffer.getInt(4));
+    }
+
+    this.buffer = buffer;
+    this.eventCount = buffer.getInt(8);
+    this.nameCount = buffer.getInt(12);
+    int titleCount = buffer.getInt(16);
+    int attendances = buffer.getInt(20);
+    if (eventCount < 0 || nameCount < 0 || titleCount < 0 || attendances < 0) {
+      throw new IOException("Corrupt snapshot header");
+    }
+
+    long position = HEADER_INTS * 4;
+    this.starts = section(position);
+    this.durations = section(position += eventCount * 4L);
+    this.lastEnds = section(position += eventCount * 4L);
+    this.titleIds = section(position += eventCount * 4L);
+    this.periods = section(position += eventCount * 4L);
+    this.counts = section(position += eventCount * 4L);
+    this.untils = section(position += eventCount * 4L);
+    this.attendeeOffsets = section(position += eventCount * 4L);
+    this.attendeeIds = section(position += (eventCount + 1) * 4L);
+    this.eventOffsets = section(position += attendances * 4L);
+    this.eventIds = section(position += (nameCount + 1) * 4L);
+    this.nameOffsets = section(position += attendances * 4L);
+    this.titleOffsets = section(position += (nameCount + 1) * 4L);
+    this.nameBytes = section(position += (titleCount + 1) * 4L);
+    this.titleBytes = section(position += stringBytes(nameOffsets, nameCount));
+    section(position + stringBytes(titleOffsets, titleCount));
+  }
+
+  // Checks that a section starting at position fits in the buffer.
+  private int section(long position) throws IOException {
+    if (position < 0 || position > buffer.limit()) {
+      throw new IOException("Truncated snapshot");
+    }
+    return (int) position;
+  }
+
+  // Returns the length of the strings an offsets array indexes, checking that the offsets start at
+  // 0 and never go down, so no string has a negative length.
+  private int stringBytes(int offsets, int count) throws IOException {
+    int previous = buffer.getInt(offsets);
+    if (previous != 0) {
+      throw new IOException("Corrupt snapshot");
+    }
+    for (int i = 1; i <= count; i++) {
+      int offset = buffer.getInt(offsets + i * 4);
+      if (offset < previous) {
+        throw new IOException("Corrupt snapshot");
+      }
+      previous = offset;
+    }
+    return previous;
+  }
+
+  /**
+   * Maps the snapshot at {@code path} into memory. The file must not change while the snapshot is
+   * in use.
+   */
+  public static CalendarSnapshot open(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      // The mapping stays valid after the channel is closed.
+      return new CalendarSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /**
+   * Writes {@code events} to {@code path} in snapshot format, replacing anything already there.
+   */
+  public static void write(Collection<Event> events, Path path) throws IOException {
+    TreeSet<String> sortedNames = new TreeSet<>();
+    Map<String, Integer> titleIndex = new LinkedHashMap<>();
+    int attendances = 0;
+    for (Event event : events) {
+      sortedNames.addAll(event.getAttendees());
+      if (!titleIndex.containsKey(event.getTitle())) {
+        titleIndex.put(event.getTitle(), titleIndex.size());
+      }
+      attendances += event.getAttendees().size();
+    }
+
+    List<String> names = new ArrayList<>(sortedNames);
+    Map<String, Integer> nameIndex = new HashMap<>();
+    for (String name : names) {
+      nameIndex.put(name, nameIndex.size());
+    }
+
+    // The events each attendee goes to, in the order the events are written.
+    List<List<Integer>> eventsByName = new ArrayList<>(names.size());
+    for (int i = 0; i < names.size(); i++) {
+      eventsByName.add(new ArrayList<Integer>());
+    }
+
+    int[][] columns = new int[EVENT_COLUMNS][events.size()];
+    int[][] eventAttendees = new int[events.size()][];
+    int index = 0;
+    for (Event event : events) {
+      Recurrence recurrence = event.getRecurrence();
+      columns[0][index] = event.getWhen().start();
+      columns[1][index] = event.getWhen().duration();
+      columns[2][index] = event.lastEnd();
+      columns[3][index] = titleIndex.get(event.getTitle());
+      columns[4][index] = recurrence == null ? 0 : recurrence.period();
+      columns[5][index] = recurrence == null ? 0 : recurrence.count();
+      columns[6][index] = recurrence == null ? 0 : recurrence.until();
+
+      int[] ids = new int[event.getAttendees().size()];
+      int j = 0;
+      for (String attendee : event.getAttendees()) {
+        ids[j] = nameIndex.get(attendee);
+        eventsByName.get(ids[j]).add(index);
+        j++;
+      }
+      eventAttendees[index++] = ids;
+    }
+
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(events.size());
+      out.writeInt(names.size());
+      out.writeInt(titleIndex.size());
+      out.writeInt(attendances);
+
+      for (int[] column : columns) {
+        writeInts(out, column);
+      }
+
+      int offset = 0;
+      out.writeInt(offset);
+      for (int[] ids : eventAttendees) {
+        out.writeInt(offset += ids.length);
+      }
+      for (int[] ids : eventAttendees) {
+        writeInts(out, ids);
+      }
+
+      offset = 0;
+      out.writeInt(offset);
+      for (List<Integer> ids : eventsByName) {
+        out.writeInt(offset += ids.size());
+      }
+      for (List<Integer> ids : eventsByName) {
+        for (int id : ids) {
+          out.writeInt(id);
+        }
+      }
+
+      List<byte[]> encodedNames = encode(names);
+      List<byte[]> encodedTitles = encode(titleIndex.keySet());
+      writeOffsets(out, encodedNames);
+      writeOffsets(out, encodedTitles);
+      for (byte[] bytes : encodedNames) {
+        out.write(bytes);
+      }
+      for (byte[] bytes : encodedTitles) {
+        out.write(bytes);
+      }
+    }
+  }
+
+  private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+    for (int value : values) {
+      out.writeInt(value);
+    }
+  }
+
+  private static List<byte[]> encode(Collection<String> strings) {
+    List<byte[]> encoded = new ArrayList<>(strings.size());
+    for (String string : strings) {
+      encoded.add(string.getBytes(StandardCharsets.UTF_8));
+    }
+    return encoded;
+  }
+
+  private static void writeOffsets(DataOutputStream out, List<byte[]> strings) throws IOException {
+    int offset = 0;
+    out.writeInt(offset);
+    for (byte[] bytes : strings) {
+      out.writeInt(offset += bytes.length);
+    }
+  }
+
+  /**
+   * Returns the number of events in the snapshot.
+   */
+  public int size() {
+    return eventCount;
+  }
+
+  /**
+   * Returns the {@code index}th event, decoding it from the snapshot.
+   */
+  public Event getEvent(int index) {
+    if (index < 0 || index >= eventCount) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + eventCount);
+    }
+
+    String title = string(titleOffsets, titleBytes, intAt(titleIds, index));
+    TimeRange when = TimeRange.fromStartDuration(intAt(starts, index), intAt(durations, index));
+
+    int from = intAt(attendeeOffsets, index);
+    int to = intAt(attendeeOffsets, index + 1);
+    List<String> attendees = new ArrayList<>(to - from);
+    for (int i = from; i < to; i++) {
+      attendees.add(string(nameOffsets, nameBytes, intAt(attendeeIds, i)));
+    }
+
+    int period = intAt(periods, index);
+    if (period == 0) {
+      return new Event(title, when, attendees);
+    }
+    return new Event(
+        title, when, attendees, Recurrence.of(period, intAt(counts, index), intAt(untils, index)));
+  }
+
+  /**
+   * Returns every event in the snapshot, in the order they were written. Events are decoded as they
+   * are read.
+   */
+  public List<Event> getEvents() {
+    return new AbstractList<Event>() {
+      @Override
+      public Event get(int index) {
+        return getEvent(index);
+      }
+
+      @Override
+      public int size() {
+        return eventCount;
+      }
+    };
+  }
+
+  /**
+   * Returns the minutes within {@code window} during which any of {@code attendees} is busy, read
+   * straight from the snapshot without decoding any events.
+   */
+  public OccupancyMask getOccupancy(Collection<String> attendees, TimeRange window) {
+    OccupancyMask occupancy = new OccupancyMask(window);
+    for (String attendee : attendees) {
+      int name = findName(attendee);
+      if (name < 0) {
+        continue;
+      }
+
+      int to = intAt(eventOffsets, name + 1);
+      for (int i = intAt(eventOffsets, name); i < to; i++) {
+        occupy(occupancy, intAt(eventIds, i), window);
+      }
+    }
+    return occupancy;
+  }
+
+  // Marks the occurrences of an event that overlap the window.
+  private void occupy(OccupancyMask occupancy, int event, TimeRange window) {
+    int start = intAt(starts, event);
+    if (start >= window.end() || intAt(lastEnds, event) <= window.start()) {
+      return;
+    }
+
+    int duration = intAt(durations, event);
+    int period = intAt(periods, event);
+    if (period == 0) {
+      occupancy.occupy(start, start + duration);
+      return;
+    }
+
+    TimeRange first = TimeRange.fromStartDuration(start, duration);
+    Recurrence recurrence = Recurrence.of(period, intAt(counts, event), intAt(untils, event));
+    int to = recurrence.endIndexStartingBefore(first, window.end());
+    for (int i = recurrence.firstIndexEndingAfter(first, window.start()); i < to; i++) {
+      int occurrence = start + i * period;
+      occupancy.occupy(occurrence, occurrence + duration);
+    }
+  }
+
+  // Finds an attendee's index by binary search over the sorted name table, or -1 if they aren't in
+  // the snapshot.
+  private int findName(String name) {
+    int lo = 0;
+    int hi = nameCount;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      int comparison = string(nameOffsets, nameBytes, mid).compareTo(name);
+      if (comparison == 0) {
+        return mid;
+      } else if (comparison < 0) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return -1;
+  }
+
+  private int intAt(int section, int index) {
+    return buffer.getInt(section + index * 4);
+  }
+
+  private String string(int offsets, int bytes, int index) {
+    int from = intAt(offsets, index);
+    int to = intAt(offsets, index + 1);
+    byte[] encoded = new byte[to - from];
+    // Reading through a duplicate leaves the shared buffer's position alone.
+    ByteBuffer view = buffer.duplicate();
+    view.position(bytes + from);
+    view.get(encoded);
+    return new String(encoded, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,171 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts a calendar from JSON, as served by {@code /get-events}, into a {@link CalendarSnapshot}.
+ *
+ * <p>The JSON is an array of events, each with a {@code title}, a {@code when} holding
+ * {@code start} and {@code duration}, an {@code attendees} array and an optional
+ * {@code recurrence} holding {@code period} and, optionally, {@code count} and {@code until}.
+ * Unknown fields are skipped.
+ *
+ * <p>Run it as {@code CalendarSnapshotConverter <events.json> <snapshot>}.
+ */
+public final class CalendarSnapshotConverter {
+  private CalendarSnapshotConverter() {
+    // Disallow instances.
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: CalendarSnapshotConverter <events.json> <snapshot>");
+      System.exit(2);
+    }
+
+    convert(Paths.get(args[0]), Paths.get(args[1]));
+  }
+
+  /**
+   * Reads the JSON calendar at {@code json} and writes it to {@code snapshot}.
+   */
+  public static void convert(Path json, Path snapshot) throws IOException {
+    try (Reader reader = Files.newBufferedReader(json, StandardCharsets.UTF_8)) {
+      CalendarSnapshot.write(readEvents(reader), snapshot);
+    }
+  }
+
+  /**
+   * Parses a JSON array of events. Malformed events are reported as an
+   * {@code IllegalArgumentException}.
+   */
+  public static List<Event> readEvents(Reader json) throws IOException {
+    // Streams through the array rather than binding it with Gson, which would skip the checks in
+    // the Event constructor.
+    JsonReader reader = new JsonReader(json);
+    List<Event> events = new ArrayList<>();
+    reader.beginArray();
+    while (reader.hasNext()) {
+      events.add(readEvent(reader));
+    }
+    reader.endArray();
+    return events;
+  }
+
+  private static Event readEvent(JsonReader reader) throws IOException {
+    String title = null;
+    TimeRange when = null;
+    List<String> attendees = null;
+    Recurrence recurrence = null;
+
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+        case "title":
+          title = reader.nextString();
+          break;
+        case "when":
+          when = readTimeRange(reader);
+          break;
+        case "attendees":
+          attendees = new ArrayList<>();
+          reader.beginArray();
+          while (reader.hasNext()) {
+            attendees.add(reader.nextString());
+          }
+          reader.endArray();
+          break;
+        case "recurrence":
+          recurrence = readRecurrence(reader);
+          break;
+        default:
+          reader.skipValue();
+      }
+    }
+    reader.endObject();
+
+    return new Event(title, when, attendees, recurrence);
+  }
+
+  private static TimeRange readTimeRange(JsonReader reader) throws IOException {
+    Integer start = null;
+    Integer duration = null;
+
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+        case "start":
+          start = reader.nextInt();
+          break;
+        case "duration":
+          duration = reader.nextInt();
+          break;
+        default:
+          reader.skipValue();
+      }
+    }
+    reader.endObject();
+
+    if (start == null || duration == null) {
+      throw new IllegalArgumentException("when needs a start and a duration");
+    }
+    return TimeRange.fromStartDuration(start, duration);
+  }
+
+  private static Recurrence readRecurrence(JsonReader reader) throws IOException {
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      return null;
+    }
+
+    Integer period = null;
+    int count = Recurrence.UNBOUNDED;
+    int until = Recurrence.UNBOUNDED;
+
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+        case "period":
+          period = reader.nextInt();
+          break;
+        case "count":
+          count = reader.nextInt();
+          break;
+        case "until":
+          until = reader.nextInt();
+          break;
+        default:
+          reader.skipValue();
+      }
+    }
+    reader.endObject();
+
+    if (period == null) {
+      throw new IllegalArgumentException("recurrence needs a period");
+    }
+    return Recurrence.of(period, count, until);
+  }
+}
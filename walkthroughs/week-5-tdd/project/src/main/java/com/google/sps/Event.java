@@ -14,28 +14,48 @@
 
 package com.google.sps;
 
+import java.util.AbstractList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 
 /**
  * Event is the container class for when a specific group of people are meeting and are therefore
  * busy. Events are considered read-only.
+ *
+ * <p>An event may repeat according to a {@link Recurrence}, in which case {@code getWhen()} is its
+ * first occurrence.
  */
 public final class Event {
   private final String title;
   private final TimeRange when;
-  private final Set<String> attendees = new HashSet<>();
+  private final AttendeeSet attendees;
+  private final Recurrence recurrence;
 
   /**
    * Creates a new event.
    *
    * @param title The human-readable name for the event. Must be non-null.
    * @param when The time when the event takes place. Must be non-null.
-   * @param attendees The collection of people attending the event. Must be non-null.
+   * @param attendees The collection of people attending the event. Must be non-null
+   *     and hold no null names.
    */
   public Event(String title, TimeRange when, Collection<String> attendees) {
+    this(title, when, attendees, null);
+  }
+
+  /**
+   * Creates a new event that repeats.
+   *
+   * @param title The human-readable name for the event. Must be non-null.
+   * @param when The time of the first occurrence. Must be non-null.
+   * @param attendees The collection of people attending the event. Must be non-null
+   *     and hold no null names.
+   * @param recurrence How the event repeats, or null if it happens once.
+   */
+  public Event(String title, TimeRange when, Collection<String> attendees, Recurrence recurrence) {
     if (title == null) {
       throw new IllegalArgumentException("title cannot be null");
     }
@@ -48,9 +68,16 @@ public final class Event {
       throw new IllegalArgumentException("attendees cannot be null. Use empty array instead.");
     }
 
+    for (String attendee : attendees) {
+      if (attendee == null) {
+        throw new IllegalArgumentException("attendees cannot contain null");
+      }
+    }
+
     this.title = title;
     this.when = when;
-    this.attendees.addAll(attendees);
+    this.attendees = AttendeeSet.intern(AttendeeDictionary.shared(), attendees);
+    this.recurrence = recurrence;
   }
 
   /**
@@ -67,13 +94,74 @@ public final class Event {
     return when;
   }
 
+  /**
+   * Returns how this event repeats, or null if it happens once.
+   */
+  public Recurrence getRecurrence() {
+    return recurrence;
+  }
+
+  /**
+   * Returns whether this event happens more than once.
+   */
+  public boolean isRecurring() {
+    return recurrence != null;
+  }
+
+  /**
+   * Returns the occurrences of this event that overlap {@code window}, in ascending order. Each
+   * occurrence is created when it is read, so a window only costs as much as the occurrences in
+   * it, however long the event has been repeating.
+   */
+  public List<TimeRange> occurrences(TimeRange window) {
+    if (recurrence == null) {
+      return when.start() < window.end() && when.end() > window.start()
+          ? Collections.singletonList(when)
+          : Collections.<TimeRange>emptyList();
+    }
+
+    final int first = recurrence.firstIndexEndingAfter(when, window.start());
+    final int size = Math.max(recurrence.endIndexStartingBefore(when, window.end()) - first, 0);
+    return new AbstractList<TimeRange>() {
+      @Override
+      public TimeRange get(int index) {
+        if (index < 0 || index >= size) {
+          throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        // In long, since the offset from an early first occurrence can pass Integer.MAX_VALUE.
+        // The start itself is before window.end(), so it fits in an int.
+        long start = when.start() + (long) (first + index) * recurrence.period();
+        return TimeRange.fromStartDuration((int) start, when.duration());
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  /**
+   * Returns the end of this event's last occurrence, or {@code Integer.MAX_VALUE} if it repeats
+   * forever.
+   */
+  public int lastEnd() {
+    return recurrence == null ? when.end() : recurrence.lastEnd(when);
+  }
+
   /**
    * Returns a read-only set of required attendees for this event.
    */
   public Set<String> getAttendees() {
-    // Return the attendees as an unmodifiable set so that the caller can't change our
-    // internal data.
-    return Collections.unmodifiableSet(attendees);
+    // The names are a read-only view, so the caller can't change our internal data.
+    return attendees.names();
+  }
+
+  /**
+   * Returns the attendees of this event as IDs in the shared {@code AttendeeDictionary}.
+   */
+  public AttendeeSet getAttendeeIds() {
+    return attendees;
   }
 
   @Override
@@ -89,8 +177,8 @@ public final class Event {
   }
 
   private static boolean equals(Event a, Event b) {
-    // {@code attendees} must be a set for equals to work as expected. According to the {@code Set}
-    // interface documentation, equals will check for set-equality across all set implementations.
-    return a.title.equals(b.title) && a.when.equals(b.when) && a.attendees.equals(b.attendees);
+    // Attendee sets are sorted and share a dictionary, so equal sets hold the same IDs.
+    return a.title.equals(b.title) && a.when.equals(b.when) && a.attendees.equals(b.attendees)
+        && Objects.equals(a.recurrence, b.recurrence);
   }
 }
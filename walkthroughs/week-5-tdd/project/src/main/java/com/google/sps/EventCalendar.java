@@ -0,0 +1,570 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A set of events indexed by attendee, so that finding when a group of people is busy only touches
+ * the events of those people. Each attendee's busy times are kept sorted by start time.
+ * Recurring events are kept apart from one-off events and only expanded within the window being
+ * searched.
+ *
+ * <p>EventCalendar is safe to share between threads. Readers never block: every change builds a
+ * new snapshot and publishes it atomically, so a reader always sees the calendar either entirely
+ * before or entirely after a change. Snapshots are made of {@link PersistentHashMap}s, so a new one
+ * shares everything with the last but the entries of the changed event and its attendees. A change
+ * costs O(log n) for n events, plus a copy of each affected attendee's own busy times.
+ *
+ * <p>A calendar may be given an {@link AvailabilityCache}, in which case occupancy masks of up to a
+ * day are reused across queries for the same people, and changing an event only invalidates the
+ * masks of that event's attendees.
+ */
+public final class EventCalendar {
+  private static final TimeRange[] NO_RANGES = new TimeRange[0];
+  private static final Event[] NO_EVENTS = new Event[0];
+
+  private static final Comparator<Map.Entry<Long, Event>> BY_SEQUENCE =
+      new Comparator<Map.Entry<Long, Event>>() {
+        @Override
+        public int compare(Map.Entry<Long, Event> a, Map.Entry<Long, Event> b) {
+          return Long.compare(a.getKey(), b.getKey());
+        }
+      };
+
+  private volatile Snapshot snapshot;
+  private final AvailabilityCache cache;
+
+  private final LongAdder eventsScanned = new LongAdder();
+  private final LongAdder eventsOccupying = new LongAdder();
+
+  /**
+   * Creates an empty calendar.
+   */
+  public EventCalendar() {
+    this(Collections.<Event>emptyList());
+  }
+
+  /**
+   * Creates a calendar holding {@code events}.
+   *
+   * @param events The initial events. Must be non-null.
+   */
+  public EventCalendar(Collection<Event> events) {
+    this(events, null);
+  }
+
+  /**
+   * Creates a calendar holding {@code events} that caches occupancy in {@code cache}.
+   *
+   * @param events The initial events. Must be non-null.
+   * @param cache The cache to use, or null for none. Must not be shared with another calendar.
+   */
+  public EventCalendar(Collection<Event> events, AvailabilityCache cache) {
+    if (events == null) {
+      throw new IllegalArgumentException("events cannot be null. Use empty collection instead.");
+    }
+
+    Snapshot initial = new Snapshot();
+    Map<String, List<TimeRange>> grouped = new HashMap<>();
+    Map<String, List<Event>> groupedRecurring = new HashMap<>();
+    for (Event event : events) {
+      initial = initial.withEvent(initial.nextSequence, event);
+      for (String attendee : event.getAttendees()) {
+        if (event.isRecurring()) {
+          List<Event> recurringEvents = groupedRecurring.get(attendee);
+          if (recurringEvents == null) {
+            recurringEvents = new ArrayList<>();
+            groupedRecurring.put(attendee, recurringEvents);
+          }
+          recurringEvents.add(event);
+          continue;
+        }
+
+        List<TimeRange> ranges = grouped.get(attendee);
+        if (ranges == null) {
+          ranges = new ArrayList<>();
+          grouped.put(attendee, ranges);
+        }
+        ranges.add(event.getWhen());
+      }
+    }
+
+    // Building each attendee's ranges in one go is cheaper than inserting them one at a time.
+    PersistentHashMap<String, BusyRanges> index = initial.index;
+    for (Map.Entry<String, List<TimeRange>> entry : grouped.entrySet()) {
+      TimeRange[] ranges = entry.getValue().toArray(NO_RANGES);
+      Arrays.sort(ranges, TimeRange.ORDER_BY_START);
+      index = index.put(entry.getKey(), new BusyRanges(ranges));
+    }
+
+    PersistentHashMap<String, Event[]> recurring = initial.recurring;
+    for (Map.Entry<String, List<Event>> entry : groupedRecurring.entrySet()) {
+      recurring = recurring.put(entry.getKey(), entry.getValue().toArray(NO_EVENTS));
+    }
+
+    this.snapshot = new Snapshot(initial.events, initial.sequences, index, recurring,
+        initial.nextSequence);
+    this.cache = cache;
+  }
+
+  private EventCalendar(Snapshot snapshot) {
+    this.snapshot = snapshot;
+    this.cache = null;
+  }
+
+  /**
+   * Adds an event to the calendar.
+   */
+  public synchronized void add(Event event) {
+    Snapshot current = snapshot;
+    snapshot = current.withEvent(current.nextSequence, event).indexed(event);
+    // Invalidate after publishing, so a reader that beats the invalidation can't cache old data.
+    if (cache != null) {
+      cache.invalidate(event.getAttendees());
+    }
+  }
+
+  /**
+   * Removes one occurrence of an event from the calendar.
+   *
+   * @return true if the event was in the calendar.
+   */
+  public synchronized boolean remove(Event event) {
+    Snapshot current = snapshot;
+
+    long[] sequences = current.sequences.get(new EventKey(event));
+    if (sequences == null) {
+      return false;
+    }
+
+    snapshot = current.withoutEvent(sequences[0], event).unindexed(event);
+    if (cache != null) {
+      cache.invalidate(event.getAttendees());
+    }
+    return true;
+  }
+
+  /**
+   * Replaces one occurrence of {@code from} with {@code to} in a single change, so that no reader
+   * sees the calendar with neither or both of them.
+   *
+   * @return true if {@code from} was in the calendar.
+   */
+  public synchronized boolean replace(Event from, Event to) {
+    Snapshot current = snapshot;
+
+    long[] sequences = current.sequences.get(new EventKey(from));
+    if (sequences == null) {
+      return false;
+    }
+
+    // Reusing the sequence number keeps the new event where the old one was in getEvents.
+    long sequence = sequences[0];
+    snapshot = current.withoutEvent(sequence, from).unindexed(from)
+        .withEvent(sequence, to).indexed(to);
+    if (cache != null) {
+      Set<String> affected = new HashSet<>(from.getAttendees());
+      affected.addAll(to.getAttendees());
+      cache.invalidate(affected);
+    }
+    return true;
+  }
+
+  /**
+   * Returns a calendar frozen at the current state of this one. Later changes to this calendar
+   * don't affect the returned calendar. This is cheap, since nothing is copied. The frozen
+   * calendar doesn't use this calendar's cache, which follows the live state.
+   */
+  public EventCalendar snapshot() {
+    return new EventCalendar(snapshot);
+  }
+
+  /**
+   * Returns a read-only list of every event in the calendar, in the order they were added. An
+   * event that replaced another takes its place.
+   */
+  public List<Event> getEvents() {
+    List<Map.Entry<Long, Event>> entries = snapshot.events.entries();
+    Collections.sort(entries, BY_SEQUENCE);
+
+    List<Event> events = new ArrayList<>(entries.size());
+    for (Map.Entry<Long, Event> entry : entries) {
+      events.add(entry.getValue());
+    }
+    return Collections.unmodifiableList(events);
+  }
+
+  /**
+   * Returns a read-only list of the times {@code attendee} is busy at one-off events, sorted by
+   * start time.
+   */
+  public List<TimeRange> getBusyRanges(String attendee) {
+    BusyRanges busy = snapshot.index.get(attendee);
+    return busy == null
+        ? Collections.<TimeRange>emptyList()
+        : Collections.unmodifiableList(Arrays.asList(busy.ranges));
+  }
+
+  /**
+   * Returns the times {@code attendee} is busy that overlap {@code window}, including occurrences
+   * of recurring events, sorted by start time.
+   */
+  public List<TimeRange> getBusyRanges(String attendee, TimeRange window) {
+    Snapshot current = snapshot;
+
+    List<TimeRange> busy = new ArrayList<>();
+    BusyRanges attendeeBusy = current.index.get(attendee);
+    if (attendeeBusy != null) {
+      TimeRange[] ranges = attendeeBusy.ranges;
+      int first = attendeeBusy.firstEndingAfter(window.start());
+      for (int i = first; i < ranges.length && ranges[i].start() < window.end(); i++) {
+        if (ranges[i].end() > window.start()) {
+          busy.add(ranges[i]);
+        }
+      }
+    }
+
+    Event[] recurringEvents = current.recurring.get(attendee);
+    if (recurringEvents != null) {
+      for (Event event : recurringEvents) {
+        busy.addAll(event.occurrences(window));
+      }
+      Collections.sort(busy, TimeRange.ORDER_BY_START);
+    }
+    return busy;
+  }
+
+  /**
+   * Returns the minutes within {@code window} during which any of {@code attendees} is busy. Only
+   * the events of those attendees are visited. Masks are only cached for windows of up to a day, so
+   * a few long searches can't fill the cache with masks many times the usual size.
+   */
+  public OccupancyMask getOccupancy(Collection<String> attendees, TimeRange window) {
+    if (cache == null || attendees.isEmpty() || window.duration() > TimeRange.MINUTES_PER_DAY) {
+      Snapshot current = snapshot;
+      OccupancyMask occupancy = new OccupancyMask(window);
+      for (String attendee : attendees) {
+        occupy(occupancy, current, attendee);
+      }
+      return occupancy;
+    }
+
+    OccupancyMask cached = cache.get(attendees, window);
+    if (cached != null) {
+      return cached;
+    }
+
+    // Read the generation before the snapshot, so that any change published after the snapshot
+    // was read also stops the result from being cached.
+    long generation = cache.generation();
+    Snapshot current = snapshot;
+
+    // Build the group's mask out of each attendee's mask, which other groups can reuse.
+    OccupancyMask occupancy = new OccupancyMask(window);
+    for (String attendee : attendees) {
+      Collection<String> single = Collections.singleton(attendee);
+      OccupancyMask attendeeOccupancy = attendees.size() == 1 ? null : cache.get(single, window);
+      if (attendeeOccupancy == null) {
+        attendeeOccupancy = new OccupancyMask(window);
+        occupy(attendeeOccupancy, current, attendee);
+        if (attendees.size() > 1) {
+          cache.put(single, attendeeOccupancy, generation);
+        }
+      }
+      occupancy.or(attendeeOccupancy);
+    }
+
+    cache.put(attendees, occupancy, generation);
+    return occupancy;
+  }
+
+  /**
+   * Returns the cache this calendar uses, or null if it doesn't use one.
+   */
+  public AvailabilityCache getCache() {
+    return cache;
+  }
+
+  /**
+   * Returns how many events occupancy has been built from: one-off events from the first that
+   * could overlap the window up to the end of the window, and every recurring event, of the
+   * attendees asked about. Masks served from the cache scan nothing.
+   */
+  public long eventsScanned() {
+    return eventsScanned.sum();
+  }
+
+  /**
+   * Returns how many of the events scanned actually overlapped the window, counting each
+   * occurrence of a recurring event.
+   */
+  public long eventsOccupying() {
+    return eventsOccupying.sum();
+  }
+
+  private void occupy(OccupancyMask occupancy, Snapshot snapshot, String attendee) {
+    int scanned = 0;
+    int occupying = 0;
+
+    BusyRanges busy = snapshot.index.get(attendee);
+    if (busy != null) {
+      // Ranges are sorted by start, so nothing past the first range starting after the window can
+      // overlap it, and nothing before the first that ends after the window starts can either.
+      TimeRange[] ranges = busy.ranges;
+      int windowStart = occupancy.origin();
+      int windowEnd = windowStart + occupancy.length();
+      int first = busy.firstEndingAfter(windowStart);
+      for (int i = first; i < ranges.length && ranges[i].start() < windowEnd; i++) {
+        occupancy.occupy(ranges[i]);
+        scanned++;
+        if (ranges[i].end() > windowStart) {
+          occupying++;
+        }
+      }
+    }
+
+    Event[] recurringEvents = snapshot.recurring.get(attendee);
+    if (recurringEvents != null) {
+      TimeRange window = occupancy.window();
+      for (Event event : recurringEvents) {
+        List<TimeRange> occurrences = event.occurrences(window);
+        for (TimeRange when : occurrences) {
+          occupancy.occupy(when);
+        }
+        scanned++;
+        occupying += occurrences.size();
+      }
+    }
+
+    // One update per attendee rather than per event keeps the counters off the inner loops.
+    eventsScanned.add(scanned);
+    eventsOccupying.add(occupying);
+  }
+
+  /**
+   * One attendee's one-off busy times, sorted by start. maxEnds[i] is the latest end of any of the
+   * first i + 1 ranges, which never decreases, so the first range that might overlap a window can
+   * be found by binary search rather than a scan of the attendee's whole history.
+   */
+  private static final class BusyRanges {
+    private final TimeRange[] ranges;
+    private final int[] maxEnds;
+
+    BusyRanges(TimeRange[] ranges) {
+      this.ranges = ranges;
+      this.maxEnds = new int[ranges.length];
+      int maxEnd = Integer.MIN_VALUE;
+      for (int i = 0; i < ranges.length; i++) {
+        maxEnd = Math.max(maxEnd, ranges[i].end());
+        maxEnds[i] = maxEnd;
+      }
+    }
+
+    // Returns the index of the first range that may end after minute, or ranges.length if none do.
+    int firstEndingAfter(int minute) {
+      int low = 0;
+      int high = ranges.length;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (maxEnds[middle] > minute) {
+          high = middle;
+        } else {
+          low = middle + 1;
+        }
+      }
+      return low;
+    }
+
+    static BusyRanges insert(BusyRanges busy, TimeRange range) {
+      if (busy == null) {
+        return new BusyRanges(new TimeRange[] {range});
+      }
+
+      TimeRange[] ranges = busy.ranges;
+      int position = Arrays.binarySearch(ranges, range, TimeRange.ORDER_BY_START);
+      if (position < 0) {
+        position = -position - 1;
+      }
+
+      TimeRange[] inserted = new TimeRange[ranges.length + 1];
+      System.arraycopy(ranges, 0, inserted, 0, position);
+      inserted[position] = range;
+      System.arraycopy(ranges, position, inserted, position + 1, ranges.length - position);
+      return new BusyRanges(inserted);
+    }
+
+    // Returns busy without one copy of range, or null if nothing is left.
+    static BusyRanges delete(BusyRanges busy, TimeRange range) {
+      TimeRange[] ranges = busy.ranges;
+      if (ranges.length == 1) {
+        return null;
+      }
+
+      int position = Arrays.asList(ranges).indexOf(range);
+      TimeRange[] deleted = new TimeRange[ranges.length - 1];
+      System.arraycopy(ranges, 0, deleted, 0, position);
+      System.arraycopy(ranges, position + 1, deleted, position, deleted.length - position);
+      return new BusyRanges(deleted);
+    }
+  }
+
+  /**
+   * An event as a map key. Event hashes only its title, and many events can share one, so this
+   * hashes the time and attendees too.
+   */
+  private static final class EventKey {
+    private final Event event;
+    private final int hash;
+
+    EventKey(Event event) {
+      this.event = event;
+      this.hash = (event.hashCode() * 31 + event.getWhen().hashCode()) * 31
+          + event.getAttendeeIds().hashCode();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof EventKey && event.equals(((EventKey) other).event);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  /** An immutable view of the calendar at one point in time. */
+  private static final class Snapshot {
+    // Every event by a sequence number that orders them as they were added.
+    private final PersistentHashMap<Long, Event> events;
+    // The sequence numbers of each distinct event, ascending, since an event may be added twice.
+    private final PersistentHashMap<EventKey, long[]> sequences;
+    private final PersistentHashMap<String, BusyRanges> index;
+    // Recurring events by attendee, in the order they were added.
+    private final PersistentHashMap<String, Event[]> recurring;
+    private final long nextSequence;
+
+    Snapshot() {
+      this(PersistentHashMap.<Long, Event>empty(), PersistentHashMap.<EventKey, long[]>empty(),
+          PersistentHashMap.<String, BusyRanges>empty(), PersistentHashMap.<String, Event[]>empty(),
+          0);
+    }
+
+    Snapshot(PersistentHashMap<Long, Event> events, PersistentHashMap<EventKey, long[]> sequences,
+        PersistentHashMap<String, BusyRanges> index, PersistentHashMap<String, Event[]> recurring,
+        long nextSequence) {
+      this.events = events;
+      this.sequences = sequences;
+      this.index = index;
+      this.recurring = recurring;
+      this.nextSequence = nextSequence;
+    }
+
+    // Returns this snapshot with event listed under sequence, without indexing its attendees.
+    Snapshot withEvent(long sequence, Event event) {
+      EventKey key = new EventKey(event);
+      long[] existing = sequences.get(key);
+      long[] added;
+      if (existing == null) {
+        added = new long[] {sequence};
+      } else {
+        int position = -Arrays.binarySearch(existing, sequence) - 1;
+        added = new long[existing.length + 1];
+        System.arraycopy(existing, 0, added, 0, position);
+        added[position] = sequence;
+        System.arraycopy(existing, position, added, position + 1, existing.length - position);
+      }
+
+      return new Snapshot(events.put(sequence, event), sequences.put(key, added), index,
+          recurring, Math.max(nextSequence, sequence + 1));
+    }
+
+    // Returns this snapshot without the copy of event listed under sequence.
+    Snapshot withoutEvent(long sequence, Event event) {
+      EventKey key = new EventKey(event);
+      long[] existing = sequences.get(key);
+      PersistentHashMap<EventKey, long[]> newSequences;
+      if (existing.length == 1) {
+        newSequences = sequences.remove(key);
+      } else {
+        int position = Arrays.binarySearch(existing, sequence);
+        long[] removed = new long[existing.length - 1];
+        System.arraycopy(existing, 0, removed, 0, position);
+        System.arraycopy(existing, position + 1, removed, position, removed.length - position);
+        newSequences = sequences.put(key, removed);
+      }
+
+      return new Snapshot(events.remove(sequence), newSequences, index, recurring, nextSequence);
+    }
+
+    // Returns this snapshot with event's times added under each of its attendees.
+    Snapshot indexed(Event event) {
+      PersistentHashMap<String, BusyRanges> newIndex = index;
+      PersistentHashMap<String, Event[]> newRecurring = recurring;
+      for (String attendee : event.getAttendees()) {
+        if (event.isRecurring()) {
+          Event[] recurringEvents = newRecurring.get(attendee);
+          if (recurringEvents == null) {
+            newRecurring = newRecurring.put(attendee, new Event[] {event});
+          } else {
+            Event[] added = Arrays.copyOf(recurringEvents, recurringEvents.length + 1);
+            added[recurringEvents.length] = event;
+            newRecurring = newRecurring.put(attendee, added);
+          }
+        } else {
+          newIndex = newIndex.put(
+              attendee, BusyRanges.insert(newIndex.get(attendee), event.getWhen()));
+        }
+      }
+      return new Snapshot(events, sequences, newIndex, newRecurring, nextSequence);
+    }
+
+    // Returns this snapshot with the times of an event that is in it removed from its attendees.
+    Snapshot unindexed(Event event) {
+      PersistentHashMap<String, BusyRanges> newIndex = index;
+      PersistentHashMap<String, Event[]> newRecurring = recurring;
+      for (String attendee : event.getAttendees()) {
+        if (event.isRecurring()) {
+          Event[] recurringEvents = newRecurring.get(attendee);
+          if (recurringEvents.length == 1) {
+            newRecurring = newRecurring.remove(attendee);
+          } else {
+            int position = Arrays.asList(recurringEvents).indexOf(event);
+            Event[] removed = new Event[recurringEvents.length - 1];
+            System.arraycopy(recurringEvents, 0, removed, 0, position);
+            System.arraycopy(
+                recurringEvents, position + 1, removed, position, removed.length - position);
+            newRecurring = newRecurring.put(attendee, removed);
+          }
+        } else {
+          BusyRanges busy = BusyRanges.delete(newIndex.get(attendee), event.getWhen());
+          newIndex = busy == null ? newIndex.remove(attendee) : newIndex.put(attendee, busy);
+        }
+      }
+      return new Snapshot(events, sequences, newIndex, newRecurring, nextSequence);
+    }
+  }
+}
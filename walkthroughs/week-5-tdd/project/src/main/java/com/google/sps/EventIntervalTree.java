@@ -0,0 +1,171 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An augmented interval tree over events, keyed by {@code Event.getWhen()}, for finding the events
+ * that overlap a window without scanning every event.
+ *
+ * <p>The tree is stored implicitly in arrays sorted by start time: the root of any slice
+ * {@code [lo, hi)} is its middle element, and each node records the latest end time in its subtree.
+ * A search skips any subtree whose latest end is before the window, and everything to the right of
+ * a node that starts after the window, so finding the k events overlapping a window costs
+ * O(log n + k). The tree is immutable once built.
+ *
+ * <p>A recurring event is stored with the span from its first start to its last end, and is only
+ * reported for a window that one of its occurrences actually overlaps.
+ */
+public final class EventIntervalTree {
+  private static final Comparator<Event> ORDER_BY_START = new Comparator<Event>() {
+    @Override
+    public int compare(Event a, Event b) {
+      return TimeRange.ORDER_BY_START.compare(a.getWhen(), b.getWhen());
+    }
+  };
+
+  private final Event[] events;
+  private final int[] starts;
+  private final int[] ends;
+  // The latest end of any event in the subtree rooted at each index.
+  private final int[] maxEnds;
+
+  /**
+   * Builds a tree holding {@code events}.
+   *
+   * @param events The events to index. Must be non-null.
+   */
+  public EventIntervalTree(Collection<Event> events) {
+    if (events == null) {
+      throw new IllegalArgumentException("events cannot be null. Use empty collection instead.");
+    }
+
+    this.events = events.toArray(new Event[events.size()]);
+    Arrays.sort(this.events, ORDER_BY_START);
+
+    this.starts = new int[this.events.length];
+    this.ends = new int[this.events.length];
+    this.maxEnds = new int[this.events.length];
+    for (int i = 0; i < this.events.length; i++) {
+      starts[i] = this.events[i].getWhen().start();
+      ends[i] = this.events[i].lastEnd();
+    }
+    buildMaxEnds(0, this.events.length);
+  }
+
+  /**
+   * Returns the number of events in the tree.
+   */
+  public int size() {
+    return events.length;
+  }
+
+  /**
+   * Returns every event overlapping {@code [start, end)}, in ascending order of start time.
+   */
+  public List<Event> overlapping(int start, int end) {
+    List<Event> found = new ArrayList<>();
+    collect(0, events.length, start, end, found);
+    return found;
+  }
+
+  /**
+   * Returns every event overlapping {@code window}, in ascending order of start time.
+   */
+  public List<Event> overlapping(TimeRange window) {
+    return overlapping(window.start(), window.end());
+  }
+
+  /**
+   * Returns whether any event overlapping {@code [start, end)} is attended by any of
+   * {@code attendees}. Stops at the first one found.
+   */
+  public boolean anyAttended(int start, int end, Collection<String> attendees) {
+    AttendeeSet attendeeIds = AttendeeSet.lookup(AttendeeDictionary.shared(), attendees);
+    return !attendeeIds.isEmpty() && findAttended(0, events.length, start, end, attendeeIds);
+  }
+
+  // Whether an event whose span overlaps [start, end) has an occurrence that does too.
+  private static boolean occursDuring(Event event, int start, int end) {
+    return !event.isRecurring()
+        || !event.occurrences(TimeRange.fromStartEnd(start, end, false)).isEmpty();
+  }
+
+  private int buildMaxEnds(int lo, int hi) {
+    if (lo >= hi) {
+      return Integer.MIN_VALUE;
+    }
+
+    int mid = (lo + hi) >>> 1;
+    int maxEnd = Math.max(ends[mid], Math.max(buildMaxEnds(lo, mid), buildMaxEnds(mid + 1, hi)));
+    maxEnds[mid] = maxEnd;
+    return maxEnd;
+  }
+
+  private void collect(int lo, int hi, int start, int end, List<Event> found) {
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+
+      // Nothing in this subtree ends after the window starts.
+      if (maxEnds[mid] <= start) {
+        return;
+      }
+
+      collect(lo, mid, start, end, found);
+
+      // This node, and everything to its right, starts at or after the end of the window.
+      if (starts[mid] >= end) {
+        return;
+      }
+
+      if (ends[mid] > start && occursDuring(events[mid], start, end)) {
+        found.add(events[mid]);
+      }
+
+      // Continue with the right subtree without recursing.
+      lo = mid + 1;
+    }
+  }
+
+  private boolean findAttended(int lo, int hi, int start, int end, AttendeeSet attendees) {
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (maxEnds[mid] <= start) {
+        return false;
+      }
+
+      if (findAttended(lo, mid, start, end, attendees)) {
+        return true;
+      }
+
+      if (starts[mid] >= end) {
+        return false;
+      }
+
+      if (ends[mid] > start && occursDuring(events[mid], start, end)
+          && events[mid].getAttendeeIds().intersects(attendees)) {
+        return true;
+      }
+
+      lo = mid + 1;
+    }
+    return false;
+  }
+}
@@ -17,9 +17,39 @@ package com.google.sps;
 import com.google.sps.TimeRange;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
 
 public final class FindMeetingQuery {
+  // Below this many events, building occupancy in parallel costs more than it saves.
+  private static final int PARALLEL_THRESHOLD = 16_384;
+
+  private final WorkingHoursDirectory workingHours;
+
+  /**
+   * Creates a query that treats every attendee as available at any time.
+   */
+  public FindMeetingQuery() {
+    this(null);
+  }
+
+  /**
+   * Creates a query that also keeps meetings within attendees' working hours. Every query applies
+   * them, except getOccupiedSlotsInDay.
+   * @param WorkingHoursDirectory workingHours the attendees' working hours, or null for none.
+   */
+  public FindMeetingQuery(WorkingHoursDirectory workingHours) {
+    this.workingHours = workingHours;
+  }
+
   /**
     * Determines the spaces within a 24 hour period occupied by attended events.
     * An event is considered attended if isAttended(event,request) returns true.
@@ -40,35 +70,33 @@ public final class FindMeetingQuery {
     boolean[] occupiedTimes = new boolean[SLOTS]; // Output array of occupied times in the day.
 
     // Mark slots in occupiedTimes as true if an attended event occurs there.
+    AttendeeSet attendees = request.getAttendeeIds();
     for (int i = 0; i < events.length; i++) {
       // If an event is not attended, it does not need to be considered.
-      if (!isAttended(events[i], request)) continue;
+      if (!isAttended(events[i], attendees)) continue;
 
-      TimeRange eventTime = events[i].getWhen();
-      int eventStart = eventTime.start() / THIRTY_MINUTES;
-      int eventEnd = (eventTime.end()) / THIRTY_MINUTES - 1;
+      for (TimeRange eventTime : events[i].occurrences(TimeRange.WHOLE_DAY)) {
+        int eventStart = Math.max(eventTime.start(), 0) / THIRTY_MINUTES;
+        int eventEnd = (eventTime.end()) / THIRTY_MINUTES - 1;
 
-      // Indicate all the slots between eventStart and EventEnd as occupied.
-      for (int j = eventStart; j <= eventEnd && j < SLOTS; j++) occupiedTimes[j] = true;
+        // Indicate all the slots between eventStart and EventEnd as occupied.
+        for (int j = eventStart; j <= eventEnd && j < SLOTS; j++) occupiedTimes[j] = true;
+      }
     }
  
     return occupiedTimes;
   }
 
   /**
-    * Returns whether an event is attended by the required attendees from the Meeting Request.
+    * Returns whether an event is attended by any of the given attendees. Attendees are compared
+    * as interned IDs, so no Strings are hashed.
     *
     * @param Event event The input events to schedule the meeting around.
-    * @param MeetingRequest request The subject meeting request.
+    * @param AttendeeSet requestAttendees The attendees of the subject meeting request.
     * @return a boolean value that is true if the event and request have overlapping attendees.
   */
-  private static boolean isAttended(Event event, MeetingRequest request) {
-    Collection<String> eventAttendees = event.getAttendees();
-    Collection<String> requestAttendees = request.getAttendees();
-    for (String attendee : eventAttendees) if (requestAttendees.contains(attendee)) return true;
-
-    // Fallback if no attendees are found that belong to both the event and the meeting request.
-    return false;
+  private static boolean isAttended(Event event, AttendeeSet requestAttendees) {
+    return event.getAttendeeIds().intersects(requestAttendees);
   }
 
   /**
@@ -85,58 +113,790 @@ public final class FindMeetingQuery {
   }
 
   /**
-   * Calculates the amount of free space in a day for a meeting to take place.
+    * Determines the minutes within {@code window} occupied by events attended by any of
+    * {@code attendees}. Unlike getOccupiedSlotsInDay, this works at minute resolution and the
+    * window may span several days. Recurring events only contribute their occurrences within the
+    * window.
+    *
+    * @param Event[] events the (potentially unattended) events to consider.
+    * @param Collection<String> attendees the people whose events occupy time.
+    * @param TimeRange window the span of time the resulting mask covers.
+    * @return an OccupancyMask over the window with attended minutes marked as occupied.
+  */
+  protected static OccupancyMask getOccupancy(
+      Event[] events, Collection<String> attendees, TimeRange window) {
+    OccupancyMask occupancy = new OccupancyMask(window);
+    AttendeeSet attendeeIds = AttendeeSet.lookup(AttendeeDictionary.shared(), attendees);
+    if (attendeeIds.isEmpty()) return occupancy;
+
+    for (Event event : events) {
+      if (!isAttended(event, attendeeIds)) continue;
+      for (TimeRange when : event.occurrences(window)) occupancy.occupy(when);
+    }
+
+    return occupancy;
+  }
+
+  /**
+    * Determines, in a single pass over the events, the minutes occupied by the required attendees
+    * and the minutes occupied by the optional attendees of a meeting request.
+    *
+    * An event attended by any required attendee is only marked in {@code mandatory}, since
+    * everyone's availability is always the union of both masks anyway.
+    *
+    * Large calendars are split across the common fork-join pool when there is more than one core
+    * to run on; see getOccupancyParallel.
+    *
+    * @param Event[] events the (potentially unattended) events to consider.
+    * @param MeetingRequest request the meeting request used to determine event attendence.
+    * @param OccupancyMask mandatory receives the time occupied by required attendees.
+    * @param OccupancyMask optional receives the remaining time occupied by optional attendees.
+  */
+  protected static void getOccupancy(Event[] events, MeetingRequest request,
+      OccupancyMask mandatory, OccupancyMask optional) {
+    if (events.length >= PARALLEL_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1) {
+      getOccupancyParallel(events, request, mandatory, optional);
+    } else {
+      getOccupancy(events, 0, events.length, request, mandatory, optional);
+    }
+  }
+
+  /**
+    * Does the same as getOccupancy, always in parallel. The events are split into partitions on
+    * the common fork-join pool, each partition is marked into masks of its own, and the partial
+    * masks are ORed together as the partitions finish.
+    *
+    * @param Event[] events the (potentially unattended) events to consider.
+    * @param MeetingRequest request the meeting request used to determine event attendence.
+    * @param OccupancyMask mandatory receives the time occupied by required attendees.
+    * @param OccupancyMask optional receives the remaining time occupied by optional attendees.
+  */
+  protected static void getOccupancyParallel(Event[] events, MeetingRequest request,
+      OccupancyMask mandatory, OccupancyMask optional) {
+    OccupancyMask[] partial = ForkJoinPool.commonPool().invoke(
+        new OccupancyTask(events, request, mandatory.window(), 0, events.length));
+    mandatory.or(partial[0]);
+    optional.or(partial[1]);
+  }
+
+  /**
+    * Does the same as getOccupancy for {@code events[from, to)}, always on the calling thread.
+    *
+    * @param Event[] events the (potentially unattended) events to consider.
+    * @param int from the index of the first event to consider.
+    * @param int to one past the index of the last event to consider.
+    * @param MeetingRequest request the meeting request used to determine event attendence.
+    * @param OccupancyMask mandatory receives the time occupied by required attendees.
+    * @param OccupancyMask optional receives the remaining time occupied by optional attendees.
+  */
+  protected static void getOccupancy(Event[] events, int from, int to, MeetingRequest request,
+      OccupancyMask mandatory, OccupancyMask optional) {
+    AttendeeSet attendees = request.getAttendeeIds();
+    AttendeeSet optionalAttendees = request.getOptionalAttendeeIds();
+    TimeRange window = mandatory.window();
+
+    for (int i = from; i < to; i++) {
+      Event event = events[i];
+      OccupancyMask occupancy;
+      if (isAttended(event, attendees)) occupancy = mandatory;
+      else if (isAttended(event, optionalAttendees)) occupancy = optional;
+      else continue;
+
+      for (TimeRange when : event.occurrences(window)) occupancy.occupy(when);
+    }
+  }
+
+  /**
+    * Marks the time outside each attendee's working hours as occupied, in the mask for whether
+    * they are required or optional. Each distinct profile's mask is cached, so this is a few ORs.
+    *
+    * @param MeetingRequest request the input meeting to be scheduled.
+    * @param OccupancyMask mandatory time occupied by required attendees. Modified by this call.
+    * @param OccupancyMask optional time occupied by optional attendees. Modified by this call.
+  */
+  private void occupyOffHours(
+      MeetingRequest request, OccupancyMask mandatory, OccupancyMask optional) {
+    if (workingHours == null) return;
+
+    workingHours.occupyOffHours(request.getAttendees(), mandatory);
+    workingHours.occupyOffHours(request.getOptionalAttendees(), optional);
+  }
+
+  /**
+    * Returns the time within a window outside the working hours of any of the attendees, for the
+    * queries that don't build an OccupancyMask of their own.
+    *
+    * @param Collection<String> attendees the people whose working hours apply.
+    * @param TimeRange window the span of time to search.
+    * @return a list of TimeRanges of off-hours time, in ascending order. Empty without working
+    *     hours.
+  */
+  private List<TimeRange> offHours(Collection<String> attendees, TimeRange window) {
+    List<TimeRange> ranges = new ArrayList<TimeRange>();
+    if (workingHours == null || attendees.isEmpty()) return ranges;
+
+    OccupancyMask offHours = new OccupancyMask(window);
+    workingHours.occupyOffHours(attendees, offHours);
+    for (int start = offHours.nextOccupied(window.start()); start < window.end(); ) {
+      int end = offHours.nextFree(start);
+      ranges.add(TimeRange.fromStartEnd(start, end, false));
+      start = offHours.nextOccupied(end);
+    }
+    return ranges;
+  }
+
+  /**
+    * Picks the free time for a request from its required and optional occupancy.
+    *
+    * If there is time when everyone (required and optional) can attend, only that time is
+    * returned. Otherwise the time that suits just the required attendees is returned, unless there
+    * are no required attendees, in which case there are no options.
+    *
+    * @param MeetingRequest request the input meeting to be scheduled.
+    * @param OccupancyMask mandatory time occupied by required attendees.
+    * @param OccupancyMask optional time occupied by optional attendees. Modified by this call.
+    * @return a list of TimeRanges indicating free time, in ascending order.
+  */
+  private static List<TimeRange> getFreeRanges(
+      MeetingRequest request, OccupancyMask mandatory, OccupancyMask optional) {
+    long duration = request.getDuration();
+    if (request.getOptionalAttendees().isEmpty()) return mandatory.freeRanges(duration);
+
+    OccupancyMask everyone = optional;
+    everyone.or(mandatory);
+    List<TimeRange> freeForEveryone = everyone.freeRanges(duration);
+
+    if (!freeForEveryone.isEmpty() || request.getAttendees().isEmpty()) return freeForEveryone;
+    return mandatory.freeRanges(duration);
+  }
+
+  /**
+   * Calculates the amount of free space in a day for a meeting to take place. Optional attendees
+   * are included when there is time that suits them too.
    * @param Collection<Event> events the occupying events.
    * @param MeetingRequest request the input meeting to be scheduled.
    * @return a collection of TimeRanges indicates free time.
    */
   public Collection<TimeRange> query(Collection<Event> events, MeetingRequest request) {
-    List<TimeRange> freeTimes = new ArrayList<TimeRange>(); // List for possible meeting times.
+    return query(events, request, TimeRange.WHOLE_DAY);
+  }
+
+  /**
+   * Calculates the free space within an arbitrary window (e.g. a whole week) for a meeting to
+   * take place.
+   * @param Collection<Event> events the occupying events.
+   * @param MeetingRequest request the input meeting to be scheduled.
+   * @param TimeRange window the span of time to search.
+   * @return a collection of TimeRanges indicating free time, in ascending order.
+   */
+  public Collection<TimeRange> query(
+      Collection<Event> events, MeetingRequest request, TimeRange window) {
+    // If the meeting can't fit in the window at all, there is nothing to search.
+    if (request.getDuration() > window.duration()) return new ArrayList<TimeRange>();
+
     Event[] eventsArray = events.toArray(new Event[events.size()]);
-    long duration = request.getDuration() / 30; // Meeting duration in number of half hour slots.
-    
-    // If the duration is out of bounds, we don't need to add any times.
-    if (duration <= 0 ) {
-      freeTimes.add(TimeRange.WHOLE_DAY);
-      return freeTimes;
+    OccupancyMask mandatory = new OccupancyMask(window);
+    OccupancyMask optional = new OccupancyMask(window);
+    getOccupancy(eventsArray, request, mandatory, optional);
+
+    occupyOffHours(request, mandatory, optional);
+    return getFreeRanges(request, mandatory, optional);
+  }
+
+  /**
+   * Calculates the free space within {@code window} for a meeting to take place, using an interval
+   * tree so that only the events overlapping the window are visited. This keeps searches over a
+   * short window of a large calendar from scanning every event.
+   * @param EventIntervalTree tree the occupying events, indexed by time.
+   * @param MeetingRequest request the input meeting to be scheduled.
+   * @param TimeRange window the span of time to search.
+   * @return a collection of TimeRanges indicating free time, in ascending order.
+   */
+  public Collection<TimeRange> query(
+      EventIntervalTree tree, MeetingRequest request, TimeRange window) {
+    if (request.getDuration() > window.duration()) return new ArrayList<TimeRange>();
+
+    List<Event> eventsInWindow = tree.overlapping(window);
+    Event[] eventsArray = eventsInWindow.toArray(new Event[eventsInWindow.size()]);
+    OccupancyMask mandatory = new OccupancyMask(window);
+    OccupancyMask optional = new OccupancyMask(window);
+    getOccupancy(eventsArray, request, mandatory, optional);
+
+    occupyOffHours(request, mandatory, optional);
+    return getFreeRanges(request, mandatory, optional);
+  }
+
+  /**
+   * Calculates the amount of free space in a day for a meeting to take place, working on packed
+   * IntervalLists throughout and only creating TimeRanges for the answer.
+   * @param Collection<Event> events the occupying events.
+   * @param MeetingRequest request the input meeting to be scheduled.
+   * @return a collection of TimeRanges indicates free time.
+   */
+  public Collection<TimeRange> queryIntervals(Collection<Event> events, MeetingRequest request) {
+    return findFreeIntervals(events, request, TimeRange.WHOLE_DAY).toTimeRanges();
+  }
+
+  /**
+   * Calculates the free space within {@code window} for a meeting to take place as an
+   * IntervalList. Optional attendees are handled the same way as in query.
+   * @param Collection<Event> events the occupying events.
+   * @param MeetingRequest request the input meeting to be scheduled.
+   * @param TimeRange window the span of time to search.
+   * @return an IntervalList of the free time.
+   */
+  public IntervalList findFreeIntervals(
+      Collection<Event> events, MeetingRequest request, TimeRange window) {
+    long duration = request.getDuration();
+    if (duration > window.duration()) return new IntervalList();
+
+    AttendeeSet attendees = request.getAttendeeIds();
+    AttendeeSet optionalAttendees = request.getOptionalAttendeeIds();
+
+    IntervalList mandatory = new IntervalList();
+    IntervalList optional = new IntervalList();
+    for (Event event : events) {
+      IntervalList busy;
+      if (isAttended(event, attendees)) busy = mandatory;
+      else if (isAttended(event, optionalAttendees)) busy = optional;
+      else continue;
+
+      for (TimeRange when : event.occurrences(window)) busy.add(when);
     }
-    if (duration > 47) return freeTimes;
+    for (TimeRange when : offHours(request.getAttendees(), window)) mandatory.add(when);
+    for (TimeRange when : offHours(request.getOptionalAttendees(), window)) optional.add(when);
 
-    boolean[] occupiedTimes = getOccupiedSlotsInDay(eventsArray, request);
- 
-    int lowerBound = 0; // Start of Time Gap (first unoccupied slot past endPointer).
-    int upperBound = 0; // End of Time Gap (last unoccupied slot after lowerBound).
- 
-    // Loop through array and find gaps between occupied slots.
-    // endPointer points at the first most scanned element in the array.
-    // If gaps are sufficiently large, add them to list.
-    for (int endPointer = 0; endPointer < occupiedTimes.length; endPointer++) {
-      boolean slot = occupiedTimes[endPointer];
-
-      // If we find an occupied slot, set our gap upper bound to that slot.
-      if (slot == true) upperBound = endPointer;
-      // Increase search bound by one to include the last element.
-      else if(endPointer == occupiedTimes.length-1) upperBound = endPointer+1; 
- 
-      if (slot == true || endPointer == occupiedTimes.length-1) {
-        // The range between these two values is the duration of the gap.
-        int gapSize = upperBound - lowerBound;
-        
-        // If the gap is sufficiently large, add a TimeRange from those bounds to our output list.
-        if (gapSize >= duration) {
-          freeTimes.add(TimeRange.fromStartEnd(convertToMinuteTimestamp(lowerBound),
-                convertToMinuteTimestamp(upperBound),false));
+    if (request.getOptionalAttendees().isEmpty()) return mandatory.gaps(window, duration);
+
+    IntervalList freeForEveryone = mandatory.union(optional).gaps(window, duration);
+    if (!freeForEveryone.isEmpty() || request.getAttendees().isEmpty()) return freeForEveryone;
+    return mandatory.gaps(window, duration);
+  }
+
+  /**
+   * Calculates the amount of free space in a day for a meeting to take place, using an indexed
+   * calendar so that only the events of the requested attendees are considered.
+   * @param EventCalendar calendar the occupying events, indexed by attendee.
+   * @param MeetingRequest request the input meeting to be scheduled.
+   * @return a collection of TimeRanges indicates free time.
+   */
+  public Collection<TimeRange> query(EventCalendar calendar, MeetingRequest request) {
+    return query(calendar, request, TimeRange.WHOLE_DAY);
+  }
+
+  /**
+   * Calculates the free space within an arbitrary window for a meeting to take place, using an
+   * indexed calendar.
+   * @param EventCalendar calendar the occupying events, indexed by attendee.
+   * @param MeetingRequest request the input meeting to be scheduled.
+   * @param TimeRange window the span of time to search.
+   * @return a collection of TimeRanges indicating free time, in ascending order.
+   */
+  public Collection<TimeRange> query(
+      EventCalendar calendar, MeetingRequest request, TimeRange window) {
+    if (request.getDuration() > window.duration()) return new ArrayList<TimeRange>();
+
+    OccupancyMask mandatory = calendar.getOccupancy(request.getAttendees(), window);
+    OccupancyMask optional = calendar.getOccupancy(request.getOptionalAttendees(), window);
+
+    occupyOffHours(request, mandatory, optional);
+    return getFreeRanges(request, mandatory, optional);
+  }
+
+  /**
+   * Calculates the free space within an arbitrary window for a meeting to take place, reading the
+   * events straight out of a memory-mapped snapshot.
+   * @param CalendarSnapshot snapshot the occupying events.
+   * @param MeetingRequest request the input meeting to be scheduled.
+   * @param TimeRange window the span of time to search.
+   * @return a collection of TimeRanges indicating free time, in ascending order.
+   */
+  public Collection<TimeRange> query(
+      CalendarSnapshot snapshot, MeetingRequest request, TimeRange window) {
+    if (request.getDuration() > window.duration()) return new ArrayList<TimeRange>();
+
+    OccupancyMask mandatory = snapshot.getOccupancy(request.getAttendees(), window);
+    OccupancyMask optional = snapshot.getOccupancy(request.getOptionalAttendees(), window);
+
+    occupyOffHours(request, mandatory, optional);
+    return getFreeRanges(request, mandatory, optional);
+  }
+
+  /**
+   * Calculates free time in a day by sweeping over the attended events rather than building an
+   * occupancy mask. Results are exact to the minute. Only required attendees are considered, and
+   * their time outside working hours counts as attended.
+   * @param Collection<Event> events the occupying events.
+   * @param MeetingRequest request the input meeting to be scheduled.
+   * @return a list of TimeRanges indicating free time, in ascending order.
+   */
+  public List<TimeRange> querySweep(Collection<Event> events, MeetingRequest request) {
+    return querySweep(events, request, TimeRange.WHOLE_DAY);
+  }
+
+  /**
+   * Calculates free time within {@code window} with a single sweep over the attended events.
+   *
+   * The attended ranges are sorted with TimeRange.ORDER_BY_START, then merged in one pass. The
+   * gaps between merged ranges are written back over the front of the same list, so apart from
+   * sorting this costs O(k) for k attended events and allocates nothing besides the output.
+   *
+   * // Attended  :     |--A--|  |---B---|
+   * //                     |--C--|
+   * // Window    : |--------------------------|
+   * // Output    : |---|                |-----|
+   *
+   * @param Collection<Event> events the occupying events.
+   * @param MeetingRequest request the input meeting to be scheduled.
+   * @param TimeRange window the span of time to search.
+   * @return a list of TimeRanges indicating free time, in ascending order.
+   */
+  public List<TimeRange> querySweep(
+      Collection<Event> events, MeetingRequest request, TimeRange window) {
+    List<TimeRange> ranges = new ArrayList<TimeRange>();
+    long duration = request.getDuration();
+    if (duration > window.duration()) return ranges;
+
+    AttendeeSet attendees = request.getAttendeeIds();
+    if (!attendees.isEmpty()) {
+      for (Event event : events) {
+        if (!isAttended(event, attendees)) continue;
+
+        // A one-off event is its own only occurrence, so skip building a list for it.
+        if (event.isRecurring()) {
+          for (TimeRange when : event.occurrences(window)) ranges.add(when);
+        } else {
+          TimeRange when = event.getWhen();
+          if (when.start() < window.end() && when.end() > window.start()) ranges.add(when);
         }
- 
-        // Fast forward lowerBound to next free space and update endPointer to continue from there.
-        for (lowerBound = endPointer; 
-            lowerBound < occupiedTimes.length && occupiedTimes[lowerBound] == true; 
-            lowerBound++);
-        endPointer = lowerBound;
       }
     }
- 
+    ranges.addAll(offHours(request.getAttendees(), window));
+    Collections.sort(ranges, TimeRange.ORDER_BY_START);
+
+    int busyCount = ranges.size();
+    int gapCount = 0; // Gaps found so far, stored at the front of ranges.
+    int freeFrom = window.start(); // Start of the current gap (end of everything merged so far).
+
+    // Every gap is found while reading a later busy range, so gapCount never passes i and writing
+    // a gap never overwrites a range that hasn't been read yet.
+    for (int i = 0; i < busyCount; i++) {
+      TimeRange busy = ranges.get(i);
+      if (busy.start() >= window.end()) break;
+      // Empty ranges occupy nothing, so they mustn't split a gap.
+      if (busy.end() <= freeFrom || busy.duration() == 0) continue;
+
+      if (busy.start() > freeFrom && busy.start() - freeFrom >= duration) {
+        ranges.set(gapCount++, TimeRange.fromStartEnd(freeFrom, busy.start(), false));
+      }
+      freeFrom = Math.max(freeFrom, busy.end());
+    }
+    ranges.subList(gapCount, busyCount).clear();
+
+    if (window.end() > freeFrom && window.end() - freeFrom >= duration) {
+      ranges.add(TimeRange.fromStartEnd(freeFrom, window.end(), false));
+    }
+
+    return ranges;
+  }
+
+  /**
+   * Calculates the free time in a day that suits every required attendee and as many optional
+   * attendees as possible.
+   * @param Collection<Event> events the occupying events.
+   * @param MeetingRequest request the input meeting to be scheduled.
+   * @param long timeBudgetMillis how long to spend before settling for required attendees only.
+   * @return a list of TimeRanges indicating free time, in ascending order.
+   */
+  public List<TimeRange> queryMaximizingOptional(
+      Collection<Event> events, MeetingRequest request, long timeBudgetMillis) {
+    return queryMaximizingOptional(events, request, TimeRange.WHOLE_DAY, timeBudgetMillis);
+  }
+
+  /**
+   * Calculates the free time within {@code window} that suits every required attendee and as many
+   * optional attendees as possible.
+   *
+   * Rather than trying subsets of optional attendees, this counts for every possible start minute
+   * how many optional attendees would miss a meeting starting then. Each optional attendee adds 1
+   * over the start minutes their events rule out (using a difference array), and a prefix sum
+   * recovers the counts. The cost is O(E + W) for E events and a window of W minutes, plus sorting
+   * each optional attendee's events, however many optional attendees there are.
+   *
+   * // Required  :             |--A--|
+   * // Optional  :   |--B--|            |--C--|
+   * // Window    : |-------------------------------|
+   * // Output    : |-|     |---|     |--|     |----|
+   *
+   * Time outside an attendee's working hours counts as one of their events.
+   *
+   * If the search runs past {@code timeBudgetMillis}, it stops and returns the time that suits the
+   * required attendees alone, which is always a valid (if less ideal) answer.
+   *
+   * @param Collection<Event> events the occupying events.
+   * @param MeetingRequest request the input meeting to be scheduled.
+   * @param TimeRange window the span of time to search.
+   * @param long timeBudgetMillis how long to spend before settling for required attendees only.
+   * @return a list of TimeRanges indicating free time, in ascending order.
+   */
+  public List<TimeRange> queryMaximizingOptional(Collection<Event> events,
+      MeetingRequest request, TimeRange window, long timeBudgetMillis) {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis);
+    List<TimeRange> freeTimes = new ArrayList<TimeRange>();
+    if (request.getDuration() > window.duration()) return freeTimes;
+
+    // A zero length meeting still needs a minute to be placed in.
+    int duration = (int) Math.max(request.getDuration(), 1);
+    AttendeeSet attendees = request.getAttendeeIds();
+    AttendeeSet optionalAttendees = request.getOptionalAttendeeIds();
+
+    // One pass over the events: mark required time, and group events by optional attendee.
+    OccupancyMask mandatory = new OccupancyMask(window);
+    Map<Integer, List<TimeRange>> optionalBusy = new HashMap<Integer, List<TimeRange>>();
+    for (Event event : events) {
+      if (isAttended(event, attendees)) {
+        for (TimeRange when : event.occurrences(window)) mandatory.occupy(when);
+        continue;
+      }
+
+      List<TimeRange> occurrences = event.occurrences(window);
+      AttendeeSet eventAttendees = event.getAttendeeIds();
+      for (int i = 0; i < eventAttendees.size(); i++) {
+        int attendee = eventAttendees.id(i);
+        if (!optionalAttendees.contains(attendee)) continue;
+
+        List<TimeRange> busy = optionalBusy.get(attendee);
+        if (busy == null) {
+          busy = new ArrayList<TimeRange>();
+          optionalBusy.put(attendee, busy);
+        }
+        busy.addAll(occurrences);
+      }
+    }
+
+    if (workingHours != null) {
+      workingHours.occupyOffHours(request.getAttendees(), mandatory);
+
+      // Someone with no events has no ID yet, but can still be out of hours, so they get a
+      // negative key of their own. Each name counts once, however often it is listed.
+      int unknown = 0;
+      for (String name : new LinkedHashSet<String>(request.getOptionalAttendees())) {
+        List<TimeRange> offHours = offHours(Collections.singletonList(name), window);
+        if (offHours.isEmpty()) continue;
+
+        int attendee = AttendeeDictionary.shared().lookup(name);
+        if (attendee < 0) attendee = --unknown;
+        List<TimeRange> busy = optionalBusy.get(attendee);
+        if (busy == null) {
+          busy = new ArrayList<TimeRange>();
+          optionalBusy.put(attendee, busy);
+        }
+        busy.addAll(offHours);
+      }
+    }
+
+    // missed[t] - missed[t - 1] is the change in how many optional attendees miss a meeting that
+    // starts t minutes into the window. Only starts in [0, lastStart] leave room for the meeting.
+    int lastStart = window.duration() - duration;
+    int[] missed = new int[lastStart + 2];
+    for (List<TimeRange> busy : optionalBusy.values()) {
+      if (System.nanoTime() - deadline >= 0) return mandatory.freeRanges(duration);
+
+      Collections.sort(busy, TimeRange.ORDER_BY_START);
+
+      // A meeting starting at t misses an event [s, e) when t is in [s - duration + 1, e). Merge
+      // these per attendee so each attendee is counted at most once for any start.
+      int runStart = -1;
+      int runEnd = -1;
+      for (TimeRange range : busy) {
+        // An empty event occupies nothing, so no meeting misses it.
+        if (range.duration() == 0) continue;
+
+        int from = Math.max(range.start() - window.start() - duration + 1, 0);
+        int to = Math.min(range.end() - window.start(), lastStart + 1);
+        if (from >= to) continue;
+
+        if (from > runEnd) {
+          if (runEnd > runStart) {
+            missed[runStart]++;
+            missed[runEnd]--;
+          }
+          runStart = from;
+        }
+        runEnd = Math.max(runEnd, to);
+      }
+      if (runEnd > runStart) {
+        missed[runStart]++;
+        missed[runEnd]--;
+      }
+    }
+    for (int t = 1; t <= lastStart; t++) missed[t] += missed[t - 1];
+
+    // Find the fewest optional attendees missed by any start that suits the required attendees.
+    List<TimeRange> mandatoryFree = mandatory.freeRanges(duration);
+    int fewestMissed = Integer.MAX_VALUE;
+    for (TimeRange free : mandatoryFree) {
+      int last = free.end() - window.start() - duration;
+      for (int t = free.start() - window.start(); t <= last; t++) {
+        fewestMissed = Math.min(fewestMissed, missed[t]);
+      }
+    }
+
+    // Emit each run of consecutive starts that achieve it, as the free time those starts span.
+    for (TimeRange free : mandatoryFree) {
+      int last = free.end() - window.start() - duration;
+      int runStart = -1;
+      for (int t = free.start() - window.start(); t <= last + 1; t++) {
+        boolean best = t <= last && missed[t] == fewestMissed;
+        if (best && runStart < 0) {
+          runStart = t;
+        } else if (!best && runStart >= 0) {
+          freeTimes.add(TimeRange.fromStartEnd(
+              window.start() + runStart, window.start() + t - 1 + duration, false));
+          runStart = -1;
+        }
+      }
+    }
+
     return freeTimes;
   }
 
+  /**
+   * Finds the {@code k} best times to hold a meeting within {@code window}, ranked by
+   * {@code preference}. Optional attendees are handled the same way as in query.
+   * @param Collection<Event> events the occupying events.
+   * @param MeetingRequest request the input meeting to be scheduled.
+   * @param TimeRange window the span of time to search.
+   * @param int k the most meeting times to return. Must be positive.
+   * @param SlotPreference preference how to rank meeting times.
+   * @return up to {@code k} meeting times of the requested duration, best first.
+   */
+  public List<TimeRange> queryBest(Collection<Event> events, MeetingRequest request,
+      TimeRange window, int k, SlotPreference preference) {
+    if (k <= 0) throw new IllegalArgumentException("k must be positive");
+    if (request.getDuration() > window.duration()) return new ArrayList<TimeRange>();
+
+    Event[] eventsArray = events.toArray(new Event[events.size()]);
+    OccupancyMask mandatory = new OccupancyMask(window);
+    OccupancyMask optional = new OccupancyMask(window);
+    getOccupancy(eventsArray, request, mandatory, optional);
+
+    occupyOffHours(request, mandatory, optional);
+    return getBestTimes(request, mandatory, optional, k, preference);
+  }
+
+  /**
+   * Finds the {@code k} best times to hold a meeting within {@code window}, ranked by
+   * {@code preference}, using an indexed calendar.
+   * @param EventCalendar calendar the occupying events, indexed by attendee.
+   * @param MeetingRequest request the input meeting to be scheduled.
+   * @param TimeRange window the span of time to search.
+   * @param int k the most meeting times to return. Must be positive.
+   * @param SlotPreference preference how to rank meeting times.
+   * @return up to {@code k} meeting times of the requested duration, best first.
+   */
+  public List<TimeRange> queryBest(EventCalendar calendar, MeetingRequest request,
+      TimeRange window, int k, SlotPreference preference) {
+    if (k <= 0) throw new IllegalArgumentException("k must be positive");
+    if (request.getDuration() > window.duration()) return new ArrayList<TimeRange>();
+
+    OccupancyMask mandatory = calendar.getOccupancy(request.getAttendees(), window);
+    OccupancyMask optional = calendar.getOccupancy(request.getOptionalAttendees(), window);
+
+    occupyOffHours(request, mandatory, optional);
+    return getBestTimes(request, mandatory, optional, k, preference);
+  }
+
+  /**
+    * Picks the best times for a request from its required and optional occupancy, with the same
+    * treatment of optional attendees as getFreeRanges.
+    *
+    * @param MeetingRequest request the input meeting to be scheduled.
+    * @param OccupancyMask mandatory time occupied by required attendees.
+    * @param OccupancyMask optional time occupied by optional attendees. Modified by this call.
+    * @param int k the most meeting times to return.
+    * @param SlotPreference preference how to rank meeting times.
+    * @return up to {@code k} meeting times, best first.
+  */
+  private static List<TimeRange> getBestTimes(MeetingRequest request, OccupancyMask mandatory,
+      OccupancyMask optional, int k, SlotPreference preference) {
+    long duration = request.getDuration();
+    if (request.getOptionalAttendees().isEmpty()) {
+      return rankFreeTimes(mandatory, duration, k, preference);
+    }
+
+    OccupancyMask everyone = optional;
+    everyone.or(mandatory);
+    List<TimeRange> bestForEveryone = rankFreeTimes(everyone, duration, k, preference);
+
+    if (!bestForEveryone.isEmpty() || request.getAttendees().isEmpty()) return bestForEveryone;
+    return rankFreeTimes(mandatory, duration, k, preference);
+  }
+
+  /**
+    * Ranks the possible meeting times in a mask, keeping the best {@code k} in a bounded max-heap.
+    *
+    * The free gaps are walked one at a time with nextFree and nextOccupied rather than listed up
+    * front, and the starts within each gap are tried in ascending order. Once the heap is full and
+    * its worst score is no worse than the best score any later start could have, the walk stops,
+    * so asking for the earliest time in a 30 day window only looks as far as the first gap.
+    *
+    * @param OccupancyMask busy the occupied time.
+    * @param long duration the length of the meeting.
+    * @param int k the most meeting times to return.
+    * @param SlotPreference preference how to rank meeting times.
+    * @return up to {@code k} meeting times, best first.
+  */
+  private static List<TimeRange> rankFreeTimes(
+      OccupancyMask busy, long duration, int k, SlotPreference preference) {
+    // A zero length meeting still needs a minute to be placed in.
+    int minutes = (int) Math.max(duration, 1);
+    int origin = busy.origin();
+    int end = origin + busy.length();
+    // Let the queue grow as times are found rather than sizing it for k up front.
+    PriorityQueue<Long> best =
+        new PriorityQueue<Long>(Math.min(k, 16), Collections.<Long>reverseOrder());
+
+    int gapStart = busy.nextFree(origin);
+    search:
+    while (gapStart < end) {
+      int gapEnd = busy.nextOccupied(gapStart);
+      int start = preference.nextStart(gapStart, gapEnd, minutes, gapStart - 1);
+      while (start != Integer.MAX_VALUE) {
+        if (best.size() == k && best.peek() <= SlotPreference.bestScoreFrom(origin, start)) {
+          break search;
+        }
+
+        long score = preference.score(origin, gapStart, gapEnd, start, minutes);
+        if (best.size() < k) {
+          best.add(score);
+        } else if (score < best.peek()) {
+          best.poll();
+          best.add(score);
+        }
+        start = preference.nextStart(gapStart, gapEnd, minutes, start);
+      }
+      gapStart = busy.nextFree(gapEnd);
+    }
+
+    List<Long> scores = new ArrayList<Long>(best);
+    Collections.sort(scores);
+    List<TimeRange> times = new ArrayList<TimeRange>(scores.size());
+    for (long score : scores) {
+      times.add(TimeRange.fromStartDuration(SlotPreference.startOf(origin, score), (int) duration));
+    }
+    return times;
+  }
+
+  /**
+   * Calculates the free time in a day for many meetings at once. The events are indexed once and
+   * the requests are answered in parallel on the common fork-join pool.
+   * @param Collection<Event> events the occupying events, shared by every request.
+   * @param List<MeetingRequest> requests the meetings to be scheduled.
+   * @return the free time for each request, in the same order as {@code requests}.
+   */
+  public List<Collection<TimeRange>> queryAll(
+      Collection<Event> events, List<MeetingRequest> requests) {
+    return queryAll(new EventCalendar(events), requests);
+  }
+
+  /**
+   * Calculates the free time in a day for many meetings at once against one calendar. Every request
+   * sees the same snapshot of the calendar, even if it changes while the batch is running.
+   * @param EventCalendar calendar the occupying events, indexed by attendee.
+   * @param List<MeetingRequest> requests the meetings to be scheduled.
+   * @return the free time for each request, in the same order as {@code requests}.
+   */
+  public List<Collection<TimeRange>> queryAll(
+      EventCalendar calendar, List<MeetingRequest> requests) {
+    MeetingRequest[] requestArray = requests.toArray(new MeetingRequest[requests.size()]);
+    List<Collection<TimeRange>> answers =
+        new ArrayList<Collection<TimeRange>>(Collections.nCopies(requestArray.length, null));
+
+    // Each task only sets its own slots, and invoke waits for them all, so no locking is needed.
+    ForkJoinPool.commonPool().invoke(
+        new BatchQueryTask(this, calendar.snapshot(), requestArray, answers, 0, answers.size()));
+
+    return answers;
+  }
+
+  /**
+   * Builds the required and optional occupancy of a slice of the events, splitting it in half until
+   * each piece is small enough to run directly, then ORing the halves back together.
+   */
+  private static final class OccupancyTask extends RecursiveTask<OccupancyMask[]> {
+    // Large enough that marking a partition takes far longer than forking it.
+    private static final int EVENTS_PER_TASK = 4_096;
+
+    private final Event[] events;
+    private final MeetingRequest request;
+    private final TimeRange window;
+    private final int from;
+    private final int to;
+
+    OccupancyTask(Event[] events, MeetingRequest request, TimeRange window, int from, int to) {
+      this.events = events;
+      this.request = request;
+      this.window = window;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected OccupancyMask[] compute() {
+      if (to - from <= EVENTS_PER_TASK) {
+        OccupancyMask mandatory = new OccupancyMask(window);
+        OccupancyMask optional = new OccupancyMask(window);
+        getOccupancy(events, from, to, request, mandatory, optional);
+        return new OccupancyMask[] {mandatory, optional};
+      }
+
+      int middle = (from + to) >>> 1;
+      OccupancyTask left = new OccupancyTask(events, request, window, from, middle);
+      left.fork();
+      OccupancyMask[] right = new OccupancyTask(events, request, window, middle, to).compute();
+      OccupancyMask[] merged = left.join();
+      merged[0].or(right[0]);
+      merged[1].or(right[1]);
+      return merged;
+    }
+  }
+
+  /**
+   * Answers a slice of a batch of requests, splitting it in half until each piece is small enough
+   * to run directly. Each answer is written to the slot matching its request.
+   */
+  private static final class BatchQueryTask extends RecursiveAction {
+    // Each query only takes microseconds, so run a few per task to keep the overhead down.
+    private static final int REQUESTS_PER_TASK = 8;
+
+    private final FindMeetingQuery query;
+    private final EventCalendar calendar;
+    private final MeetingRequest[] requests;
+    private final List<Collection<TimeRange>> answers;
+    private final int from;
+    private final int to;
+
+    BatchQueryTask(FindMeetingQuery query, EventCalendar calendar, MeetingRequest[] requests,
+        List<Collection<TimeRange>> answers, int from, int to) {
+      this.query = query;
+      this.calendar = calendar;
+      this.requests = requests;
+      this.answers = answers;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= REQUESTS_PER_TASK) {
+        for (int i = from; i < to; i++) answers.set(i, query.query(calendar, requests[i]));
+        return;
+      }
+
+      int middle = (from + to) >>> 1;
+      invokeAll(new BatchQueryTask(query, calendar, requests, answers, from, middle),
+          new BatchQueryTask(query, calendar, requests, answers, middle, to));
+    }
+  }
 }
@@ -0,0 +1,296 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A set of minutes stored as sorted, non-overlapping ranges in a {@code long[]} of
+ * {@link PackedRange} values. Unlike a {@code List<TimeRange>}, there is no object per range.
+ *
+ * <p>Ranges can be added in any order and may overlap; they are sorted and merged the next time
+ * the list is read. Set operations return new lists and leave their inputs unchanged. Each runs in
+ * a single merge pass over both inputs.
+ */
+public final class IntervalList {
+  private static final int DEFAULT_CAPACITY = 8;
+
+  private long[] ranges;
+  private int size;
+
+  // Whether ranges[0, size) is sorted, with no empty, overlapping or touching ranges.
+  private boolean normalized = true;
+
+  /**
+   * Creates an empty list.
+   */
+  public IntervalList() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Creates an empty list with room for {@code capacity} ranges before it has to grow.
+   */
+  public IntervalList(int capacity) {
+    this.ranges = new long[Math.max(capacity, 1)];
+  }
+
+  private IntervalList(long[] ranges, int size) {
+    this.ranges = ranges;
+    this.size = size;
+  }
+
+  /**
+   * Adds the minutes from {@code start} (inclusive) to {@code end} (exclusive). Empty ranges are
+   * ignored.
+   */
+  public void add(int start, int end) {
+    if (end <= start) {
+      return;
+    }
+
+    if (size == ranges.length) {
+      ranges = Arrays.copyOf(ranges, size * 2);
+    }
+
+    // Appending after the last range keeps the list normalized, which is the common case when
+    // adding ranges in order.
+    if (normalized && size > 0 && start <= PackedRange.end(ranges[size - 1])) {
+      normalized = false;
+    }
+    ranges[size++] = PackedRange.fromStartEnd(start, end);
+  }
+
+  /**
+   * Adds the minutes of {@code range}.
+   */
+  public void add(TimeRange range) {
+    add(range.start(), range.end());
+  }
+
+  /**
+   * Returns the number of disjoint ranges in the list.
+   */
+  public int size() {
+    normalize();
+    return size;
+  }
+
+  /**
+   * Returns whether the list holds no minutes.
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Returns the {@code index}th range, in ascending order, as a {@link PackedRange}.
+   */
+  public long get(int index) {
+    normalize();
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    return ranges[index];
+  }
+
+  /**
+   * Returns the minutes in either this list or {@code other}.
+   */
+  public IntervalList union(IntervalList other) {
+    normalize();
+    other.normalize();
+
+    Builder result = new Builder(size + other.size);
+    int i = 0;
+    int j = 0;
+    while (i < size || j < other.size) {
+      boolean takeThis = j == other.size
+          || (i < size && PackedRange.start(ranges[i]) <= PackedRange.start(other.ranges[j]));
+      long range = takeThis ? ranges[i++] : other.ranges[j++];
+      result.append(PackedRange.start(range), PackedRange.end(range));
+    }
+    return result.build();
+  }
+
+  /**
+   * Returns the minutes in both this list and {@code other}.
+   */
+  public IntervalList intersection(IntervalList other) {
+    normalize();
+    other.normalize();
+
+    Builder result = new Builder(size + other.size);
+    int i = 0;
+    int j = 0;
+    while (i < size && j < other.size) {
+      int start = Math.max(PackedRange.start(ranges[i]), PackedRange.start(other.ranges[j]));
+      int thisEnd = PackedRange.end(ranges[i]);
+      int otherEnd = PackedRange.end(other.ranges[j]);
+      result.append(start, Math.min(thisEnd, otherEnd));
+
+      // Whichever range ends first can't overlap anything else in the other list.
+      if (thisEnd <= otherEnd) {
+        i++;
+      } else {
+        j++;
+      }
+    }
+    return result.build();
+  }
+
+  /**
+   * Returns the minutes in this list that are not in {@code other}.
+   */
+  public IntervalList subtract(IntervalList other) {
+    normalize();
+    other.normalize();
+
+    Builder result = new Builder(size + other.size);
+    int j = 0;
+    for (int i = 0; i < size; i++) {
+      int start = PackedRange.start(ranges[i]);
+      int end = PackedRange.end(ranges[i]);
+
+      // Skip ranges of other that end before this range starts.
+      while (j < other.size && PackedRange.end(other.ranges[j]) <= start) {
+        j++;
+      }
+
+      // Cut out every range of other that overlaps this one.
+      int k = j;
+      while (k < other.size && PackedRange.start(other.ranges[k]) < end) {
+        result.append(start, PackedRange.start(other.ranges[k]));
+        start = Math.max(start, PackedRange.end(other.ranges[k]));
+        k++;
+      }
+      result.append(start, end);
+    }
+    return result.build();
+  }
+
+  /**
+   * Returns the ranges within {@code window} that are not in this list and are at least
+   * {@code minDuration} minutes long.
+   */
+  public IntervalList gaps(TimeRange window, long minDuration) {
+    normalize();
+
+    Builder result = new Builder(size + 1);
+    int freeFrom = window.start();
+    for (int i = 0; i < size && PackedRange.start(ranges[i]) < window.end(); i++) {
+      int start = PackedRange.start(ranges[i]);
+      if (start - freeFrom >= minDuration) {
+        result.append(freeFrom, start);
+      }
+      freeFrom = Math.max(freeFrom, PackedRange.end(ranges[i]));
+    }
+    if (window.end() - freeFrom >= minDuration) {
+      result.append(freeFrom, window.end());
+    }
+    return result.build();
+  }
+
+  /**
+   * Returns the ranges as {@code TimeRange}s, in ascending order.
+   */
+  public List<TimeRange> toTimeRanges() {
+    normalize();
+
+    List<TimeRange> timeRanges = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      timeRanges.add(PackedRange.toTimeRange(ranges[i]));
+    }
+    return timeRanges;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (!(other instanceof IntervalList)) {
+      return false;
+    }
+
+    IntervalList list = (IntervalList) other;
+    normalize();
+    list.normalize();
+    return Arrays.equals(Arrays.copyOf(ranges, size), Arrays.copyOf(list.ranges, list.size));
+  }
+
+  @Override
+  public int hashCode() {
+    normalize();
+    return Arrays.hashCode(Arrays.copyOf(ranges, size));
+  }
+
+  @Override
+  public String toString() {
+    return toTimeRanges().toString();
+  }
+
+  // Sorts the ranges and merges any that overlap or touch, in place.
+  private void normalize() {
+    if (normalized) {
+      return;
+    }
+
+    // Packed ranges sort by start time as plain longs.
+    Arrays.sort(ranges, 0, size);
+
+    int merged = 0;
+    for (int i = 0; i < size; i++) {
+      int start = PackedRange.start(ranges[i]);
+      int end = PackedRange.end(ranges[i]);
+      if (merged > 0 && start <= PackedRange.end(ranges[merged - 1])) {
+        int previousStart = PackedRange.start(ranges[merged - 1]);
+        int previousEnd = PackedRange.end(ranges[merged - 1]);
+        ranges[merged - 1] = PackedRange.fromStartEnd(previousStart, Math.max(previousEnd, end));
+      } else {
+        ranges[merged++] = ranges[i];
+      }
+    }
+    size = merged;
+    normalized = true;
+  }
+
+  /** Collects ranges that arrive in ascending order of start time into a normalized list. */
+  private static final class Builder {
+    private final long[] ranges;
+    private int size;
+
+    Builder(int capacity) {
+      this.ranges = new long[Math.max(capacity, 1)];
+    }
+
+    void append(int start, int end) {
+      if (end <= start) {
+        return;
+      }
+
+      if (size > 0 && start <= PackedRange.end(ranges[size - 1])) {
+        int previousStart = PackedRange.start(ranges[size - 1]);
+        int previousEnd = PackedRange.end(ranges[size - 1]);
+        ranges[size - 1] = PackedRange.fromStartEnd(previousStart, Math.max(previousEnd, end));
+        return;
+      }
+      ranges[size++] = PackedRange.fromStartEnd(start, end);
+    }
+
+    IntervalList build() {
+      return new IntervalList(ranges, size);
+    }
+  }
+}
@@ -0,0 +1,122 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of non-negative longs with a fixed relative error, in the style of HdrHistogram.
+ * Values below 32 each get their own bucket. Above that, every power of two is split into 32
+ * equal buckets, so any value is reported to within about 3% whatever its size. The whole range
+ * of long fits in under 2,000 buckets.
+ *
+ * <p>LogLinearHistogram is thread-safe, and recording never blocks: it is one atomic increment
+ * and two {@code LongAdder} updates, which makes it cheap enough to leave on for every request.
+ * Reads don't stop recording, so a read racing with writers may see some of their values but not
+ * others.
+ */
+public final class LogLinearHistogram {
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+
+  /**
+   * Records one occurrence of {@code value}. Negative values are recorded as 0.
+   */
+  public void record(long value) {
+    value = Math.max(value, 0);
+    counts.incrementAndGet(bucketOf(value));
+    count.increment();
+    sum.add(value);
+  }
+
+  /**
+   * Returns the number of values recorded.
+   */
+  public long count() {
+    return count.sum();
+  }
+
+  /**
+   * Returns the total of every value recorded.
+   */
+  public long sum() {
+    return sum.sum();
+  }
+
+  /**
+   * Returns a value that at least {@code quantile} of recorded values are at or below, to within
+   * the histogram's precision, or 0 if nothing has been recorded.
+   *
+   * @param quantile Between 0 and 1 inclusive.
+   */
+  public long valueAtQuantile(double quantile) {
+    if (quantile < 0 || quantile > 1) {
+      throw new IllegalArgumentException("quantile must be between 0 and 1");
+    }
+
+    // Total the buckets rather than reading count, so the rank is consistent with what is scanned.
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      total += counts.get(i);
+    }
+    if (total == 0) {
+      return 0;
+    }
+
+    long rank = Math.max((long) Math.ceil(quantile * total), 1);
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return highestValueIn(i);
+      }
+    }
+    // Only reachable if buckets were emptied concurrently, which never happens.
+    return highestValueIn(BUCKETS - 1);
+  }
+
+  // The bucket holding value: values below SUB_BUCKETS map to themselves, and above that the
+  // bucket is picked by the position of the top bit and the SUB_BUCKET_BITS bits below it.
+  static int bucketOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+
+    int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+    int shift = exponent - SUB_BUCKET_BITS;
+    return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+  }
+
+  // The smallest value that falls in a bucket.
+  static long lowestValueIn(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+
+    int shift = bucket / SUB_BUCKETS - 1;
+    return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+  }
+
+  // The largest value that falls in a bucket.
+  static long highestValueIn(int bucket) {
+    return bucket == BUCKETS - 1 ? Long.MAX_VALUE : lowestValueIn(bucket + 1) - 1;
+  }
+}
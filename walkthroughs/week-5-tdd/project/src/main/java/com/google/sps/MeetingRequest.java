@@ -39,6 +39,11 @@ public final class MeetingRequest {
   // The duration of the meeting in minutes.
   private final long duration;
 
+  // The attendees as IDs, kept once every attendee has an ID. Transient so that they stay out of
+  // the JSON.
+  private transient AttendeeSet attendeeIds;
+  private transient AttendeeSet optionalAttendeeIds;
+
   public MeetingRequest(Collection<String> attendees, long duration) {
     this.duration = duration;
     this.attendees.addAll(attendees);
@@ -58,12 +63,47 @@ public final class MeetingRequest {
     return Collections.unmodifiableCollection(optional_attendees);
   }
 
+  /**
+   * Returns the people who are required to attend this meeting as IDs in the shared
+   * {@code AttendeeDictionary}. People who have never had an event are left out, since they are
+   * always free.
+   */
+  public AttendeeSet getAttendeeIds() {
+    // Racing threads compute equal sets, and AttendeeSet is immutable, so no locking is needed.
+    AttendeeSet ids = attendeeIds;
+    if (ids == null) {
+      ids = AttendeeSet.lookup(AttendeeDictionary.shared(), attendees);
+      // Someone without an ID yet may be given one by a new event, so only keep complete sets.
+      if (ids.size() == attendees.size()) {
+        attendeeIds = ids;
+      }
+    }
+    return ids;
+  }
+
+  /**
+   * Returns the people who are optional to attend this meeting as IDs in the shared
+   * {@code AttendeeDictionary}. People who have never had an event are left out, since they are
+   * always free.
+   */
+  public AttendeeSet getOptionalAttendeeIds() {
+    AttendeeSet ids = optionalAttendeeIds;
+    if (ids == null) {
+      ids = AttendeeSet.lookup(AttendeeDictionary.shared(), optional_attendees);
+      if (ids.size() == optional_attendees.size()) {
+        optionalAttendeeIds = ids;
+      }
+    }
+    return ids;
+  }
+
   /**
    * Adds one optional attendee for the meeting.
    */
   public void addOptionalAttendee(String attendee) {
     if (!attendees.contains(attendee)) {
       optional_attendees.add(attendee);
+      optionalAttendeeIds = null;
     }
   }
 
@@ -0,0 +1,241 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A minute-resolution record of which minutes within a window are occupied. Each minute is one bit
+ * in a packed {@code long[]}, so a single word covers a little over an hour and a whole day fits in
+ * 23 words. Combining masks and finding gaps work a word at a time rather than a minute at a time.
+ *
+ * <p>The window may be any length, so a mask can cover a single day or several weeks. Minutes are
+ * absolute (the same units as {@link TimeRange}); bit 0 corresponds to {@link #origin()}.
+ */
+public final class OccupancyMask {
+  private static final int WORD_BITS = 64;
+  private static final long ALL_ONES = -1L;
+
+  private final int origin;
+  private final int length;
+  private final long[] words;
+
+  /**
+   * Creates an empty mask covering {@code length} minutes starting at {@code origin}.
+   */
+  public OccupancyMask(int origin, int length) {
+    if (length < 0) {
+      throw new IllegalArgumentException("length cannot be negative");
+    }
+
+    this.origin = origin;
+    this.length = length;
+    this.words = new long[(length + WORD_BITS - 1) / WORD_BITS];
+  }
+
+  /**
+   * Creates an empty mask covering {@code window}.
+   */
+  public OccupancyMask(TimeRange window) {
+    this(window.start(), window.duration());
+  }
+
+  private OccupancyMask(OccupancyMask other) {
+    this.origin = other.origin;
+    this.length = other.length;
+    this.words = other.words.clone();
+  }
+
+  /**
+   * Returns the first minute covered by this mask.
+   */
+  public int origin() {
+    return origin;
+  }
+
+  /**
+   * Returns the number of minutes covered by this mask.
+   */
+  public int length() {
+    return length;
+  }
+
+  /**
+   * Returns the window covered by this mask.
+   */
+  public TimeRange window() {
+    return TimeRange.fromStartDuration(origin, length);
+  }
+
+  /**
+   * Returns an independent copy of this mask.
+   */
+  public OccupancyMask copy() {
+    return new OccupancyMask(this);
+  }
+
+  /**
+   * Marks every minute in {@code [start, end)} as occupied. Parts of the range outside the window
+   * are ignored.
+   */
+  public void occupy(int start, int end) {
+    int from = Math.max(start - origin, 0);
+    int to = Math.min(end - origin, length);
+    if (from >= to) {
+      return;
+    }
+
+    int firstWord = from / WORD_BITS;
+    int lastWord = (to - 1) / WORD_BITS;
+    // Shifts are taken modulo 64, so these masks select [from, 64) and [0, to) within a word.
+    long firstMask = ALL_ONES << from;
+    long lastMask = ALL_ONES >>> -to;
+
+    if (firstWord == lastWord) {
+      words[firstWord] |= firstMask & lastMask;
+      return;
+    }
+
+    words[firstWord] |= firstMask;
+    Arrays.fill(words, firstWord + 1, lastWord, ALL_ONES);
+    words[lastWord] |= lastMask;
+  }
+
+  /**
+   * Marks every minute of {@code range} as occupied.
+   */
+  public void occupy(TimeRange range) {
+    occupy(range.start(), range.end());
+  }
+
+  /**
+   * Returns whether {@code minute} is occupied. Minutes outside the window are never occupied.
+   */
+  public boolean isOccupied(int minute) {
+    int bit = minute - origin;
+    if (bit < 0 || bit >= length) {
+      return false;
+    }
+    return (words[bit / WORD_BITS] & (1L << bit)) != 0;
+  }
+
+  /**
+   * Returns whether no minute in the window is occupied.
+   */
+  public boolean isEmpty() {
+    for (long word : words) {
+      if (word != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Marks every minute occupied in {@code other} as occupied in this mask as well. Both masks must
+   * cover the same window.
+   */
+  public void or(OccupancyMask other) {
+    checkSameWindow(other);
+    for (int i = 0; i < words.length; i++) {
+      words[i] |= other.words[i];
+    }
+  }
+
+  /**
+   * Keeps only the minutes that are occupied in both this mask and {@code other}. Both masks must
+   * cover the same window.
+   */
+  public void and(OccupancyMask other) {
+    checkSameWindow(other);
+    for (int i = 0; i < words.length; i++) {
+      words[i] &= other.words[i];
+    }
+  }
+
+  /**
+   * Returns the first free minute at or after {@code minute}, or the end of the window if every
+   * remaining minute is occupied.
+   */
+  public int nextFree(int minute) {
+    int bit = Math.max(minute - origin, 0);
+    if (bit >= length) {
+      return origin + length;
+    }
+
+    int wordIndex = bit / WORD_BITS;
+    // Invert the word so that free minutes become set bits, then drop the bits before our start.
+    long word = ~words[wordIndex] & (ALL_ONES << bit);
+    while (word == 0) {
+      if (++wordIndex == words.length) {
+        return origin + length;
+      }
+      word = ~words[wordIndex];
+    }
+
+    int found = wordIndex * WORD_BITS + Long.numberOfTrailingZeros(word);
+    return origin + Math.min(found, length);
+  }
+
+  /**
+   * Returns the first occupied minute at or after {@code minute}, or the end of the window if every
+   * remaining minute is free.
+   */
+  public int nextOccupied(int minute) {
+    int bit = Math.max(minute - origin, 0);
+    if (bit >= length) {
+      return origin + length;
+    }
+
+    int wordIndex = bit / WORD_BITS;
+    long word = words[wordIndex] & (ALL_ONES << bit);
+    while (word == 0) {
+      if (++wordIndex == words.length) {
+        return origin + length;
+      }
+      word = words[wordIndex];
+    }
+
+    // Bits past the window are never set, so this is always inside the window.
+    return origin + wordIndex * WORD_BITS + Long.numberOfTrailingZeros(word);
+  }
+
+  /**
+   * Returns every maximal free range in the window that is at least {@code minDuration} minutes
+   * long, in ascending order.
+   */
+  public List<TimeRange> freeRanges(long minDuration) {
+    List<TimeRange> freeRanges = new ArrayList<>();
+    int end = origin + length;
+
+    for (int gapStart = nextFree(origin); gapStart < end; ) {
+      int gapEnd = nextOccupied(gapStart);
+      if (gapEnd - gapStart >= minDuration) {
+        freeRanges.add(TimeRange.fromStartEnd(gapStart, gapEnd, false));
+      }
+      gapStart = nextFree(gapEnd);
+    }
+
+    return freeRanges;
+  }
+
+  private void checkSameWindow(OccupancyMask other) {
+    if (origin != other.origin || length != other.length) {
+      throw new IllegalArgumentException("Masks must cover the same window.");
+    }
+  }
+}
@@ -0,0 +1,81 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+/**
+ * Static helpers for a span of time packed into a single {@code long}: the start in the high 32
+ * bits and the duration in the low 32 bits. Packed ranges carry the same information as a
+ * {@code TimeRange} without an object per range, and sorting packed values as plain longs orders
+ * them by start time.
+ */
+public final class PackedRange {
+  private static final long LOW_BITS = 0xFFFFFFFFL;
+
+  private PackedRange() {
+    // Disallow instances.
+  }
+
+  /**
+   * Packs the range starting at {@code start} lasting {@code duration} minutes.
+   */
+  public static long fromStartDuration(int start, int duration) {
+    if (duration < 0) {
+      throw new IllegalArgumentException("duration cannot be negative");
+    }
+    return ((long) start << 32) | (duration & LOW_BITS);
+  }
+
+  /**
+   * Packs the range from {@code start} (inclusive) to {@code end} (exclusive).
+   */
+  public static long fromStartEnd(int start, int end) {
+    return fromStartDuration(start, end - start);
+  }
+
+  /**
+   * Packs {@code range}.
+   */
+  public static long fromTimeRange(TimeRange range) {
+    return fromStartDuration(range.start(), range.duration());
+  }
+
+  /**
+   * Returns the start of a packed range in minutes.
+   */
+  public static int start(long range) {
+    return (int) (range >> 32);
+  }
+
+  /**
+   * Returns the number of minutes in a packed range.
+   */
+  public static int duration(long range) {
+    return (int) (range & LOW_BITS);
+  }
+
+  /**
+   * Returns the closing exclusive bound of a packed range.
+   */
+  public static int end(long range) {
+    return start(range) + duration(range);
+  }
+
+  /**
+   * Unpacks a range into a {@code TimeRange}.
+   */
+  public static TimeRange toTimeRange(long range) {
+    return TimeRange.fromStartDuration(start(range), duration(range));
+  }
+}
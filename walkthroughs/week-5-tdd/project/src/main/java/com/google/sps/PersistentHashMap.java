@@ -0,0 +1,359 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable hash map where {@link #put} and {@link #remove} return a new map and leave this one
+ * alone. The two maps share everything but the path to the changed key, so a change costs
+ * O(log32 n) time and space rather than a copy of the whole map.
+ *
+ * <p>This is a hash array mapped trie: each level of the tree consumes five bits of the key's hash
+ * and keeps only the children that exist, indexed by a 32-bit bitmap. Keys whose hashes are equal
+ * share a collision node. A key with no neighbours is stored as high up the tree as it can be.
+ *
+ * <p>Keys and values must not be null.
+ */
+final class PersistentHashMap<K, V> {
+  private static final int BITS = 5;
+  private static final int MASK = (1 << BITS) - 1;
+
+  private static final PersistentHashMap<Object, Object> EMPTY =
+      new PersistentHashMap<Object, Object>(null, 0);
+
+  // A Leaf, Branch or Collision, or null when the map is empty.
+  private final Object root;
+  private final int size;
+
+  private PersistentHashMap(Object root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  /**
+   * Returns the empty map.
+   */
+  @SuppressWarnings("unchecked")
+  static <K, V> PersistentHashMap<K, V> empty() {
+    return (PersistentHashMap<K, V>) EMPTY;
+  }
+
+  /**
+   * Returns the number of keys in the map.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns the value of {@code key}, or null if the map doesn't contain it.
+   */
+  @SuppressWarnings("unchecked")
+  V get(Object key) {
+    int hash = hash(key);
+    Object node = root;
+    for (int shift = 0; node != null; shift += BITS) {
+      if (node instanceof Leaf) {
+        Leaf<?, ?> leaf = (Leaf<?, ?>) node;
+        return leaf.hash == hash && leaf.key.equals(key) ? (V) leaf.value : null;
+      }
+
+      if (node instanceof Collision) {
+        Collision collision = (Collision) node;
+        return collision.hash == hash ? (V) collision.get(key) : null;
+      }
+
+      Branch branch = (Branch) node;
+      int bit = bitFor(hash, shift);
+      if ((branch.bitmap & bit) == 0) {
+        return null;
+      }
+      node = branch.children[branch.indexOf(bit)];
+    }
+    return null;
+  }
+
+  /**
+   * Returns a map with {@code key} set to {@code value}.
+   */
+  PersistentHashMap<K, V> put(K key, V value) {
+    if (key == null || value == null) {
+      throw new IllegalArgumentException("key and value cannot be null");
+    }
+
+    boolean[] added = new boolean[1];
+    Object newRoot = put(root, 0, new Leaf<K, V>(hash(key), key, value), added);
+    return new PersistentHashMap<K, V>(newRoot, added[0] ? size + 1 : size);
+  }
+
+  /**
+   * Returns a map without {@code key}, or this map if it doesn't contain it.
+   */
+  PersistentHashMap<K, V> remove(Object key) {
+    Object newRoot = remove(root, 0, hash(key), key);
+    return newRoot == root ? this : new PersistentHashMap<K, V>(newRoot, size - 1);
+  }
+
+  /**
+   * Returns every entry of the map, in no particular order.
+   */
+  @SuppressWarnings("unchecked")
+  List<Map.Entry<K, V>> entries() {
+    List<Map.Entry<K, V>> entries = new ArrayList<Map.Entry<K, V>>(size);
+    collect(root, (List<Object>) (List<?>) entries);
+    return entries;
+  }
+
+  private static void collect(Object node, List<Object> entries) {
+    if (node == null) {
+      return;
+    }
+
+    if (node instanceof Leaf) {
+      entries.add(node);
+    } else if (node instanceof Collision) {
+      entries.addAll(Arrays.asList(((Collision) node).leaves));
+    } else {
+      for (Object child : ((Branch) node).children) {
+        collect(child, entries);
+      }
+    }
+  }
+
+  // Returns node with leaf added below it, which sits shift bits into the hash.
+  private static Object put(Object node, int shift, Leaf<?, ?> leaf, boolean[] added) {
+    if (node == null) {
+      added[0] = true;
+      return leaf;
+    }
+
+    if (node instanceof Leaf) {
+      Leaf<?, ?> existing = (Leaf<?, ?>) node;
+      if (existing.hash == leaf.hash && existing.key.equals(leaf.key)) {
+        return leaf;
+      }
+      added[0] = true;
+      return merge(existing, existing.hash, leaf, shift);
+    }
+
+    if (node instanceof Collision) {
+      Collision collision = (Collision) node;
+      if (collision.hash != leaf.hash) {
+        added[0] = true;
+        return merge(collision, collision.hash, leaf, shift);
+      }
+      return collision.put(leaf, added);
+    }
+
+    Branch branch = (Branch) node;
+    int bit = bitFor(leaf.hash, shift);
+    int index = branch.indexOf(bit);
+    if ((branch.bitmap & bit) == 0) {
+      added[0] = true;
+      Object[] children = new Object[branch.children.length + 1];
+      System.arraycopy(branch.children, 0, children, 0, index);
+      children[index] = leaf;
+      System.arraycopy(
+          branch.children, index, children, index + 1, branch.children.length - index);
+      return new Branch(branch.bitmap | bit, children);
+    }
+
+    Object[] children = branch.children.clone();
+    children[index] = put(children[index], shift + BITS, leaf, added);
+    return new Branch(branch.bitmap, children);
+  }
+
+  // Builds the smallest subtree holding both node, whose hash is nodeHash, and leaf.
+  private static Object merge(Object node, int nodeHash, Leaf<?, ?> leaf, int shift) {
+    if (nodeHash == leaf.hash) {
+      if (node instanceof Collision) {
+        return ((Collision) node).put(leaf, new boolean[1]);
+      }
+      return new Collision(nodeHash, new Leaf<?, ?>[] {(Leaf<?, ?>) node, leaf});
+    }
+
+    int nodeBit = bitFor(nodeHash, shift);
+    int leafBit = bitFor(leaf.hash, shift);
+    if (nodeBit == leafBit) {
+      return new Branch(nodeBit, new Object[] {merge(node, nodeHash, leaf, shift + BITS)});
+    }
+
+    // Children are in bit order, and bit 31 is negative, so compare the bits unsigned.
+    Object[] children = Integer.compareUnsigned(nodeBit, leafBit) < 0
+        ? new Object[] {node, leaf}
+        : new Object[] {leaf, node};
+    return new Branch(nodeBit | leafBit, children);
+  }
+
+  // Returns node without key, or node itself if key isn't below it.
+  private static Object remove(Object node, int shift, int hash, Object key) {
+    if (node == null) {
+      return null;
+    }
+
+    if (node instanceof Leaf) {
+      Leaf<?, ?> leaf = (Leaf<?, ?>) node;
+      return leaf.hash == hash && leaf.key.equals(key) ? null : node;
+    }
+
+    if (node instanceof Collision) {
+      Collision collision = (Collision) node;
+      return collision.hash == hash ? collision.remove(key) : node;
+    }
+
+    Branch branch = (Branch) node;
+    int bit = bitFor(hash, shift);
+    if ((branch.bitmap & bit) == 0) {
+      return node;
+    }
+
+    int index = branch.indexOf(bit);
+    Object child = branch.children[index];
+    Object newChild = remove(child, shift + BITS, hash, key);
+    if (newChild == child) {
+      return node;
+    }
+
+    if (newChild == null) {
+      if (branch.children.length == 1) {
+        return null;
+      }
+
+      Object[] children = new Object[branch.children.length - 1];
+      System.arraycopy(branch.children, 0, children, 0, index);
+      System.arraycopy(branch.children, index + 1, children, index, children.length - index);
+      // A lone leaf needs no branch above it, since lookups compare its whole key.
+      if (children.length == 1 && !(children[0] instanceof Branch)) {
+        return children[0];
+      }
+      return new Branch(branch.bitmap & ~bit, children);
+    }
+
+    if (branch.children.length == 1 && !(newChild instanceof Branch)) {
+      return newChild;
+    }
+    Object[] children = branch.children.clone();
+    children[index] = newChild;
+    return new Branch(branch.bitmap, children);
+  }
+
+  private static int hash(Object key) {
+    int hash = key.hashCode();
+    // Mix the high bits into the low ones, which pick the children near the root.
+    return hash ^ (hash >>> 16);
+  }
+
+  private static int bitFor(int hash, int shift) {
+    return 1 << ((hash >>> shift) & MASK);
+  }
+
+  /** A single key and its value. */
+  private static final class Leaf<K, V> implements Map.Entry<K, V> {
+    private final int hash;
+    private final K key;
+    private final V value;
+
+    Leaf(int hash, K key, V value) {
+      this.hash = hash;
+      this.key = key;
+      this.value = value;
+    }
+
+    @Override
+    public K getKey() {
+      return key;
+    }
+
+    @Override
+    public V getValue() {
+      return value;
+    }
+
+    @Override
+    public V setValue(V value) {
+      throw new UnsupportedOperationException("PersistentHashMap entries are read-only");
+    }
+  }
+
+  /** The children of one node that exist, in the order of their bits in the bitmap. */
+  private static final class Branch {
+    private final int bitmap;
+    private final Object[] children;
+
+    Branch(int bitmap, Object[] children) {
+      this.bitmap = bitmap;
+      this.children = children;
+    }
+
+    int indexOf(int bit) {
+      return Integer.bitCount(bitmap & (bit - 1));
+    }
+  }
+
+  /** Keys whose hashes are all the same. */
+  private static final class Collision {
+    private final int hash;
+    private final Leaf<?, ?>[] leaves;
+
+    Collision(int hash, Leaf<?, ?>[] leaves) {
+      this.hash = hash;
+      this.leaves = leaves;
+    }
+
+    Object get(Object key) {
+      for (Leaf<?, ?> leaf : leaves) {
+        if (leaf.key.equals(key)) {
+          return leaf.value;
+        }
+      }
+      return null;
+    }
+
+    Collision put(Leaf<?, ?> leaf, boolean[] added) {
+      for (int i = 0; i < leaves.length; i++) {
+        if (leaves[i].key.equals(leaf.key)) {
+          Leaf<?, ?>[] replaced = leaves.clone();
+          replaced[i] = leaf;
+          return new Collision(hash, replaced);
+        }
+      }
+
+      added[0] = true;
+      Leaf<?, ?>[] grown = Arrays.copyOf(leaves, leaves.length + 1);
+      grown[leaves.length] = leaf;
+      return new Collision(hash, grown);
+    }
+
+    // Returns this without key, which may leave a single leaf.
+    Object remove(Object key) {
+      for (int i = 0; i < leaves.length; i++) {
+        if (leaves[i].key.equals(key)) {
+          if (leaves.length == 2) {
+            return leaves[1 - i];
+          }
+          Leaf<?, ?>[] shrunk = new Leaf<?, ?>[leaves.length - 1];
+          System.arraycopy(leaves, 0, shrunk, 0, i);
+          System.arraycopy(leaves, i + 1, shrunk, i, shrunk.length - i);
+          return new Collision(hash, shrunk);
+        }
+      }
+      return this;
+    }
+  }
+}
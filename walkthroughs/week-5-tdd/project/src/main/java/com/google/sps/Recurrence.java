@@ -0,0 +1,158 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+/**
+ * Describes how an event repeats: every {@code period} minutes, either forever, a fixed number of
+ * times, or until a given minute. Recurrences are read-only.
+ *
+ * <p>A recurrence never lists its occurrences up front. {@link Event#occurrences} works out which
+ * ones fall in a window with a little arithmetic, so a weekly meeting that runs for years costs no
+ * more to schedule around than a one-off meeting.
+ */
+public final class Recurrence {
+  /** Passed as a count or end to {@link #of} for a recurrence with no such limit. */
+  public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+  private final int period;
+  private final int count;
+  private final int until;
+
+  private Recurrence(int period, int count, int until) {
+    if (period <= 0) {
+      throw new IllegalArgumentException("period must be positive");
+    }
+
+    if (count < 0) {
+      throw new IllegalArgumentException("count cannot be negative");
+    }
+
+    this.period = period;
+    this.count = count;
+    this.until = until;
+  }
+
+  /**
+   * Creates a recurrence that repeats every {@code period} minutes with no end.
+   */
+  public static Recurrence forever(int period) {
+    return new Recurrence(period, UNBOUNDED, UNBOUNDED);
+  }
+
+  /**
+   * Creates a recurrence that happens {@code count} times in all, {@code period} minutes apart.
+   */
+  public static Recurrence times(int period, int count) {
+    return new Recurrence(period, count, UNBOUNDED);
+  }
+
+  /**
+   * Creates a recurrence that repeats every {@code period} minutes, with no occurrence starting at
+   * or after {@code until}.
+   */
+  public static Recurrence until(int period, int until) {
+    return new Recurrence(period, UNBOUNDED, until);
+  }
+
+  /**
+   * Creates a recurrence that repeats every {@code period} minutes, at most {@code count} times,
+   * with no occurrence starting at or after {@code until}. Either limit may be {@link #UNBOUNDED}.
+   */
+  public static Recurrence of(int period, int count, int until) {
+    return new Recurrence(period, count, until);
+  }
+
+  /**
+   * Returns the number of minutes between the starts of consecutive occurrences.
+   */
+  public int period() {
+    return period;
+  }
+
+  /**
+   * Returns the most occurrences there can be, or {@link #UNBOUNDED}.
+   */
+  int count() {
+    return count;
+  }
+
+  /**
+   * Returns the minute at or after which no occurrence starts, or {@link #UNBOUNDED}.
+   */
+  int until() {
+    return until;
+  }
+
+  /**
+   * Returns the index of the first occurrence of {@code first} that ends after {@code from}.
+   */
+  int firstIndexEndingAfter(TimeRange first, int from) {
+    // Occurrence i ends at first.end() + i * period.
+    long behind = (long) from - first.end();
+    return behind < 0 ? 0 : (int) Math.min(behind / period + 1, UNBOUNDED);
+  }
+
+  /**
+   * Returns one past the index of the last occurrence of {@code first} that starts before
+   * {@code to}, taking the count and end of the recurrence into account.
+   */
+  int endIndexStartingBefore(TimeRange first, int to) {
+    return (int) Math.min(count, Math.min(startsBefore(first, to), startsBefore(first, until)));
+  }
+
+  /**
+   * Returns the end of the last occurrence of {@code first}, or {@code Integer.MAX_VALUE} if the
+   * recurrence never ends.
+   */
+  int lastEnd(TimeRange first) {
+    if (count == UNBOUNDED && until == UNBOUNDED) {
+      return UNBOUNDED;
+    }
+
+    long occurrences = Math.min(count, startsBefore(first, until));
+    if (occurrences == 0) {
+      return first.start();
+    }
+    return (int) Math.min(first.end() + (occurrences - 1) * period, UNBOUNDED);
+  }
+
+  // The number of occurrences of first that start before a minute: the smallest i with
+  // first.start() + i * period >= minute.
+  private long startsBefore(TimeRange first, int minute) {
+    long ahead = (long) minute - first.start();
+    return ahead <= 0 ? 0 : (ahead + period - 1) / period;
+  }
+
+  @Override
+  public int hashCode() {
+    return (period * 31 + count) * 31 + until;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (!(other instanceof Recurrence)) {
+      return false;
+    }
+
+    Recurrence recurrence = (Recurrence) other;
+    return period == recurrence.period && count == recurrence.count && until == recurrence.until;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Recurrence: every %d minutes, count %s, until %s", period,
+        count == UNBOUNDED ? "unbounded" : count, until == UNBOUNDED ? "unbounded" : until);
+  }
+}
@@ -0,0 +1,132 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+/**
+ * Scores possible meeting times for {@link FindMeetingQuery#queryBest}. Lower scores are better.
+ *
+ * <p>A score is a penalty in the high 32 bits, which the preference decides, and the offset of the
+ * start from the beginning of the search window in the low 32 bits. Comparing scores as plain longs
+ * therefore ranks by penalty first and breaks ties in favour of the earlier start. The best
+ * possible penalty is always 0, so once K times have been found that score better than a penalty
+ * of 0 at the next start to be tried, nothing later can beat them and the search stops.
+ *
+ * <p>Within each free gap the starts tried are the start of the gap, every quarter hour after it,
+ * and the latest start that still fits.
+ */
+public abstract class SlotPreference {
+  private static final int QUARTER_HOUR = 15;
+
+  /** Prefers the earliest start. */
+  public static final SlotPreference EARLIEST = new SlotPreference() {
+    @Override
+    int penalty(int gapStart, int gapEnd, int start, int duration) {
+      return 0;
+    }
+  };
+
+  /**
+   * Prefers times that split the free time around them into as few pieces as possible: a meeting
+   * that fills a gap exactly is best, then one that is flush with either end of a gap.
+   */
+  public static final SlotPreference FEWEST_FRAGMENTS = new SlotPreference() {
+    @Override
+    int penalty(int gapStart, int gapEnd, int start, int duration) {
+      return (start > gapStart ? 1 : 0) + (start + duration < gapEnd ? 1 : 0);
+    }
+  };
+
+  SlotPreference() {
+    // Only subclassed within this package.
+  }
+
+  /**
+   * Prefers times with at least {@code minutes} free on either side, so that the meeting isn't
+   * back to back with other events. Shorter buffers are penalised by the minutes they fall short.
+   */
+  public static SlotPreference buffer(final int minutes) {
+    if (minutes < 0) {
+      throw new IllegalArgumentException("minutes cannot be negative");
+    }
+
+    return new SlotPreference() {
+      @Override
+      int penalty(int gapStart, int gapEnd, int start, int duration) {
+        int buffer = Math.min(start - gapStart, gapEnd - (start + duration));
+        return minutes - Math.min(buffer, minutes);
+      }
+
+      @Override
+      int nextStart(int gapStart, int gapEnd, int duration, int after) {
+        // Also try the start that leaves exactly the wanted buffer before the meeting.
+        int next = super.nextStart(gapStart, gapEnd, duration, after);
+        int buffered = gapStart + minutes;
+        return buffered > after && buffered < next && buffered + duration <= gapEnd
+            ? buffered
+            : next;
+      }
+    };
+  }
+
+  /**
+   * Returns how much worse than ideal it is to start a {@code duration} minute meeting at
+   * {@code start}, within the free time {@code [gapStart, gapEnd)}. Must not be negative.
+   */
+  abstract int penalty(int gapStart, int gapEnd, int start, int duration);
+
+  /**
+   * Returns the first start after {@code after} worth trying for a {@code duration} minute meeting
+   * within the free time {@code [gapStart, gapEnd)}, or {@code Integer.MAX_VALUE} if there are no
+   * more. Starts are returned in ascending order, so the search can stop part way through a gap.
+   */
+  int nextStart(int gapStart, int gapEnd, int duration, int after) {
+    int latest = gapEnd - duration;
+    if (after < gapStart) {
+      return gapStart <= latest ? gapStart : Integer.MAX_VALUE;
+    }
+
+    int quarter = (Math.floorDiv(after, QUARTER_HOUR) + 1) * QUARTER_HOUR;
+    if (quarter <= latest) {
+      return quarter;
+    }
+    return after < latest ? latest : Integer.MAX_VALUE;
+  }
+
+  /**
+   * Returns the score of starting a {@code duration} minute meeting at {@code start}, within the
+   * free time {@code [gapStart, gapEnd)} of a search beginning at {@code origin}.
+   */
+  final long score(int origin, int gapStart, int gapEnd, int start, int duration) {
+    return bound(penalty(gapStart, gapEnd, start, duration), origin, start);
+  }
+
+  /**
+   * Returns the best score any start at or after {@code start} could have.
+   */
+  static long bestScoreFrom(int origin, int start) {
+    return bound(0, origin, start);
+  }
+
+  /**
+   * Returns the start that {@code score} was given for.
+   */
+  static int startOf(int origin, long score) {
+    return origin + (int) score;
+  }
+
+  private static long bound(int penalty, int origin, int start) {
+    return ((long) penalty << 32) | ((start - origin) & 0xFFFFFFFFL);
+  }
+}
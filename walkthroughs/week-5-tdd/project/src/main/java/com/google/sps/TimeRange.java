@@ -24,7 +24,9 @@ public final class TimeRange {
   public static final int START_OF_DAY = getTimeInMinutes(0, 0);
   public static final int END_OF_DAY = getTimeInMinutes(23, 59);
 
-  public static final TimeRange WHOLE_DAY = new TimeRange(0, 24 * 60);
+  public static final int MINUTES_PER_DAY = 24 * 60;
+
+  public static final TimeRange WHOLE_DAY = new TimeRange(0, MINUTES_PER_DAY);
 
   /**
    * A comparator for sorting ranges by their start time in ascending order.
@@ -168,6 +170,35 @@ public final class TimeRange {
     return (hours * 60) + minutes;
   }
 
+  /**
+   * Returns the minute at {@code hours:minutes} on day {@code day}. Times are counted in minutes
+   * from the start of day 0, so day 0 matches the single-day times used elsewhere.
+   */
+  public static int getTimeInMinutes(int day, int hours, int minutes) {
+    return day * MINUTES_PER_DAY + getTimeInMinutes(hours, minutes);
+  }
+
+  /**
+   * Returns the day that {@code minute} falls on.
+   */
+  public static int getDay(int minute) {
+    return Math.floorDiv(minute, MINUTES_PER_DAY);
+  }
+
+  /**
+   * Returns the whole of day {@code day}. {@code day(0)} is {@code WHOLE_DAY}.
+   */
+  public static TimeRange day(int day) {
+    return new TimeRange(day * MINUTES_PER_DAY, MINUTES_PER_DAY);
+  }
+
+  /**
+   * Returns the {@code count} whole days starting with day {@code firstDay}.
+   */
+  public static TimeRange days(int firstDay, int count) {
+    return new TimeRange(firstDay * MINUTES_PER_DAY, count * MINUTES_PER_DAY);
+  }
+
   /**
    * Creates a {@code TimeRange} from {@code start} to {@code end}. Whether or not {@code end} is
    * included in the range will depend on {@code inclusive}. If {@code inclusive} is {@code true},
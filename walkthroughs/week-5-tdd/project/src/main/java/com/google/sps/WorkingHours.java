@@ -0,0 +1,157 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The hours someone works each day, in their own time zone. Event times are minutes in a single
+ * shared clock (UTC), and a zone offset says how far ahead of it the attendee's local clock is.
+ * For example, 9:00 to 17:00 at an offset of -300 (UTC-5) is 14:00 to 22:00 in event time. A
+ * shift may run past local midnight, such as 22:00 to 6:00.
+ *
+ * <p>The minutes outside working hours are kept as an {@link OccupancyMask} for each window
+ * recently asked about. Many attendees share a profile, so one mask serves all of them, and
+ * applying working hours to a query is a single OR rather than working out the hours again.
+ *
+ * <p>WorkingHours is thread-safe.
+ */
+public final class WorkingHours {
+  /** The largest offset from UTC of any time zone, in minutes. */
+  public static final int MAX_OFFSET = 14 * 60;
+
+  // Enough for every window the servlets ask for, several times over.
+  private static final int CACHED_WINDOWS = 16;
+
+  private final int utcOffset;
+  private final int start;
+  private final int end;
+
+  private final Map<TimeRange, OccupancyMask> offHoursByWindow =
+      new LinkedHashMap<TimeRange, OccupancyMask>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TimeRange, OccupancyMask> eldest) {
+          return size() > CACHED_WINDOWS;
+        }
+      };
+
+  private WorkingHours(int utcOffset, int start, int end) {
+    if (utcOffset < -MAX_OFFSET || utcOffset > MAX_OFFSET) {
+      throw new IllegalArgumentException("utcOffset must be within 14 hours of UTC");
+    }
+
+    if (start < TimeRange.START_OF_DAY || start >= TimeRange.MINUTES_PER_DAY) {
+      throw new IllegalArgumentException("start must be within the day");
+    }
+
+    if (end < TimeRange.START_OF_DAY || end > TimeRange.MINUTES_PER_DAY) {
+      throw new IllegalArgumentException("end must be within the day");
+    }
+
+    if (start == end) {
+      throw new IllegalArgumentException("start and end cannot be the same");
+    }
+
+    this.utcOffset = utcOffset;
+    this.start = start;
+    this.end = end;
+  }
+
+  /**
+   * Creates a profile for someone working from {@code start} to {@code end} each day, both in
+   * minutes since local midnight, {@code utcOffset} minutes ahead of UTC. If {@code end} is before
+   * {@code start}, the shift finishes the next day.
+   */
+  public static WorkingHours of(int utcOffset, int start, int end) {
+    return new WorkingHours(utcOffset, start, end);
+  }
+
+  /**
+   * Returns how many minutes this profile's local clock is ahead of UTC.
+   */
+  public int utcOffset() {
+    return utcOffset;
+  }
+
+  /**
+   * Returns the start of the working day, in minutes since local midnight.
+   */
+  public int start() {
+    return start;
+  }
+
+  /**
+   * Returns the end of the working day, in minutes since local midnight.
+   */
+  public int end() {
+    return end;
+  }
+
+  /**
+   * Marks every minute of {@code occupancy}'s window that falls outside these working hours as
+   * occupied.
+   */
+  public void occupyOffHours(OccupancyMask occupancy) {
+    occupancy.or(offHours(occupancy.window()));
+  }
+
+  private OccupancyMask offHours(TimeRange window) {
+    synchronized (offHoursByWindow) {
+      OccupancyMask offHours = offHoursByWindow.get(window);
+      if (offHours == null) {
+        offHours = buildOffHours(window);
+        offHoursByWindow.put(window, offHours);
+      }
+      return offHours;
+    }
+  }
+
+  private OccupancyMask buildOffHours(TimeRange window) {
+    OccupancyMask offHours = new OccupancyMask(window);
+    int shiftLength = end > start ? end - start : end + TimeRange.MINUTES_PER_DAY - start;
+
+    // The shift of the local day before the window starts may still be running when it does.
+    int day = Math.floorDiv(window.start() + utcOffset, TimeRange.MINUTES_PER_DAY) - 1;
+    int offFrom = window.start();
+    while (offFrom < window.end()) {
+      int shiftStart = day * TimeRange.MINUTES_PER_DAY + start - utcOffset;
+      offHours.occupy(offFrom, Math.min(shiftStart, window.end()));
+      offFrom = Math.max(offFrom, shiftStart + shiftLength);
+      day++;
+    }
+    return offHours;
+  }
+
+  @Override
+  public int hashCode() {
+    return (utcOffset * 31 + start) * 31 + end;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (!(other instanceof WorkingHours)) {
+      return false;
+    }
+
+    WorkingHours hours = (WorkingHours) other;
+    return utcOffset == hours.utcOffset && start == hours.start && end == hours.end;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("WorkingHours: %d to %d at UTC%+d minutes", start, end, utcOffset);
+  }
+}
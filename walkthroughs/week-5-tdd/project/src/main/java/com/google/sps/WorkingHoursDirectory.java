@@ -0,0 +1,77 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The working hours of each attendee. Attendees without a profile are treated as available at
+ * any time.
+ *
+ * <p>Profiles are shared: giving two attendees equal working hours stores a single
+ * {@link WorkingHours}, so its cached masks serve both of them.
+ *
+ * <p>WorkingHoursDirectory is thread-safe. Looking up attendees never blocks.
+ */
+public final class WorkingHoursDirectory {
+  private final ConcurrentHashMap<String, WorkingHours> hoursByAttendee = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<WorkingHours, WorkingHours> profiles = new ConcurrentHashMap<>();
+
+  /**
+   * Sets the working hours of {@code attendee}, replacing any they had.
+   */
+  public void set(String attendee, WorkingHours hours) {
+    if (attendee == null || hours == null) {
+      throw new IllegalArgumentException("attendee and hours cannot be null");
+    }
+
+    WorkingHours shared = profiles.putIfAbsent(hours, hours);
+    hoursByAttendee.put(attendee, shared == null ? hours : shared);
+  }
+
+  /**
+   * Removes the working hours of {@code attendee}, who is then available at any time. Returns
+   * whether they had any.
+   */
+  public boolean remove(String attendee) {
+    return hoursByAttendee.remove(attendee) != null;
+  }
+
+  /**
+   * Returns the working hours of {@code attendee}, or null if they don't have any.
+   */
+  public WorkingHours get(String attendee) {
+    return hoursByAttendee.get(attendee);
+  }
+
+  /**
+   * Marks every minute of {@code occupancy}'s window outside the working hours of any of
+   * {@code attendees} as occupied.
+   */
+  public void occupyOffHours(Collection<String> attendees, OccupancyMask occupancy) {
+    // A handful of distinct profiles covers most groups, so a list beats hashing here.
+    List<WorkingHours> applied = new ArrayList<>();
+    for (String attendee : attendees) {
+      WorkingHours hours = hoursByAttendee.get(attendee);
+      if (hours != null && !applied.contains(hours)) {
+        hours.occupyOffHours(occupancy);
+        applied.add(hours);
+      }
+    }
+  }
+}
@@ -0,0 +1,62 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.FindMeetingQuery;
+import com.google.sps.MeetingRequest;
+import com.google.sps.TimeRange;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Answers a JSON array of meeting requests in one call. The response is a JSON array holding the
+ * possible meeting times for each request, in the same order as the requests.
+ */
+@WebServlet("/query-batch")
+public class BatchQueryServlet extends HttpServlet {
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    // Convert the JSON array to a list of MeetingRequests, one element at a time.
+    List<MeetingRequest> meetingRequests = new ArrayList<>();
+    JsonReader reader = JsonSupport.newReader(request);
+    reader.beginArray();
+    while (reader.hasNext()) {
+      meetingRequests.add(JsonSupport.GSON.<MeetingRequest>fromJson(reader, MeetingRequest.class));
+    }
+    reader.endArray();
+
+    // Find the possible meeting times for every request against the same calendar.
+    FindMeetingQuery findMeetingQuery = new FindMeetingQuery(SharedCalendar.workingHours());
+    List<Collection<TimeRange>> answers =
+        findMeetingQuery.queryAll(SharedCalendar.get(), meetingRequests);
+
+    // Stream the answers back as the JSON response.
+    JsonWriter writer = JsonSupport.newWriter(response);
+    writer.beginArray();
+    for (Collection<TimeRange> answer : answers) {
+      JsonSupport.GSON.toJson(answer, JsonSupport.TIME_RANGES, writer);
+    }
+    writer.endArray();
+    writer.flush();
+  }
+}
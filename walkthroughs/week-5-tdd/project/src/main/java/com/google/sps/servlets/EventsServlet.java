@@ -0,0 +1,135 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.Event;
+import com.google.sps.EventCalendar;
+import com.google.sps.Recurrence;
+import com.google.sps.TimeRange;
+import com.google.gson.JsonParseException;
+import java.io.IOException;
+import java.util.List;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Changes the shared calendar while the server is running. POST adds the event in the body, DELETE
+ * removes it, and PUT replaces {@code from} with {@code to}, given a body of
+ * {@code {"from": event, "to": event}}. Each change is published atomically, so queries running at
+ * the same time see the calendar either before or after it and are never blocked by it.
+ */
+@WebServlet("/events")
+public class EventsServlet extends HttpServlet {
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    Event event = readEvent(request, response);
+    if (event == null) {
+      return;
+    }
+
+    SharedCalendar.get().add(event);
+    response.setStatus(HttpServletResponse.SC_CREATED);
+  }
+
+  @Override
+  public void doDelete(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    Event event = readEvent(request, response);
+    if (event == null) {
+      return;
+    }
+
+    if (!SharedCalendar.get().remove(event)) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND, "No such event");
+      return;
+    }
+    response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+  }
+
+  @Override
+  public void doPut(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    Event from;
+    Event to;
+    try {
+      Change change = JsonSupport.GSON.fromJson(JsonSupport.newReader(request), Change.class);
+      if (change == null) {
+        throw new IllegalArgumentException("change cannot be null");
+      }
+      from = toEvent(change.from);
+      to = toEvent(change.to);
+    } catch (JsonParseException | IllegalArgumentException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Expected {\"from\", \"to\"} events");
+      return;
+    }
+
+    EventCalendar calendar = SharedCalendar.get();
+    if (!calendar.replace(from, to)) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND, "No such event");
+      return;
+    }
+    response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+  }
+
+  // Returns the event in the request body, or sends an error and returns null if it isn't valid.
+  private static Event readEvent(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    try {
+      return toEvent(JsonSupport.GSON.fromJson(JsonSupport.newReader(request), EventJson.class));
+    } catch (JsonParseException | IllegalArgumentException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Expected an event");
+      return null;
+    }
+  }
+
+  // Builds an event through the constructors, which reject missing fields and bad recurrences.
+  private static Event toEvent(EventJson json) {
+    if (json == null) {
+      throw new IllegalArgumentException("event cannot be null");
+    }
+    Recurrence recurrence = null;
+    if (json.recurrence != null) {
+      recurrence = Recurrence.of(json.recurrence.period,
+          json.recurrence.count == null ? Recurrence.UNBOUNDED : json.recurrence.count,
+          json.recurrence.until == null ? Recurrence.UNBOUNDED : json.recurrence.until);
+    }
+    return new Event(json.title, json.when, json.attendees, recurrence);
+  }
+
+  /**
+   * The JSON form of an event. Gson doesn't call constructors, so events are read into this class
+   * first and then built through the {@code Event} constructor, which checks them.
+   */
+  private static final class EventJson {
+    private String title;
+    private TimeRange when;
+    private List<String> attendees;
+    private RecurrenceJson recurrence;
+  }
+
+  /** The JSON form of a recurrence. A missing count or end means there is no such limit. */
+  private static final class RecurrenceJson {
+    private int period;
+    private Integer count;
+    private Integer until;
+  }
+
+  /** The body of a PUT: the event to replace and its replacement. */
+  private static final class Change {
+    private EventJson from;
+    private EventJson to;
+  }
+}
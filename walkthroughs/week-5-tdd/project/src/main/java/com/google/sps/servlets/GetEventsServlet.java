@@ -14,8 +14,8 @@
 
 package com.google.sps.servlets;
 
-import com.google.sps.Events;
-import com.google.gson.Gson;
+import com.google.sps.Event;
+import com.google.gson.stream.JsonWriter;
 import java.io.IOException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
@@ -26,11 +26,14 @@ import javax.servlet.http.HttpServletResponse;
 public class GetEventsServlet extends HttpServlet {
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    Gson gson = new Gson();
-    String jsonResponse = gson.toJson(Events.events);
-
-    // Send the JSON back as the response
-    response.setContentType("application/json");
-    response.getWriter().println(jsonResponse);
+    // Stream the events into the response one at a time, so the whole array is never held as a
+    // single String.
+    JsonWriter writer = JsonSupport.newWriter(response);
+    writer.beginArray();
+    for (Event event : SharedCalendar.get().getEvents()) {
+      JsonSupport.GSON.toJson(event, Event.class, writer);
+    }
+    writer.endArray();
+    writer.flush();
   }
 }
@@ -0,0 +1,90 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.google.sps.AttendeeDictionary;
+import com.google.sps.AttendeeSet;
+import com.google.sps.TimeRange;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * JSON helpers shared by the servlets. Gson instances are thread-safe and cache the type adapters
+ * they build, so a single instance is reused rather than creating one per request.
+ */
+final class JsonSupport {
+  static final Gson GSON = new GsonBuilder()
+      .registerTypeAdapter(AttendeeSet.class, new AttendeeSetAdapter())
+      .create();
+
+  static final Type TIME_RANGES = new TypeToken<Collection<TimeRange>>() {}.getType();
+
+  private JsonSupport() {
+    // Disallow instances.
+  }
+
+  /**
+   * Returns a reader that parses the request body as it arrives, rather than buffering it first.
+   */
+  static JsonReader newReader(HttpServletRequest request) throws IOException {
+    return new JsonReader(request.getReader());
+  }
+
+  /**
+   * Marks the response as JSON and returns a writer that streams straight into it. Callers must
+   * {@code flush()} the writer when they are done.
+   */
+  static JsonWriter newWriter(HttpServletResponse response) throws IOException {
+    response.setContentType("application/json");
+    return new JsonWriter(response.getWriter());
+  }
+
+  /**
+   * Writes attendee sets as arrays of names rather than their internal IDs, which only mean
+   * something inside this server.
+   */
+  private static final class AttendeeSetAdapter extends TypeAdapter<AttendeeSet> {
+    @Override
+    public void write(JsonWriter writer, AttendeeSet attendees) throws IOException {
+      writer.beginArray();
+      for (String name : attendees.names()) {
+        writer.value(name);
+      }
+      writer.endArray();
+    }
+
+    @Override
+    public AttendeeSet read(JsonReader reader) throws IOException {
+      List<String> names = new ArrayList<>();
+      reader.beginArray();
+      while (reader.hasNext()) {
+        names.add(reader.nextString());
+      }
+      reader.endArray();
+      return AttendeeSet.intern(AttendeeDictionary.shared(), names);
+    }
+  }
+}
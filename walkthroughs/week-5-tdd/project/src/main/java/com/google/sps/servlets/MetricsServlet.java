@@ -0,0 +1,98 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.AvailabilityCache;
+import com.google.sps.EventCalendar;
+import com.google.sps.LogLinearHistogram;
+import java.io.IOException;
+import java.io.PrintWriter;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Exports scheduler metrics in the Prometheus text format: query latency and result sizes as
+ * summaries, and counters for invalid queries, the events the shared calendar scanned and the
+ * availability cache.
+ */
+@WebServlet("/metrics")
+public class MetricsServlet extends HttpServlet {
+  private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    response.setContentType("text/plain; version=0.0.4; charset=utf-8");
+    PrintWriter out = response.getWriter();
+
+    writeSummary(out, "scheduler_query_latency_seconds", "Time taken to answer a query.",
+        SchedulerMetrics.QUERY_LATENCY_NANOS, NANOS_PER_SECOND);
+    writeSummary(out, "scheduler_query_result_ranges", "Time ranges returned per query.",
+        SchedulerMetrics.RESULT_SIZES, 1);
+    writeMetric(out, "scheduler_query_bad_requests_total", "counter",
+        "Queries rejected as invalid.", SchedulerMetrics.BAD_REQUESTS.sum());
+
+    EventCalendar calendar = SharedCalendar.get();
+    writeMetric(out, "scheduler_events_scanned_total", "counter",
+        "Events visited while building occupancy.", calendar.eventsScanned());
+    writeMetric(out, "scheduler_events_occupying_total", "counter",
+        "Visited events that overlapped the window searched.", calendar.eventsOccupying());
+
+    AvailabilityCache cache = calendar.getCache();
+    if (cache != null) {
+      writeMetric(out, "scheduler_cache_group_hits_total", "counter",
+          "Occupancy lookups for a group answered from the cache.", cache.groupHits());
+      writeMetric(out, "scheduler_cache_group_misses_total", "counter",
+          "Occupancy lookups for a group not in the cache.", cache.groupMisses());
+      writeMetric(out, "scheduler_cache_attendee_hits_total", "counter",
+          "Occupancy lookups for one attendee answered from the cache.", cache.attendeeHits());
+      writeMetric(out, "scheduler_cache_attendee_misses_total", "counter",
+          "Occupancy lookups for one attendee not in the cache.", cache.attendeeMisses());
+      writeMetric(out, "scheduler_cache_evictions_total", "counter",
+          "Occupancy masks dropped to stay within the size bound.", cache.evictions());
+      writeMetric(out, "scheduler_cache_entries", "gauge",
+          "Occupancy masks currently cached.", cache.size());
+    }
+    out.flush();
+  }
+
+  // Prometheus expects \n line endings whatever the platform's line separator.
+  private static void writeLine(PrintWriter out, String line) {
+    out.print(line);
+    out.print('\n');
+  }
+
+  private static void writeMetric(
+      PrintWriter out, String name, String type, String help, long value) {
+    writeLine(out, "# HELP " + name + " " + help);
+    writeLine(out, "# TYPE " + name + " " + type);
+    writeLine(out, name + " " + value);
+  }
+
+  // Writes a histogram as a summary, dividing every value by scale.
+  private static void writeSummary(
+      PrintWriter out, String name, String help, LogLinearHistogram histogram, double scale) {
+    writeLine(out, "# HELP " + name + " " + help);
+    writeLine(out, "# TYPE " + name + " summary");
+    for (double quantile : QUANTILES) {
+      writeLine(out, name + "{quantile=\"" + quantile + "\"} "
+          + histogram.valueAtQuantile(quantile) / scale);
+    }
+    writeLine(out, name + "_sum " + histogram.sum() / scale);
+    writeLine(out, name + "_count " + histogram.count());
+  }
+}
@@ -14,38 +14,87 @@
 
 package com.google.sps.servlets;
 
-import com.google.sps.Events;
 import com.google.sps.FindMeetingQuery;
 import com.google.sps.MeetingRequest;
+import com.google.sps.SlotPreference;
 import com.google.sps.TimeRange;
-import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 import java.io.IOException;
-import java.util.Arrays;
 import java.util.Collection;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+/**
+ * Finds the free time for the meeting request in the body. With a {@code k} parameter, returns
+ * the {@code k} best meeting times instead, ranked by {@code prefer} ({@code earliest},
+ * {@code fewest-fragments} or {@code buffer}, with a {@code buffer} of 15 minutes unless given)
+ * over the next {@code days} days (1 unless given). {@code k} may be at most 100 and {@code days}
+ * at most 31.
+ */
 @WebServlet("/query")
 public class QueryServlet extends HttpServlet {
+  private static final int DEFAULT_BUFFER_MINUTES = 15;
+  private static final int MAX_K = 100;
+  private static final int MAX_DAYS = 31;
+
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    Gson gson = new Gson();
-
     // Convert the JSON to an instance of MeetingRequest.
-    MeetingRequest meetingRequest = gson.fromJson(request.getReader(), MeetingRequest.class);
+    MeetingRequest meetingRequest =
+        JsonSupport.GSON.fromJson(JsonSupport.newReader(request), MeetingRequest.class);
 
     // Find the possible meeting times.
-    FindMeetingQuery findMeetingQuery = new FindMeetingQuery();
-    Collection<TimeRange> answer =
-        findMeetingQuery.query(Arrays.asList(Events.events), meetingRequest);
+    FindMeetingQuery findMeetingQuery = new FindMeetingQuery(SharedCalendar.workingHours());
+    long startNanos = System.nanoTime();
+    Collection<TimeRange> answer;
+    if (request.getParameter("k") == null) {
+      answer = findMeetingQuery.query(SharedCalendar.get(), meetingRequest);
+    } else {
+      try {
+        int k = getBoundedParameter(request, "k", 1, MAX_K);
+        TimeRange window = TimeRange.days(0, getBoundedParameter(request, "days", 1, MAX_DAYS));
+        answer = findMeetingQuery.queryBest(
+            SharedCalendar.get(), meetingRequest, window, k, getPreference(request));
+      } catch (IllegalArgumentException e) {
+        SchedulerMetrics.BAD_REQUESTS.increment();
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+        return;
+      }
+    }
+
+    SchedulerMetrics.recordQuery(System.nanoTime() - startNanos, answer.size());
+
+    // Stream the times back as the JSON response.
+    JsonWriter writer = JsonSupport.newWriter(response);
+    JsonSupport.GSON.toJson(answer, JsonSupport.TIME_RANGES, writer);
+    writer.flush();
+  }
+
+  private static SlotPreference getPreference(HttpServletRequest request) {
+    String prefer = request.getParameter("prefer");
+    if (prefer == null || prefer.equals("earliest")) {
+      return SlotPreference.EARLIEST;
+    } else if (prefer.equals("fewest-fragments")) {
+      return SlotPreference.FEWEST_FRAGMENTS;
+    } else if (prefer.equals("buffer")) {
+      return SlotPreference.buffer(getIntParameter(request, "buffer", DEFAULT_BUFFER_MINUTES));
+    }
+    throw new IllegalArgumentException("Unknown preference: " + prefer);
+  }
 
-    // Convert the times to JSON
-    String jsonResponse = gson.toJson(answer);
+  private static int getBoundedParameter(
+      HttpServletRequest request, String name, int defaultValue, int max) {
+    int value = getIntParameter(request, name, defaultValue);
+    if (value <= 0 || value > max) {
+      throw new IllegalArgumentException(name + " must be between 1 and " + max);
+    }
+    return value;
+  }
 
-    // Send the JSON back as the response
-    response.setContentType("application/json");
-    response.getWriter().println(jsonResponse);
+  private static int getIntParameter(HttpServletRequest request, String name, int defaultValue) {
+    String value = request.getParameter(name);
+    return value == null ? defaultValue : Integer.parseInt(value);
   }
 }
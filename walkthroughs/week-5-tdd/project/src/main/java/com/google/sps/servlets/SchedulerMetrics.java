@@ -0,0 +1,45 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.LogLinearHistogram;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Holds the measurements taken by {@link QueryServlet}, which {@link MetricsServlet} exports.
+ * Everything here is lock-free, so recording adds no contention between requests.
+ */
+final class SchedulerMetrics {
+  /** How long each query took to answer, in nanoseconds, not counting reading the request. */
+  static final LogLinearHistogram QUERY_LATENCY_NANOS = new LogLinearHistogram();
+
+  /** How many time ranges each query returned. */
+  static final LogLinearHistogram RESULT_SIZES = new LogLinearHistogram();
+
+  /** Queries rejected as invalid. */
+  static final LongAdder BAD_REQUESTS = new LongAdder();
+
+  private SchedulerMetrics() {
+    // Disallow instances.
+  }
+
+  /**
+   * Records a query that took {@code nanos} to answer with {@code resultSize} time ranges.
+   */
+  static void recordQuery(long nanos, int resultSize) {
+    QUERY_LATENCY_NANOS.record(nanos);
+    RESULT_SIZES.record(resultSize);
+  }
+}
@@ -0,0 +1,48 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.AvailabilityCache;
+import com.google.sps.EventCalendar;
+import com.google.sps.Events;
+import com.google.sps.WorkingHoursDirectory;
+import java.util.Arrays;
+
+/**
+ * Holds the calendar shared by every servlet. It starts out with {@code Events.events} and is
+ * changed through {@link EventsServlet}. Attendees' working hours start out empty and are changed
+ * through {@link WorkingHoursServlet}. Both are thread-safe, so no extra locking is needed.
+ */
+final class SharedCalendar {
+  // Only masks of up to a day are cached, about 200 bytes each, so a full cache stays around 2 MB.
+  private static final int CACHE_ENTRIES = 10_000;
+
+  private static final EventCalendar CALENDAR = new EventCalendar(
+      Arrays.asList(Events.events), new AvailabilityCache(CACHE_ENTRIES));
+
+  private static final WorkingHoursDirectory WORKING_HOURS = new WorkingHoursDirectory();
+
+  private SharedCalendar() {
+    // Disallow instances.
+  }
+
+  static EventCalendar get() {
+    return CALENDAR;
+  }
+
+  static WorkingHoursDirectory workingHours() {
+    return WORKING_HOURS;
+  }
+}
@@ -0,0 +1,91 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.WorkingHours;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Reads and changes attendees' working hours. GET returns the hours of the {@code attendee}
+ * parameter, PUT sets them from a body of
+ * {@code {"attendee": name, "utcOffset": minutes, "start": minute, "end": minute}}, and DELETE
+ * removes them so the attendee is available at any time.
+ */
+@WebServlet("/working-hours")
+public class WorkingHoursServlet extends HttpServlet {
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String attendee = request.getParameter("attendee");
+    WorkingHours hours = attendee == null ? null : SharedCalendar.workingHours().get(attendee);
+    if (hours == null) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND, "No working hours for attendee");
+      return;
+    }
+
+    JsonWriter writer = JsonSupport.newWriter(response);
+    writer.beginObject();
+    writer.name("attendee").value(attendee);
+    writer.name("utcOffset").value(hours.utcOffset());
+    writer.name("start").value(hours.start());
+    writer.name("end").value(hours.end());
+    writer.endObject();
+    writer.flush();
+  }
+
+  @Override
+  public void doPut(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String attendee;
+    WorkingHours hours;
+    try {
+      Profile profile = JsonSupport.GSON.fromJson(JsonSupport.newReader(request), Profile.class);
+      if (profile == null || profile.attendee == null) {
+        throw new IllegalArgumentException("attendee cannot be null");
+      }
+      attendee = profile.attendee;
+      hours = WorkingHours.of(profile.utcOffset, profile.start, profile.end);
+    } catch (JsonParseException | IllegalArgumentException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Expected working hours");
+      return;
+    }
+
+    SharedCalendar.workingHours().set(attendee, hours);
+    response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+  }
+
+  @Override
+  public void doDelete(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    String attendee = request.getParameter("attendee");
+    if (attendee == null || !SharedCalendar.workingHours().remove(attendee)) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND, "No working hours for attendee");
+      return;
+    }
+    response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+  }
+
+  /** The JSON form of an attendee's working hours, checked by {@code WorkingHours.of}. */
+  private static final class Profile {
+    private String attendee;
+    private int utcOffset;
+    private int start;
+    private int end;
+  }
+}
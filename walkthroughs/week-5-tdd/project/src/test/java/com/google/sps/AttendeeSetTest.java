@@ -0,0 +1,141 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class AttendeeSetTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+  private static final String PERSON_C = "Person C";
+
+  @Test
+  public void dictionaryGivesDenseStableIds() {
+    AttendeeDictionary dictionary = new AttendeeDictionary();
+
+    AttendeeSet a = AttendeeSet.intern(dictionary, Arrays.asList(PERSON_A));
+    AttendeeSet b = AttendeeSet.intern(dictionary, Arrays.asList(PERSON_B));
+
+    Assert.assertEquals(0, a.id(0));
+    Assert.assertEquals(1, b.id(0));
+    Assert.assertEquals(a, AttendeeSet.intern(dictionary, Arrays.asList(PERSON_A)));
+    Assert.assertEquals(PERSON_B, dictionary.name(b.id(0)));
+    Assert.assertEquals(-1, dictionary.lookup(PERSON_C));
+    Assert.assertEquals(2, dictionary.size());
+  }
+
+  @Test
+  public void duplicateNamesAreStoredOnce() {
+    AttendeeDictionary dictionary = new AttendeeDictionary();
+
+    AttendeeSet attendees =
+        AttendeeSet.intern(dictionary, Arrays.asList(PERSON_B, PERSON_A, PERSON_B));
+
+    Assert.assertEquals(2, attendees.size());
+    Assert.assertEquals(new HashSet<>(Arrays.asList(PERSON_A, PERSON_B)), attendees.names());
+  }
+
+  @Test
+  public void lookupLeavesOutUnknownNames() {
+    AttendeeDictionary dictionary = new AttendeeDictionary();
+    AttendeeSet known = AttendeeSet.intern(dictionary, Arrays.asList(PERSON_A));
+
+    AttendeeSet attendees = AttendeeSet.lookup(dictionary, Arrays.asList(PERSON_A, PERSON_C));
+
+    Assert.assertEquals(known, attendees);
+    Assert.assertEquals(Collections.singleton(PERSON_A), attendees.names());
+    Assert.assertEquals(-1, dictionary.lookup(PERSON_C));
+  }
+
+  @Test
+  public void intersectsSimilarSizes() {
+    AttendeeDictionary dictionary = new AttendeeDictionary();
+    AttendeeSet ab = AttendeeSet.intern(dictionary, Arrays.asList(PERSON_A, PERSON_B));
+    AttendeeSet bc = AttendeeSet.intern(dictionary, Arrays.asList(PERSON_B, PERSON_C));
+    AttendeeSet c = AttendeeSet.intern(dictionary, Arrays.asList(PERSON_C));
+
+    Assert.assertTrue(ab.intersects(bc));
+    Assert.assertFalse(ab.intersects(c));
+    Assert.assertFalse(ab.intersects(AttendeeSet.EMPTY));
+  }
+
+  @Test
+  public void intersectsMuchLargerSet() {
+    // Large enough that the smaller set is looked up rather than merged.
+    AttendeeDictionary dictionary = new AttendeeDictionary();
+    List<String> everyone = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      everyone.add("Person " + i);
+    }
+    AttendeeSet large = AttendeeSet.intern(dictionary, everyone.subList(0, 500));
+
+    AttendeeSet inside = AttendeeSet.intern(dictionary, Arrays.asList("Person 499"));
+    AttendeeSet outside = AttendeeSet.intern(dictionary, Arrays.asList("Person 500", "Person 999"));
+
+    Assert.assertTrue(large.intersects(inside));
+    Assert.assertFalse(outside.intersects(large));
+  }
+
+  @Test
+  public void namesViewSupportsContains() {
+    AttendeeDictionary dictionary = new AttendeeDictionary();
+    AttendeeSet attendees = AttendeeSet.intern(dictionary, Arrays.asList(PERSON_A));
+
+    Assert.assertTrue(attendees.names().contains(PERSON_A));
+    Assert.assertFalse(attendees.names().contains(PERSON_B));
+  }
+
+  @Test
+  public void requestsSeeAttendeesAddedLater() {
+    // A request made before anyone called "Person Z" had an event must still notice their events.
+    MeetingRequest request = new MeetingRequest(Arrays.asList("Person Z"), 30);
+    Assert.assertTrue(request.getAttendeeIds().isEmpty());
+
+    Event event = new Event("Event 1", TimeRange.fromStartDuration(0, 30),
+        Arrays.asList("Person Z"));
+
+    Assert.assertTrue(event.getAttendeeIds().intersects(request.getAttendeeIds()));
+  }
+
+  @Test
+  public void unreferencedNamesAreDropped() throws InterruptedException {
+    AttendeeDictionary dictionary = new AttendeeDictionary();
+    AttendeeSet kept = AttendeeSet.intern(dictionary, Arrays.asList(PERSON_A));
+    AttendeeSet.intern(dictionary, Arrays.asList(PERSON_B));
+
+    // Nothing holds on to Person B, so the dictionary lets go of them once collected.
+    for (int i = 0; i < 100 && dictionary.size() > 1; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+
+    Assert.assertEquals(1, dictionary.size());
+    Assert.assertEquals(-1, dictionary.lookup(PERSON_B));
+    Assert.assertEquals(0, dictionary.lookup(PERSON_A));
+    // Person B's ID is free for the next new name.
+    Assert.assertEquals(1, AttendeeSet.intern(dictionary, Arrays.asList(PERSON_C)).id(0));
+    Assert.assertEquals(PERSON_A, dictionary.name(kept.id(0)));
+  }
+}
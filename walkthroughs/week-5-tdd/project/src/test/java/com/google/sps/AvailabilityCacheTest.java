@@ -0,0 +1,178 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.Collection;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class AvailabilityCacheTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+  private static final String PERSON_C = "Person C";
+
+  private static final int TIME_0900AM = TimeRange.getTimeInMinutes(9, 0);
+  private static final int TIME_1000AM = TimeRange.getTimeInMinutes(10, 0);
+
+  private static final int DURATION_30_MINUTES = 30;
+
+  private static OccupancyMask busyAt(int start) {
+    OccupancyMask mask = new OccupancyMask(TimeRange.WHOLE_DAY);
+    mask.occupy(start, start + DURATION_30_MINUTES);
+    return mask;
+  }
+
+  @Test
+  public void countsHitsAndMisses() {
+    AvailabilityCache cache = new AvailabilityCache(10);
+    Collection<String> group = Arrays.asList(PERSON_A, PERSON_B);
+
+    Assert.assertNull(cache.get(group, TimeRange.WHOLE_DAY));
+    cache.put(group, busyAt(TIME_0900AM), cache.generation());
+    // The attendee set is unordered.
+    OccupancyMask cached = cache.get(Arrays.asList(PERSON_B, PERSON_A), TimeRange.WHOLE_DAY);
+
+    Assert.assertTrue(cached.isOccupied(TIME_0900AM));
+    Assert.assertEquals(1, cache.groupHits());
+    Assert.assertEquals(1, cache.groupMisses());
+    Assert.assertEquals(0, cache.attendeeHits());
+    Assert.assertEquals(0, cache.attendeeMisses());
+  }
+
+  @Test
+  public void returnedMasksAreCopies() {
+    AvailabilityCache cache = new AvailabilityCache(10);
+    Collection<String> group = Arrays.asList(PERSON_A);
+    cache.put(group, busyAt(TIME_0900AM), cache.generation());
+
+    cache.get(group, TimeRange.WHOLE_DAY).occupy(TimeRange.WHOLE_DAY);
+
+    Assert.assertFalse(cache.get(group, TimeRange.WHOLE_DAY).isOccupied(TIME_1000AM));
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsed() {
+    AvailabilityCache cache = new AvailabilityCache(2);
+    cache.put(Arrays.asList(PERSON_A), busyAt(TIME_0900AM), cache.generation());
+    cache.put(Arrays.asList(PERSON_B), busyAt(TIME_0900AM), cache.generation());
+    // Touch A so that B becomes the least recently used.
+    cache.get(Arrays.asList(PERSON_A), TimeRange.WHOLE_DAY);
+    cache.put(Arrays.asList(PERSON_C), busyAt(TIME_0900AM), cache.generation());
+
+    Assert.assertEquals(2, cache.size());
+    Assert.assertEquals(1, cache.evictions());
+    Assert.assertNotNull(cache.get(Arrays.asList(PERSON_A), TimeRange.WHOLE_DAY));
+    Assert.assertNull(cache.get(Arrays.asList(PERSON_B), TimeRange.WHOLE_DAY));
+  }
+
+  @Test
+  public void invalidateOnlyDropsAffectedAttendees() {
+    AvailabilityCache cache = new AvailabilityCache(10);
+    cache.put(Arrays.asList(PERSON_A), busyAt(TIME_0900AM), cache.generation());
+    cache.put(Arrays.asList(PERSON_A, PERSON_B), busyAt(TIME_0900AM), cache.generation());
+    cache.put(Arrays.asList(PERSON_C), busyAt(TIME_0900AM), cache.generation());
+
+    cache.invalidate(Arrays.asList(PERSON_B));
+
+    Assert.assertNotNull(cache.get(Arrays.asList(PERSON_A), TimeRange.WHOLE_DAY));
+    Assert.assertNull(cache.get(Arrays.asList(PERSON_A, PERSON_B), TimeRange.WHOLE_DAY));
+    Assert.assertNotNull(cache.get(Arrays.asList(PERSON_C), TimeRange.WHOLE_DAY));
+  }
+
+  @Test
+  public void staleMasksAreNotCached() {
+    // A mask computed before an invalidation must not be stored after it.
+    AvailabilityCache cache = new AvailabilityCache(10);
+    long generation = cache.generation();
+    cache.invalidate(Arrays.asList(PERSON_A));
+
+    cache.put(Arrays.asList(PERSON_A), busyAt(TIME_0900AM), generation);
+
+    Assert.assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void staleMasksOfOtherAttendeesAreCached() {
+    // Invalidating A says nothing about B, so B's mask is still worth keeping.
+    AvailabilityCache cache = new AvailabilityCache(10);
+    long generation = cache.generation();
+    cache.invalidate(Arrays.asList(PERSON_A));
+
+    cache.put(Arrays.asList(PERSON_B), busyAt(TIME_0900AM), generation);
+
+    Assert.assertNotNull(cache.get(Arrays.asList(PERSON_B), TimeRange.WHOLE_DAY));
+  }
+
+  @Test
+  public void largeCachesStayWithinBound() {
+    // Split across segments, the cache still never holds more than it was asked to.
+    AvailabilityCache cache = new AvailabilityCache(1000);
+    for (int i = 0; i < 5000; i++) {
+      cache.put(Arrays.asList("Person " + i), busyAt(TIME_0900AM), cache.generation());
+    }
+
+    Assert.assertEquals(1000, cache.size());
+    Assert.assertEquals(4000, cache.evictions());
+
+    // Evicted entries are no longer indexed, so invalidating them finds nothing to drop.
+    cache.invalidate(Arrays.asList("Person 0"));
+    Assert.assertEquals(1000, cache.size());
+  }
+
+  @Test
+  public void calendarReusesAndInvalidatesMasks() {
+    Event event = new Event("Event 1",
+        TimeRange.fromStartDuration(TIME_0900AM, DURATION_30_MINUTES),
+        Arrays.asList(PERSON_A));
+    AvailabilityCache cache = new AvailabilityCache(10);
+    EventCalendar calendar = new EventCalendar(Arrays.asList(event), cache);
+    Collection<String> group = Arrays.asList(PERSON_A, PERSON_B);
+
+    calendar.getOccupancy(group, TimeRange.WHOLE_DAY);
+    long hitsBefore = cache.groupHits();
+    OccupancyMask cached = calendar.getOccupancy(group, TimeRange.WHOLE_DAY);
+
+    Assert.assertEquals(hitsBefore + 1, cache.groupHits());
+    Assert.assertTrue(cached.isOccupied(TIME_0900AM));
+
+    // Adding an event for B must be visible straight away.
+    calendar.add(new Event("Event 2", TimeRange.fromStartDuration(TIME_1000AM, DURATION_30_MINUTES),
+        Arrays.asList(PERSON_B)));
+    OccupancyMask updated = calendar.getOccupancy(group, TimeRange.WHOLE_DAY);
+
+    Assert.assertTrue(updated.isOccupied(TIME_0900AM));
+    Assert.assertTrue(updated.isOccupied(TIME_1000AM));
+  }
+
+  @Test
+  public void calendarDoesNotCacheMultiDayWindows() {
+    Event event = new Event("Event 1",
+        TimeRange.fromStartDuration(TIME_0900AM, DURATION_30_MINUTES),
+        Arrays.asList(PERSON_A));
+    AvailabilityCache cache = new AvailabilityCache(10);
+    EventCalendar calendar = new EventCalendar(Arrays.asList(event), cache);
+
+    OccupancyMask occupancy =
+        calendar.getOccupancy(Arrays.asList(PERSON_A, PERSON_B), TimeRange.days(0, 31));
+
+    Assert.assertTrue(occupancy.isOccupied(TIME_0900AM));
+    Assert.assertEquals(0, cache.size());
+  }
+}
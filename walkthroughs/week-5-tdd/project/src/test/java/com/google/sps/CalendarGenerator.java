@@ -0,0 +1,115 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic calendars for benchmarks. Generation is seeded, so the same parameters always
+ * produce the same calendar.
+ */
+final class CalendarGenerator {
+  /** How tightly packed generated events are. */
+  enum Density {
+    // Long meetings crammed into working hours, so most people have little free time.
+    DENSE(TimeRange.getTimeInMinutes(9, 0), TimeRange.getTimeInMinutes(17, 0), 30, 120),
+    // Short meetings spread across the whole day, leaving plenty of gaps.
+    SPARSE(TimeRange.START_OF_DAY, TimeRange.END_OF_DAY, 15, 30);
+
+    private final int earliestStart;
+    private final int latestStart;
+    private final int shortestDuration;
+    private final int longestDuration;
+
+    Density(int earliestStart, int latestStart, int shortestDuration, int longestDuration) {
+      this.earliestStart = earliestStart;
+      this.latestStart = latestStart;
+      this.shortestDuration = shortestDuration;
+      this.longestDuration = longestDuration;
+    }
+  }
+
+  private static final int MAX_ATTENDEES_PER_EVENT = 4;
+
+  private final Random random;
+  private final String[] people;
+
+  /**
+   * Creates a generator for an organization of {@code attendees} people.
+   */
+  CalendarGenerator(long seed, int attendees) {
+    this.random = new Random(seed);
+    this.people = new String[attendees];
+    for (int i = 0; i < attendees; i++) {
+      people[i] = "Person " + i;
+    }
+  }
+
+  /**
+   * Returns the name of the {@code index}th person in the organization.
+   */
+  String person(int index) {
+    return people[index];
+  }
+
+  /**
+   * Returns {@code count} events within a single day, each attended by up to four people.
+   */
+  List<Event> events(int count, Density density) {
+    List<Event> events = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      int start = density.earliestStart
+          + random.nextInt(density.latestStart - density.earliestStart);
+      int duration = density.shortestDuration
+          + random.nextInt(density.longestDuration - density.shortestDuration + 1);
+      TimeRange when =
+          TimeRange.fromStartDuration(start, Math.min(duration, TimeRange.WHOLE_DAY.end() - start));
+
+      events.add(new Event("Event " + i, when, attendees()));
+    }
+    return events;
+  }
+
+  /**
+   * Returns a request for a {@code duration} minute meeting between {@code required} randomly
+   * chosen people, with {@code optional} more people invited optionally.
+   */
+  MeetingRequest request(int required, int optional, long duration) {
+    List<String> shuffled = new ArrayList<>(Arrays.asList(people));
+    Collections.shuffle(shuffled, random);
+
+    int requiredCount = Math.min(required, shuffled.size());
+    MeetingRequest request = new MeetingRequest(shuffled.subList(0, requiredCount), duration);
+    int optionalEnd = Math.min(requiredCount + optional, shuffled.size());
+    for (String person : shuffled.subList(requiredCount, optionalEnd)) {
+      request.addOptionalAttendee(person);
+    }
+    return request;
+  }
+
+  private Collection<String> attendees() {
+    int count = 1 + random.nextInt(Math.min(MAX_ATTENDEES_PER_EVENT, people.length));
+    List<String> attendees = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      attendees.add(people[random.nextInt(people.length)]);
+    }
+    return attendees;
+  }
+}
@@ -0,0 +1,176 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class CalendarSnapshotTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+  private static final String PERSON_C = "Person C";
+
+  private static final int TIME_0800AM = TimeRange.getTimeInMinutes(8, 0);
+  private static final int TIME_0900AM = TimeRange.getTimeInMinutes(9, 0);
+  private static final int TIME_1000AM = TimeRange.getTimeInMinutes(10, 0);
+
+  private static final int DURATION_30_MINUTES = 30;
+
+  private static final Event EVENT_1 = new Event("Event 1",
+      TimeRange.fromStartDuration(TIME_1000AM, DURATION_30_MINUTES), Arrays.asList(PERSON_A));
+  private static final Event EVENT_2 = new Event("Event 2",
+      TimeRange.fromStartDuration(TIME_0800AM, DURATION_30_MINUTES),
+      Arrays.asList(PERSON_A, PERSON_B));
+  private static final Event STANDUP = new Event("Standup ☕",
+      TimeRange.fromStartDuration(TIME_0900AM, DURATION_30_MINUTES), Arrays.asList(PERSON_C),
+      Recurrence.times(TimeRange.MINUTES_PER_DAY, 5));
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private CalendarSnapshot writeAndOpen(Collection<Event> events) throws IOException {
+    Path path = folder.newFile().toPath();
+    CalendarSnapshot.write(events, path);
+    return CalendarSnapshot.open(path);
+  }
+
+  @Test
+  public void eventsRoundTrip() throws IOException {
+    List<Event> events = Arrays.asList(EVENT_1, EVENT_2, STANDUP);
+
+    CalendarSnapshot snapshot = writeAndOpen(events);
+
+    Assert.assertEquals(3, snapshot.size());
+    Assert.assertEquals(events, snapshot.getEvents());
+    Assert.assertEquals(STANDUP.getRecurrence(), snapshot.getEvent(2).getRecurrence());
+  }
+
+  @Test
+  public void emptyCalendarRoundTrips() throws IOException {
+    CalendarSnapshot snapshot = writeAndOpen(Collections.<Event>emptyList());
+
+    Assert.assertEquals(0, snapshot.size());
+    Assert.assertTrue(snapshot.getOccupancy(Arrays.asList(PERSON_A), TimeRange.WHOLE_DAY)
+        .isEmpty());
+  }
+
+  @Test
+  public void occupancyIncludesRecurringEvents() throws IOException {
+    CalendarSnapshot snapshot = writeAndOpen(Arrays.asList(EVENT_1, EVENT_2, STANDUP));
+    TimeRange thirdDay = TimeRange.day(2);
+
+    OccupancyMask occupancy = snapshot.getOccupancy(Arrays.asList(PERSON_C), thirdDay);
+
+    int standup = thirdDay.start() + TIME_0900AM;
+    Assert.assertTrue(occupancy.isOccupied(standup));
+    Assert.assertFalse(occupancy.isOccupied(standup + DURATION_30_MINUTES));
+    Assert.assertTrue(snapshot.getOccupancy(Arrays.asList(PERSON_C), TimeRange.day(5))
+        .isEmpty());
+  }
+
+  @Test
+  public void unknownAttendeeIsNeverBusy() throws IOException {
+    CalendarSnapshot snapshot = writeAndOpen(Arrays.asList(EVENT_1, EVENT_2));
+
+    Assert.assertTrue(snapshot.getOccupancy(Arrays.asList("Nobody"), TimeRange.WHOLE_DAY)
+        .isEmpty());
+  }
+
+  @Test
+  public void queryMatchesInMemoryCalendar() throws IOException {
+    CalendarGenerator generator = new CalendarGenerator(2017, 200);
+    List<Event> events = generator.events(2_000, CalendarGenerator.Density.SPARSE);
+    CalendarSnapshot snapshot = writeAndOpen(events);
+    FindMeetingQuery query = new FindMeetingQuery();
+
+    for (int i = 0; i < 20; i++) {
+      MeetingRequest request = generator.request(3, 2, DURATION_30_MINUTES);
+
+      Assert.assertEquals(query.query(events, request, TimeRange.WHOLE_DAY),
+          query.query(snapshot, request, TimeRange.WHOLE_DAY));
+    }
+  }
+
+  @Test
+  public void convertsJson() throws IOException {
+    String json = "[{\"title\":\"Event 1\",\"when\":{\"start\":600,\"duration\":30},"
+        + "\"attendees\":[\"Person A\"]},"
+        + "{\"title\":\"Standup ☕\",\"when\":{\"start\":540,\"duration\":30},"
+        + "\"attendees\":[\"Person C\"],\"recurrence\":{\"period\":1440,\"count\":5},"
+        + "\"ignored\":true}]";
+    Path jsonPath = folder.newFile().toPath();
+    Files.write(jsonPath, json.getBytes(StandardCharsets.UTF_8));
+    Path snapshotPath = folder.newFile().toPath();
+
+    CalendarSnapshotConverter.convert(jsonPath, snapshotPath);
+
+    Assert.assertEquals(
+        Arrays.asList(EVENT_1, STANDUP), CalendarSnapshot.open(snapshotPath).getEvents());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void convertRejectsEventWithoutTitle() throws IOException {
+    CalendarSnapshotConverter.readEvents(new StringReader(
+        "[{\"when\":{\"start\":600,\"duration\":30},\"attendees\":[]}]"));
+  }
+
+  @Test(expected = IOException.class)
+  public void openRejectsOtherFiles() throws IOException {
+    Path path = folder.newFile().toPath();
+    Files.write(path, "[]".getBytes(StandardCharsets.UTF_8));
+
+    CalendarSnapshot.open(path);
+  }
+
+  @Test(expected = IOException.class)
+  public void openRejectsTruncatedSnapshot() throws IOException {
+    Path path = folder.newFile().toPath();
+    CalendarSnapshot.write(Arrays.asList(EVENT_1, EVENT_2, STANDUP), path);
+    byte[] bytes = Files.readAllBytes(path);
+    Files.write(path, Arrays.copyOf(bytes, bytes.length - 1));
+
+    CalendarSnapshot.open(path);
+  }
+
+  @Test(expected = IOException.class)
+  public void openRejectsNegativeStringLength() throws IOException {
+    Path path = folder.newFile().toPath();
+    CalendarSnapshot.write(Arrays.asList(EVENT_1), path);
+    byte[] bytes = Files.readAllBytes(path);
+    // One event, name and title: the title offsets are the 8 bytes before the name bytes, which
+    // start after the header, event columns, attendee and event lists and name offsets.
+    int lastTitleOffset = 6 * 4 + 7 * 4 + (2 + 1) * 4 + (2 + 1) * 4 + 2 * 4 + 4;
+    ByteBuffer.wrap(bytes).putInt(lastTitleOffset, -1);
+    Files.write(path, bytes);
+
+    CalendarSnapshot.open(path);
+  }
+}
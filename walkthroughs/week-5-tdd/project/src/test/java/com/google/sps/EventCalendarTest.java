@@ -0,0 +1,237 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class EventCalendarTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+  private static final String PERSON_C = "Person C";
+
+  private static final int TIME_0800AM = TimeRange.getTimeInMinutes(8, 0);
+  private static final int TIME_0900AM = TimeRange.getTimeInMinutes(9, 0);
+  private static final int TIME_1000AM = TimeRange.getTimeInMinutes(10, 0);
+
+  private static final int DURATION_30_MINUTES = 30;
+
+  private static final Event EVENT_1 = new Event("Event 1",
+      TimeRange.fromStartDuration(TIME_1000AM, DURATION_30_MINUTES), Arrays.asList(PERSON_A));
+  private static final Event EVENT_2 = new Event("Event 2",
+      TimeRange.fromStartDuration(TIME_0800AM, DURATION_30_MINUTES),
+      Arrays.asList(PERSON_A, PERSON_B));
+  private static final Event EVENT_3 = new Event("Event 3",
+      TimeRange.fromStartDuration(TIME_0900AM, DURATION_30_MINUTES), Arrays.asList(PERSON_C));
+
+  @Test
+  public void busyRangesAreSortedPerAttendee() {
+    EventCalendar calendar = new EventCalendar(Arrays.asList(EVENT_1, EVENT_2, EVENT_3));
+
+    List<TimeRange> expected = Arrays.asList(EVENT_2.getWhen(), EVENT_1.getWhen());
+
+    Assert.assertEquals(expected, calendar.getBusyRanges(PERSON_A));
+    Assert.assertEquals(Arrays.asList(EVENT_2.getWhen()), calendar.getBusyRanges(PERSON_B));
+  }
+
+  @Test
+  public void unknownAttendeeIsNeverBusy() {
+    EventCalendar calendar = new EventCalendar(Arrays.asList(EVENT_1));
+
+    Assert.assertEquals(Collections.emptyList(), calendar.getBusyRanges(PERSON_C));
+  }
+
+  @Test
+  public void addKeepsRangesSorted() {
+    EventCalendar calendar = new EventCalendar(Arrays.asList(EVENT_1));
+    calendar.add(EVENT_2);
+
+    List<TimeRange> expected = Arrays.asList(EVENT_2.getWhen(), EVENT_1.getWhen());
+
+    Assert.assertEquals(expected, calendar.getBusyRanges(PERSON_A));
+    Assert.assertEquals(Arrays.asList(EVENT_1, EVENT_2), calendar.getEvents());
+  }
+
+  @Test
+  public void removeOnlyAffectsItsAttendees() {
+    EventCalendar calendar = new EventCalendar(Arrays.asList(EVENT_1, EVENT_2, EVENT_3));
+
+    Assert.assertTrue(calendar.remove(EVENT_2));
+
+    Assert.assertEquals(Arrays.asList(EVENT_1.getWhen()), calendar.getBusyRanges(PERSON_A));
+    Assert.assertEquals(Collections.emptyList(), calendar.getBusyRanges(PERSON_B));
+    Assert.assertEquals(Arrays.asList(EVENT_3.getWhen()), calendar.getBusyRanges(PERSON_C));
+    Assert.assertEquals(Arrays.asList(EVENT_1, EVENT_3), calendar.getEvents());
+  }
+
+  @Test
+  public void removeMissingEvent() {
+    EventCalendar calendar = new EventCalendar(Arrays.asList(EVENT_1));
+
+    Assert.assertFalse(calendar.remove(EVENT_3));
+    Assert.assertEquals(Arrays.asList(EVENT_1), calendar.getEvents());
+  }
+
+  @Test
+  public void replaceSwapsEventInPlace() {
+    EventCalendar calendar = new EventCalendar(Arrays.asList(EVENT_1, EVENT_2));
+
+    Assert.assertTrue(calendar.replace(EVENT_2, EVENT_3));
+
+    Assert.assertEquals(Arrays.asList(EVENT_1.getWhen()), calendar.getBusyRanges(PERSON_A));
+    Assert.assertEquals(Collections.emptyList(), calendar.getBusyRanges(PERSON_B));
+    Assert.assertEquals(Arrays.asList(EVENT_3.getWhen()), calendar.getBusyRanges(PERSON_C));
+    Assert.assertEquals(Arrays.asList(EVENT_1, EVENT_3), calendar.getEvents());
+  }
+
+  @Test
+  public void replaceMissingEvent() {
+    EventCalendar calendar = new EventCalendar(Arrays.asList(EVENT_1));
+
+    Assert.assertFalse(calendar.replace(EVENT_2, EVENT_3));
+    Assert.assertEquals(Arrays.asList(EVENT_1), calendar.getEvents());
+  }
+
+  @Test
+  public void snapshotIgnoresLaterChanges() {
+    EventCalendar calendar = new EventCalendar(Arrays.asList(EVENT_1));
+    EventCalendar snapshot = calendar.snapshot();
+
+    calendar.add(EVENT_2);
+    calendar.replace(EVENT_1, EVENT_3);
+
+    Assert.assertEquals(Arrays.asList(EVENT_1), snapshot.getEvents());
+    Assert.assertEquals(Arrays.asList(EVENT_1.getWhen()), snapshot.getBusyRanges(PERSON_A));
+  }
+
+  @Test
+  public void recurringEventsExpandWithinWindow() {
+    Event daily = new Event("Daily", TimeRange.fromStartDuration(TIME_0800AM, DURATION_30_MINUTES),
+        Arrays.asList(PERSON_A), Recurrence.forever(TimeRange.MINUTES_PER_DAY));
+    EventCalendar calendar = new EventCalendar(Arrays.asList(EVENT_1, daily));
+
+    List<TimeRange> expected = Arrays.asList(
+        TimeRange.fromStartDuration(TimeRange.getTimeInMinutes(1, 8, 0), DURATION_30_MINUTES),
+        TimeRange.fromStartDuration(TimeRange.getTimeInMinutes(2, 8, 0), DURATION_30_MINUTES));
+
+    Assert.assertEquals(expected, calendar.getBusyRanges(PERSON_A, TimeRange.days(1, 2)));
+    Assert.assertEquals(Arrays.asList(daily.getWhen(), EVENT_1.getWhen()),
+        calendar.getBusyRanges(PERSON_A, TimeRange.WHOLE_DAY));
+    Assert.assertTrue(calendar.getOccupancy(Arrays.asList(PERSON_A), TimeRange.day(5))
+        .isOccupied(TimeRange.getTimeInMinutes(5, 8, 0)));
+  }
+
+  @Test
+  public void removeRecurringEvent() {
+    Event daily = new Event("Daily", TimeRange.fromStartDuration(TIME_0800AM, DURATION_30_MINUTES),
+        Arrays.asList(PERSON_A), Recurrence.forever(TimeRange.MINUTES_PER_DAY));
+    EventCalendar calendar = new EventCalendar(Arrays.asList(EVENT_1, daily));
+
+    Assert.assertTrue(calendar.remove(daily));
+
+    Assert.assertEquals(Arrays.asList(EVENT_1.getWhen()),
+        calendar.getBusyRanges(PERSON_A, TimeRange.WHOLE_DAY));
+    Assert.assertTrue(calendar.getOccupancy(Arrays.asList(PERSON_A), TimeRange.day(1)).isEmpty());
+  }
+
+  @Test
+  public void occupancyOnlyIncludesRequestedAttendees() {
+    EventCalendar calendar = new EventCalendar(Arrays.asList(EVENT_1, EVENT_2, EVENT_3));
+
+    OccupancyMask occupancy =
+        calendar.getOccupancy(Arrays.asList(PERSON_B, PERSON_C), TimeRange.WHOLE_DAY);
+
+    Assert.assertTrue(occupancy.isOccupied(TIME_0800AM));
+    Assert.assertTrue(occupancy.isOccupied(TIME_0900AM));
+    Assert.assertFalse(occupancy.isOccupied(TIME_1000AM));
+  }
+
+  @Test
+  public void occupancyCountsEventsScanned() {
+    EventCalendar calendar = new EventCalendar(Arrays.asList(EVENT_1, EVENT_2, EVENT_3));
+    TimeRange morning = TimeRange.fromStartEnd(TIME_0900AM, TIME_1000AM, false);
+
+    calendar.getOccupancy(Arrays.asList(PERSON_A), morning);
+
+    // Event 2 is over before the window starts and Event 1 starts after it ends, so neither is
+    // looked at.
+    Assert.assertEquals(0, calendar.eventsScanned());
+    Assert.assertEquals(0, calendar.eventsOccupying());
+
+    calendar.getOccupancy(Arrays.asList(PERSON_A, PERSON_C), TimeRange.WHOLE_DAY);
+
+    Assert.assertEquals(3, calendar.eventsScanned());
+    Assert.assertEquals(3, calendar.eventsOccupying());
+  }
+
+  @Test
+  public void occupancySkipsHistoryBeforeWindow() {
+    // A long event that started early still overlaps a later window, so it must not be skipped
+    // along with the short events before the window.
+    Event allWeek = new Event("All week", TimeRange.days(0, 7), Arrays.asList(PERSON_A));
+    List<Event> events = new ArrayList<>();
+    events.add(allWeek);
+    for (int day = 0; day < 5; day++) {
+      events.add(new Event("Day " + day, TimeRange.fromStartDuration(
+          TimeRange.getTimeInMinutes(day, 9, 0), DURATION_30_MINUTES), Arrays.asList(PERSON_B)));
+    }
+    EventCalendar calendar = new EventCalendar(events);
+
+    OccupancyMask occupancy = calendar.getOccupancy(Arrays.asList(PERSON_A), TimeRange.day(3));
+    Assert.assertTrue(occupancy.isOccupied(TimeRange.getTimeInMinutes(3, 12, 0)));
+
+    calendar.getOccupancy(Arrays.asList(PERSON_B), TimeRange.day(3));
+    // Only Day 3 is looked at for B, besides the all-week event for A.
+    Assert.assertEquals(2, calendar.eventsScanned());
+    Assert.assertEquals(Arrays.asList(events.get(4).getWhen()),
+        calendar.getBusyRanges(PERSON_B, TimeRange.day(3)));
+  }
+
+  @Test
+  public void duplicateEventsAreRemovedOneAtATime() {
+    EventCalendar calendar = new EventCalendar(Arrays.asList(EVENT_1, EVENT_2, EVENT_1));
+
+    Assert.assertTrue(calendar.remove(EVENT_1));
+
+    Assert.assertEquals(Arrays.asList(EVENT_2, EVENT_1), calendar.getEvents());
+    Assert.assertEquals(Arrays.asList(EVENT_2.getWhen(), EVENT_1.getWhen()),
+        calendar.getBusyRanges(PERSON_A));
+
+    Assert.assertTrue(calendar.remove(EVENT_1));
+    Assert.assertFalse(calendar.remove(EVENT_1));
+    Assert.assertEquals(Arrays.asList(EVENT_2), calendar.getEvents());
+  }
+
+  @Test
+  public void queryMatchesEventCollection() {
+    // Querying through the calendar should give the same answer as querying the raw events.
+    Collection<Event> events = Arrays.asList(Events.events);
+    EventCalendar calendar = new EventCalendar(events);
+    FindMeetingQuery query = new FindMeetingQuery();
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList("Amelia", "Logan"), 30);
+
+    Assert.assertEquals(query.query(events, request), query.query(calendar, request));
+  }
+}
@@ -0,0 +1,133 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class EventIntervalTreeTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+
+  private static final int TIME_0900AM = TimeRange.getTimeInMinutes(9, 0);
+  private static final int TIME_1000AM = TimeRange.getTimeInMinutes(10, 0);
+  private static final int TIME_1100AM = TimeRange.getTimeInMinutes(11, 0);
+
+  @Test
+  public void emptyTreeHasNoOverlaps() {
+    EventIntervalTree tree = new EventIntervalTree(Collections.<Event>emptyList());
+
+    Assert.assertEquals(0, tree.size());
+    Assert.assertTrue(tree.overlapping(TimeRange.WHOLE_DAY).isEmpty());
+    Assert.assertFalse(tree.anyAttended(0, 1440, Arrays.asList(PERSON_A)));
+  }
+
+  @Test
+  public void recurringEventsOnlyOverlapTheirOccurrences() {
+    // Every other day, three times: days 0, 2 and 4.
+    Event recurring = new Event("Event 1", TimeRange.fromStartEnd(TIME_0900AM, TIME_1000AM, false),
+        Arrays.asList(PERSON_A), Recurrence.times(2 * TimeRange.MINUTES_PER_DAY, 3));
+    EventIntervalTree tree = new EventIntervalTree(Arrays.asList(recurring));
+
+    Assert.assertEquals(Arrays.asList(recurring), tree.overlapping(TimeRange.day(2)));
+    Assert.assertTrue(tree.overlapping(TimeRange.day(3)).isEmpty());
+    Assert.assertTrue(tree.overlapping(TimeRange.day(6)).isEmpty());
+    Assert.assertTrue(tree.anyAttended(TimeRange.getTimeInMinutes(4, 9, 30),
+        TimeRange.getTimeInMinutes(4, 11, 0), Arrays.asList(PERSON_A)));
+    Assert.assertFalse(tree.anyAttended(TimeRange.getTimeInMinutes(4, 10, 0),
+        TimeRange.getTimeInMinutes(4, 11, 0), Arrays.asList(PERSON_A)));
+  }
+
+  @Test
+  public void touchingEventsDoNotOverlap() {
+    // The window ends as Event 2 starts and starts as Event 1 ends.
+    Event first = new Event("Event 1", TimeRange.fromStartEnd(TIME_0900AM, TIME_1000AM, false),
+        Arrays.asList(PERSON_A));
+    Event second = new Event("Event 2", TimeRange.fromStartEnd(TIME_1100AM, 1440, false),
+        Arrays.asList(PERSON_A));
+    EventIntervalTree tree = new EventIntervalTree(Arrays.asList(second, first));
+
+    Assert.assertTrue(tree.overlapping(TIME_1000AM, TIME_1100AM).isEmpty());
+    Assert.assertEquals(Arrays.asList(first, second), tree.overlapping(TimeRange.WHOLE_DAY));
+  }
+
+  @Test
+  public void anyAttendedChecksAttendees() {
+    Event event = new Event("Event 1", TimeRange.fromStartEnd(TIME_0900AM, TIME_1100AM, false),
+        Arrays.asList(PERSON_A));
+    EventIntervalTree tree = new EventIntervalTree(Arrays.asList(event));
+
+    Assert.assertTrue(tree.anyAttended(TIME_1000AM, TIME_1100AM, Arrays.asList(PERSON_A)));
+    Assert.assertFalse(tree.anyAttended(TIME_1000AM, TIME_1100AM, Arrays.asList(PERSON_B)));
+    Assert.assertFalse(tree.anyAttended(TIME_1100AM, 1440, Arrays.asList(PERSON_A)));
+  }
+
+  @Test
+  public void matchesLinearScan() {
+    // Long events starting early must still be found from windows far to their right.
+    Random random = new Random(2020);
+    List<Event> events = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      int start = random.nextInt(10_000);
+      int duration = random.nextInt(10) == 0 ? random.nextInt(5_000) : random.nextInt(60);
+      events.add(new Event("Event " + i, TimeRange.fromStartDuration(start, duration),
+          Arrays.asList(i % 2 == 0 ? PERSON_A : PERSON_B)));
+    }
+    EventIntervalTree tree = new EventIntervalTree(events);
+
+    for (int i = 0; i < 200; i++) {
+      int start = random.nextInt(15_000);
+      int end = start + random.nextInt(300);
+
+      List<Event> expected = new ArrayList<>();
+      boolean expectedAttended = false;
+      for (Event event : events) {
+        TimeRange when = event.getWhen();
+        if (when.start() < end && when.end() > start) {
+          expected.add(event);
+          expectedAttended |= event.getAttendees().contains(PERSON_B);
+        }
+      }
+
+      Collection<Event> actual = tree.overlapping(start, end);
+      Assert.assertEquals(expected.size(), actual.size());
+      Assert.assertTrue(actual.containsAll(expected));
+      Assert.assertEquals(expectedAttended, tree.anyAttended(start, end, Arrays.asList(PERSON_B)));
+    }
+  }
+
+  @Test
+  public void queryMatchesEventCollection() {
+    Collection<Event> events = Arrays.asList(Events.events);
+    EventIntervalTree tree = new EventIntervalTree(events);
+    FindMeetingQuery query = new FindMeetingQuery();
+    TimeRange afternoon = TimeRange.fromStartEnd(TimeRange.getTimeInMinutes(12, 0), 1440, false);
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList("Amelia", "Logan"), 30);
+
+    Assert.assertEquals(
+        query.query(events, request, afternoon), query.query(tree, request, afternoon));
+  }
+}
@@ -0,0 +1,185 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the scheduler against synthetic calendars. Run with the benchmark profile, see
+ * pom.xml.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FindMeetingQueryBenchmark {
+  private static final long SEED = 2020;
+  private static final long DURATION_1_HOUR = 60;
+  private static final TimeRange MORNING = TimeRange.fromStartEnd(
+      TimeRange.getTimeInMinutes(9, 0), TimeRange.getTimeInMinutes(12, 0), false);
+  private static final TimeRange MONTH = TimeRange.days(0, 30);
+
+  /** A calendar of {@code events} events shared by an organization of {@code attendees}. */
+  @State(Scope.Benchmark)
+  public static class Calendar {
+    @Param({"10", "1000", "100000", "1000000"})
+    public int events;
+
+    @Param({"2", "50", "5000"})
+    public int attendees;
+
+    // One of CalendarGenerator.Density, which is package-private and so can't be a JMH parameter.
+    @Param({"DENSE", "SPARSE"})
+    public String density;
+
+    List<Event> eventList;
+    Event[] eventArray;
+    EventCalendar calendar;
+    EventIntervalTree tree;
+    MeetingRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      CalendarGenerator generator = new CalendarGenerator(SEED, attendees);
+      eventList = generator.events(events, CalendarGenerator.Density.valueOf(density));
+      eventArray = eventList.toArray(new Event[eventList.size()]);
+      calendar = new EventCalendar(eventList);
+      tree = new EventIntervalTree(eventList);
+      request = generator.request(2, 2, DURATION_1_HOUR);
+    }
+  }
+
+  /** A request inviting 1,000 optional attendees from an organization of 5,000. */
+  @State(Scope.Benchmark)
+  public static class ManyOptional {
+    @Param({"10000", "100000"})
+    public int events;
+
+    List<Event> eventList;
+    MeetingRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      CalendarGenerator generator = new CalendarGenerator(SEED, 5000);
+      eventList = generator.events(events, CalendarGenerator.Density.SPARSE);
+      request = generator.request(2, 1000, DURATION_1_HOUR);
+    }
+  }
+
+  /**
+   * A request for 200 required and 100 optional attendees from an organization of 5,000, for
+   * comparing the serial and parallel occupancy builds as the calendar grows.
+   */
+  @State(Scope.Benchmark)
+  public static class ManyAttendees {
+    @Param({"1000", "4096", "16384", "100000", "1000000"})
+    public int events;
+
+    Event[] eventArray;
+    MeetingRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      CalendarGenerator generator = new CalendarGenerator(SEED, 5000);
+      List<Event> eventList = generator.events(events, CalendarGenerator.Density.DENSE);
+      eventArray = eventList.toArray(new Event[eventList.size()]);
+      request = generator.request(200, 100, DURATION_1_HOUR);
+    }
+  }
+
+  @Benchmark
+  public Collection<TimeRange> query(Calendar state) {
+    return new FindMeetingQuery().query(state.eventList, state.request);
+  }
+
+  @Benchmark
+  public Collection<TimeRange> queryCalendar(Calendar state) {
+    return new FindMeetingQuery().query(state.calendar, state.request);
+  }
+
+  @Benchmark
+  public Collection<TimeRange> queryMorning(Calendar state) {
+    return new FindMeetingQuery().query(state.eventList, state.request, MORNING);
+  }
+
+  @Benchmark
+  public Collection<TimeRange> queryMorningTree(Calendar state) {
+    return new FindMeetingQuery().query(state.tree, state.request, MORNING);
+  }
+
+  @Benchmark
+  public Collection<TimeRange> querySweep(Calendar state) {
+    return new FindMeetingQuery().querySweep(state.eventList, state.request);
+  }
+
+  @Benchmark
+  public Collection<TimeRange> queryIntervals(Calendar state) {
+    return new FindMeetingQuery().queryIntervals(state.eventList, state.request);
+  }
+
+  @Benchmark
+  public Collection<TimeRange> queryMonth(Calendar state) {
+    return new FindMeetingQuery().query(state.calendar, state.request, MONTH);
+  }
+
+  @Benchmark
+  public Collection<TimeRange> queryBestInMonth(Calendar state) {
+    return new FindMeetingQuery().queryBest(
+        state.calendar, state.request, MONTH, 1, SlotPreference.EARLIEST);
+  }
+
+  @Benchmark
+  public boolean[] getOccupiedSlotsInDay(Calendar state) {
+    return FindMeetingQuery.getOccupiedSlotsInDay(state.eventArray, state.request);
+  }
+
+  @Benchmark
+  public OccupancyMask getOccupancySerial(ManyAttendees state) {
+    OccupancyMask mandatory = new OccupancyMask(TimeRange.WHOLE_DAY);
+    OccupancyMask optional = new OccupancyMask(TimeRange.WHOLE_DAY);
+    FindMeetingQuery.getOccupancy(
+        state.eventArray, 0, state.eventArray.length, state.request, mandatory, optional);
+    return mandatory;
+  }
+
+  @Benchmark
+  public OccupancyMask getOccupancyParallel(ManyAttendees state) {
+    OccupancyMask mandatory = new OccupancyMask(TimeRange.WHOLE_DAY);
+    OccupancyMask optional = new OccupancyMask(TimeRange.WHOLE_DAY);
+    FindMeetingQuery.getOccupancyParallel(state.eventArray, state.request, mandatory, optional);
+    return mandatory;
+  }
+
+  @Benchmark
+  public Collection<TimeRange> queryMaximizingOptional(ManyOptional state) {
+    return new FindMeetingQuery().queryMaximizingOptional(
+        state.eventList, state.request, Long.MAX_VALUE / 2);
+  }
+}
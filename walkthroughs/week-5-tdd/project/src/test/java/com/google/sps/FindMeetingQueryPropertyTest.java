@@ -0,0 +1,942 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Checks every FindMeetingQuery engine against a brute-force oracle on random calendars. The
+ * oracles mark busy minutes one at a time and try every possible start, so they are too slow to
+ * ship but simple enough to trust.
+ *
+ * <p>Calendars mix ordinary, empty, multi-day and recurring events, and are searched over a single
+ * day, several days or an arbitrary window. Some attendees have working hours, which every engine
+ * must keep meetings within. Each case also carries a ranking for
+ * queryBest.
+ *
+ * <p>When an engine disagrees, the case is shrunk by dropping events, attendees and working hours
+ * and shortening times for as long as the engine still disagrees, and the smallest case found is
+ * reported.
+ *
+ * <p>System properties:
+ * <ul>
+ *   <li>{@code findmeetingquery.cases}: how many calendars to try, 2,000 unless given. Pass
+ *       millions for a long soak, e.g. {@code mvn test -Dtest=FindMeetingQueryPropertyTest
+ *       -Dfindmeetingquery.cases=5000000}.
+ *   <li>{@code findmeetingquery.seed}: the seed of the first calendar, to reproduce a failure.
+ *   <li>{@code findmeetingquery.perf}: a file to write each engine's runtime per case to, as CSV.
+ *       A summary of runtimes per engine is printed as well.
+ * </ul>
+ */
+@RunWith(JUnit4.class)
+public final class FindMeetingQueryPropertyTest {
+  private static final int DEFAULT_CASES = 2_000;
+  private static final long DEFAULT_SEED = 2020;
+
+  // Most cases are small, so people share events and the interesting overlaps happen often.
+  // About one case in LARGE_CASE_EVERY is large, to exercise the engines at realistic sizes.
+  private static final int SMALL_PEOPLE = 6;
+  private static final int SMALL_EVENTS = 12;
+  private static final int LARGE_PEOPLE = 60;
+  private static final int LARGE_EVENTS = 600;
+  private static final int LARGE_CASE_EVERY = 50;
+
+  // Windows of up to this many days, plus a day either side for events to spill over from.
+  private static final int MAX_WINDOW_DAYS = 3;
+  private static final int QUARTER_HOUR = 15;
+  // Long enough that the oracle's answer is never cut short.
+  private static final long TIME_BUDGET_MILLIS = 60_000;
+
+  private static final int MAX_SHRINK_ROUNDS = 1_000;
+
+  /** A brute-force answer to a case, shared by every engine that should give the same answer. */
+  private abstract static class Oracle {
+    abstract List<TimeRange> answer(Case testCase);
+  }
+
+  /** The free time of query, honoring working hours. */
+  private static final Oracle FREE_TIME = new Oracle() {
+    @Override
+    List<TimeRange> answer(Case testCase) {
+      return freeTime(testCase, false, true);
+    }
+  };
+
+  /** The free time of the required attendees alone, honoring working hours. */
+  private static final Oracle REQUIRED_FREE_TIME = new Oracle() {
+    @Override
+    List<TimeRange> answer(Case testCase) {
+      return freeTime(testCase, true, true);
+    }
+  };
+
+  /** The times that suit the required attendees and the most optional ones, in working hours. */
+  private static final Oracle MOST_OPTIONAL = new Oracle() {
+    @Override
+    List<TimeRange> answer(Case testCase) {
+      return mostOptionalTimes(testCase);
+    }
+  };
+
+  /** The k best times of queryBest, honoring working hours. */
+  private static final Oracle BEST_TIMES = new Oracle() {
+    @Override
+    List<TimeRange> answer(Case testCase) {
+      return bestTimes(testCase);
+    }
+  };
+
+  /** A way of answering a meeting request, checked against an oracle. */
+  private abstract static class Engine {
+    final String name;
+    final Oracle oracle;
+
+    Engine(String name, Oracle oracle) {
+      this.name = name;
+      this.oracle = oracle;
+    }
+
+    /** Returns whether the engine can answer the case at all. */
+    boolean accepts(Case testCase) {
+      return true;
+    }
+
+    abstract Collection<TimeRange> run(Case testCase, MeetingRequest request);
+  }
+
+  private static final List<Engine> ENGINES = Arrays.asList(
+      new Engine("query", FREE_TIME) {
+        @Override
+        Collection<TimeRange> run(Case testCase, MeetingRequest request) {
+          return testCase.query().query(testCase.events, request, testCase.window);
+        }
+      },
+      new Engine("query(EventCalendar)", FREE_TIME) {
+        @Override
+        Collection<TimeRange> run(Case testCase, MeetingRequest request) {
+          return testCase.query().query(
+              new EventCalendar(testCase.events), request, testCase.window);
+        }
+      },
+      new Engine("query(EventIntervalTree)", FREE_TIME) {
+        @Override
+        Collection<TimeRange> run(Case testCase, MeetingRequest request) {
+          return testCase.query().query(
+              new EventIntervalTree(testCase.events), request, testCase.window);
+        }
+      },
+      new Engine("query(CalendarSnapshot)", FREE_TIME) {
+        @Override
+        Collection<TimeRange> run(Case testCase, MeetingRequest request) {
+          try {
+            Path path = Files.createTempFile("calendar", ".snapshot");
+            try {
+              CalendarSnapshot.write(testCase.events, path);
+              return testCase.query().query(CalendarSnapshot.open(path), request, testCase.window);
+            } finally {
+              Files.delete(path);
+            }
+          } catch (IOException e) {
+            throw new AssertionError(e);
+          }
+        }
+      },
+      new Engine("findFreeIntervals", FREE_TIME) {
+        @Override
+        Collection<TimeRange> run(Case testCase, MeetingRequest request) {
+          return testCase.query().findFreeIntervals(testCase.events, request, testCase.window)
+              .toTimeRanges();
+        }
+      },
+      new Engine("queryAll", FREE_TIME) {
+        @Override
+        boolean accepts(Case testCase) {
+          // Batches are only answered for a single day.
+          return testCase.window.equals(TimeRange.WHOLE_DAY);
+        }
+
+        @Override
+        Collection<TimeRange> run(Case testCase, MeetingRequest request) {
+          return testCase.query().queryAll(testCase.events, Arrays.asList(request)).get(0);
+        }
+      },
+      new Engine("querySweep", REQUIRED_FREE_TIME) {
+        @Override
+        Collection<TimeRange> run(Case testCase, MeetingRequest request) {
+          return testCase.query().querySweep(testCase.events, request, testCase.window);
+        }
+      },
+      new Engine("queryMaximizingOptional", MOST_OPTIONAL) {
+        @Override
+        Collection<TimeRange> run(Case testCase, MeetingRequest request) {
+          return testCase.query().queryMaximizingOptional(
+              testCase.events, request, testCase.window, TIME_BUDGET_MILLIS);
+        }
+      },
+      new Engine("queryBest", BEST_TIMES) {
+        @Override
+        Collection<TimeRange> run(Case testCase, MeetingRequest request) {
+          return testCase.query().queryBest(
+              testCase.events, request, testCase.window, testCase.k, testCase.preference());
+        }
+      },
+      new Engine("queryBest(EventCalendar)", BEST_TIMES) {
+        @Override
+        Collection<TimeRange> run(Case testCase, MeetingRequest request) {
+          return testCase.query().queryBest(new EventCalendar(testCase.events), request,
+              testCase.window, testCase.k, testCase.preference());
+        }
+      });
+
+  /**
+   * A calendar and a request to schedule against it, with the working hours of some attendees
+   * and a ranking for queryBest. Cases are never modified.
+   */
+  private static final class Case {
+    final List<Event> events;
+    final List<String> required;
+    final List<String> optional;
+    final long duration;
+    final TimeRange window;
+    final Map<String, WorkingHours> workingHours;
+    final int k;
+    // The minutes of buffer wanted, or one of the constants below for the other preferences.
+    final int buffer;
+
+    static final int EARLIEST = -1;
+    static final int FEWEST_FRAGMENTS = -2;
+
+    Case(List<Event> events, List<String> required, List<String> optional, long duration) {
+      this(events, required, optional, duration, TimeRange.WHOLE_DAY,
+          Collections.<String, WorkingHours>emptyMap(), 1, EARLIEST);
+    }
+
+    Case(List<Event> events, List<String> required, List<String> optional, long duration,
+        TimeRange window, Map<String, WorkingHours> workingHours, int k, int buffer) {
+      this.events = events;
+      this.required = required;
+      this.optional = optional;
+      this.duration = duration;
+      this.window = window;
+      this.workingHours = workingHours;
+      this.k = k;
+      this.buffer = buffer;
+    }
+
+    Case withEvents(List<Event> events) {
+      return new Case(events, required, optional, duration, window, workingHours, k, buffer);
+    }
+
+    Case withAttendees(List<String> required, List<String> optional) {
+      return new Case(events, required, optional, duration, window, workingHours, k, buffer);
+    }
+
+    Case withDuration(long duration) {
+      return new Case(events, required, optional, duration, window, workingHours, k, buffer);
+    }
+
+    Case withWindow(TimeRange window) {
+      return new Case(events, required, optional, duration, window, workingHours, k, buffer);
+    }
+
+    Case withWorkingHours(Map<String, WorkingHours> workingHours) {
+      return new Case(events, required, optional, duration, window, workingHours, k, buffer);
+    }
+
+    Case withRanking(int k, int buffer) {
+      return new Case(events, required, optional, duration, window, workingHours, k, buffer);
+    }
+
+    MeetingRequest request() {
+      MeetingRequest request = new MeetingRequest(required, duration);
+      for (String attendee : optional) {
+        request.addOptionalAttendee(attendee);
+      }
+      return request;
+    }
+
+    FindMeetingQuery query() {
+      if (workingHours.isEmpty()) {
+        return new FindMeetingQuery();
+      }
+
+      WorkingHoursDirectory directory = new WorkingHoursDirectory();
+      for (Map.Entry<String, WorkingHours> entry : workingHours.entrySet()) {
+        directory.set(entry.getKey(), entry.getValue());
+      }
+      return new FindMeetingQuery(directory);
+    }
+
+    SlotPreference preference() {
+      if (buffer == EARLIEST) {
+        return SlotPreference.EARLIEST;
+      } else if (buffer == FEWEST_FRAGMENTS) {
+        return SlotPreference.FEWEST_FRAGMENTS;
+      }
+      return SlotPreference.buffer(buffer);
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder builder = new StringBuilder();
+      builder.append("required ").append(required).append(", optional ").append(optional)
+          .append(", duration ").append(duration).append(", window ").append(window)
+          .append(", k ").append(k).append(", buffer ").append(buffer);
+      for (Map.Entry<String, WorkingHours> entry : workingHours.entrySet()) {
+        builder.append("\n  ").append(entry.getKey()).append(": ").append(entry.getValue());
+      }
+      builder.append("\nevents:");
+      for (Event event : events) {
+        builder.append("\n  ").append(event.getWhen()).append(' ').append(event.getAttendees());
+        if (event.isRecurring()) {
+          builder.append(' ').append(event.getRecurrence());
+        }
+      }
+      return builder.toString();
+    }
+  }
+
+  @Test
+  public void enginesMatchOracle() throws IOException {
+    int cases = Integer.getInteger("findmeetingquery.cases", DEFAULT_CASES);
+    long seed = Long.getLong("findmeetingquery.seed", DEFAULT_SEED);
+    String perfFile = System.getProperty("findmeetingquery.perf");
+
+    LogLinearHistogram[] runtimes = new LogLinearHistogram[ENGINES.size()];
+    for (int i = 0; i < runtimes.length; i++) {
+      runtimes[i] = new LogLinearHistogram();
+    }
+
+    PrintWriter perf = null;
+    if (perfFile != null) {
+      perf = new PrintWriter(Files.newBufferedWriter(Paths.get(perfFile), StandardCharsets.UTF_8));
+      perf.println("case,engine,events,nanos");
+    }
+
+    try {
+      for (int i = 0; i < cases; i++) {
+        // Each case has its own seed, so a failure can be replayed on its own.
+        Random random = new Random(seed + i);
+        Case testCase = generate(random, random.nextInt(LARGE_CASE_EVERY) == 0);
+        MeetingRequest request = testCase.request();
+        // Several engines share each oracle, so only ask each one once per case.
+        Map<Oracle, List<TimeRange>> expected = new IdentityHashMap<>();
+
+        for (int e = 0; e < ENGINES.size(); e++) {
+          Engine engine = ENGINES.get(e);
+          if (!engine.accepts(testCase)) {
+            continue;
+          }
+
+          long start = System.nanoTime();
+          List<TimeRange> actual = new ArrayList<>(engine.run(testCase, request));
+          long nanos = System.nanoTime() - start;
+
+          if (!expected.containsKey(engine.oracle)) {
+            expected.put(engine.oracle, engine.oracle.answer(testCase));
+          }
+          if (!actual.equals(expected.get(engine.oracle))) {
+            Case shrunk = shrink(testCase, engine);
+            Assert.fail(String.format("%s disagrees with the oracle for seed %d%n%s%n"
+                + "expected %s%nactual   %s", engine.name, seed + i, shrunk,
+                engine.oracle.answer(shrunk), run(engine, shrunk)));
+          }
+
+          runtimes[e].record(nanos);
+          if (perf != null) {
+            perf.println(i + "," + engine.name + "," + testCase.events.size() + "," + nanos);
+          }
+        }
+      }
+    } finally {
+      if (perf != null) {
+        perf.close();
+      }
+    }
+
+    if (perfFile != null) {
+      for (int e = 0; e < ENGINES.size(); e++) {
+        System.out.printf("%-26s p50 %8d ns  p99 %8d ns  mean %8d ns%n", ENGINES.get(e).name,
+            runtimes[e].valueAtQuantile(0.5), runtimes[e].valueAtQuantile(0.99),
+            runtimes[e].sum() / Math.max(runtimes[e].count(), 1));
+      }
+    }
+  }
+
+  @Test
+  public void oracleMatchesHandWrittenCase() {
+    // Events  :       |--A--|     |--B--|
+    // Day     : |-----------------------------|
+    // Options : |--1--|     |--2--|     |--3--|
+    Case testCase = new Case(
+        Arrays.asList(
+            new Event("Event 1", TimeRange.fromStartDuration(480, 30), Arrays.asList("A")),
+            new Event("Event 2", TimeRange.fromStartDuration(540, 30), Arrays.asList("B"))),
+        Arrays.asList("A", "B"), Collections.<String>emptyList(), 30);
+
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(0, 480, false),
+            TimeRange.fromStartEnd(510, 540, false),
+            TimeRange.fromStartEnd(570, TimeRange.END_OF_DAY, true)),
+        FREE_TIME.answer(testCase));
+  }
+
+  @Test
+  public void oracleHandlesRecurrenceAndWorkingHoursAcrossDays() {
+    // A works 9:00 to 17:00 and has a daily standup at 9:00, so over two days only the rest of
+    // each working day is free.
+    Event standup = new Event("Standup", TimeRange.fromStartDuration(540, 30), Arrays.asList("A"),
+        Recurrence.forever(TimeRange.MINUTES_PER_DAY));
+    Map<String, WorkingHours> workingHours = new LinkedHashMap<>();
+    workingHours.put("A", WorkingHours.of(0, 540, 1020));
+    Case testCase = new Case(Arrays.asList(standup), Arrays.asList("A"),
+        Collections.<String>emptyList(), 60)
+        .withWindow(TimeRange.days(0, 2))
+        .withWorkingHours(workingHours);
+
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(570, 1020, false),
+            TimeRange.fromStartEnd(2010, 2460, false)),
+        FREE_TIME.answer(testCase));
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(0, 540, false),
+            TimeRange.fromStartEnd(570, 1980, false),
+            TimeRange.fromStartEnd(2010, 2880, false)),
+        freeTime(testCase, true, false));
+  }
+
+  @Test
+  public void shrinkingKeepsOnlyWhatFails() {
+    // An engine that is wrong whenever Person 0 has an event, to check that shrinking strips the
+    // case down to a single such event.
+    Engine broken = new Engine("broken", FREE_TIME) {
+      @Override
+      Collection<TimeRange> run(Case testCase, MeetingRequest request) {
+        for (Event event : testCase.events) {
+          if (event.getAttendees().contains("Person 0")) {
+            return Collections.emptyList();
+          }
+        }
+        return testCase.query().query(testCase.events, request, testCase.window);
+      }
+    };
+
+    Case failing = null;
+    for (long seed = 0; failing == null; seed++) {
+      Case testCase = generate(new Random(seed), false);
+      if (fails(broken, testCase)) {
+        failing = testCase;
+      }
+    }
+
+    Case shrunk = shrink(failing, broken);
+
+    Assert.assertEquals(1, shrunk.events.size());
+    Assert.assertEquals(Arrays.asList("Person 0"),
+        new ArrayList<>(shrunk.events.get(0).getAttendees()));
+  }
+
+  // Answers a case by marking each busy minute of the window, one at a time.
+  private static List<TimeRange> freeTime(
+      Case testCase, boolean requiredOnly, boolean workingHours) {
+    if (testCase.duration > testCase.window.duration()) {
+      return new ArrayList<>();
+    }
+
+    boolean[] requiredBusy = busyMinutes(testCase, testCase.required, workingHours);
+    if (requiredOnly || testCase.optional.isEmpty()) {
+      return freeRuns(testCase.window, requiredBusy, testCase.duration);
+    }
+
+    // Optional attendees are included when there is time that suits everyone, or when there is no
+    // one else to schedule for.
+    boolean[] everyoneBusy = busyMinutes(testCase, everyone(testCase), workingHours);
+    List<TimeRange> freeForEveryone = freeRuns(testCase.window, everyoneBusy, testCase.duration);
+    if (!freeForEveryone.isEmpty() || testCase.required.isEmpty()) {
+      return freeForEveryone;
+    }
+    return freeRuns(testCase.window, requiredBusy, testCase.duration);
+  }
+
+  // Answers a case by counting, for every start that suits the required attendees, how many
+  // optional attendees would miss a meeting then.
+  private static List<TimeRange> mostOptionalTimes(Case testCase) {
+    List<TimeRange> times = new ArrayList<>();
+    if (testCase.duration > testCase.window.duration()) {
+      return times;
+    }
+
+    // A zero length meeting still needs a minute to be placed in.
+    int duration = (int) Math.max(testCase.duration, 1);
+    int lastStart = testCase.window.duration() - duration;
+    int[] requiredBusy = busyBefore(busyMinutes(testCase, testCase.required, true));
+    List<int[]> optionalBusy = new ArrayList<>();
+    for (String attendee : testCase.optional) {
+      optionalBusy.add(busyBefore(
+          busyMinutes(testCase, Collections.singletonList(attendee), true)));
+    }
+
+    int[] missed = new int[lastStart + 1];
+    int fewestMissed = Integer.MAX_VALUE;
+    for (int t = 0; t <= lastStart; t++) {
+      if (requiredBusy[t + duration] > requiredBusy[t]) {
+        missed[t] = -1;
+        continue;
+      }
+      for (int[] busy : optionalBusy) {
+        if (busy[t + duration] > busy[t]) {
+          missed[t]++;
+        }
+      }
+      fewestMissed = Math.min(fewestMissed, missed[t]);
+    }
+
+    int runStart = -1;
+    for (int t = 0; t <= lastStart + 1; t++) {
+      boolean best = t <= lastStart && missed[t] == fewestMissed;
+      if (best && runStart < 0) {
+        runStart = t;
+      } else if (!best && runStart >= 0) {
+        times.add(TimeRange.fromStartEnd(testCase.window.start() + runStart,
+            testCase.window.start() + t - 1 + duration, false));
+        runStart = -1;
+      }
+    }
+    return times;
+  }
+
+  // Answers a case by scoring every start queryBest tries in every free gap, then keeping the k
+  // best, with the same treatment of optional attendees as freeTime.
+  private static List<TimeRange> bestTimes(Case testCase) {
+    if (testCase.duration > testCase.window.duration()) {
+      return new ArrayList<>();
+    }
+
+    boolean[] requiredBusy = busyMinutes(testCase, testCase.required, true);
+    if (testCase.optional.isEmpty()) {
+      return rank(testCase, requiredBusy);
+    }
+
+    List<TimeRange> bestForEveryone =
+        rank(testCase, busyMinutes(testCase, everyone(testCase), true));
+    if (!bestForEveryone.isEmpty() || testCase.required.isEmpty()) {
+      return bestForEveryone;
+    }
+    return rank(testCase, requiredBusy);
+  }
+
+  private static List<TimeRange> rank(Case testCase, boolean[] busy) {
+    final int duration = (int) Math.max(testCase.duration, 1);
+    int origin = testCase.window.start();
+    SlotPreference preference = testCase.preference();
+
+    // Each candidate is {penalty, start}.
+    List<int[]> candidates = new ArrayList<>();
+    int gapStart = 0;
+    for (int minute = 0; minute <= busy.length; minute++) {
+      if (minute < busy.length && !busy[minute]) {
+        continue;
+      }
+
+      int from = origin + gapStart;
+      int to = origin + minute;
+      int latest = to - duration;
+      for (int start = from; start <= latest; start++) {
+        boolean tried = start == from || start % QUARTER_HOUR == 0 || start == latest
+            || (testCase.buffer >= 0 && start == from + testCase.buffer);
+        if (tried) {
+          candidates.add(new int[] {preference.penalty(from, to, start, duration), start});
+        }
+      }
+      gapStart = minute + 1;
+    }
+
+    Collections.sort(candidates, new Comparator<int[]>() {
+      @Override
+      public int compare(int[] a, int[] b) {
+        return a[0] != b[0] ? Integer.compare(a[0], b[0]) : Integer.compare(a[1], b[1]);
+      }
+    });
+
+    List<TimeRange> times = new ArrayList<>();
+    for (int i = 0; i < Math.min(testCase.k, candidates.size()); i++) {
+      times.add(TimeRange.fromStartDuration(candidates.get(i)[1], (int) testCase.duration));
+    }
+    return times;
+  }
+
+  private static List<String> everyone(Case testCase) {
+    Set<String> everyone = new LinkedHashSet<>(testCase.required);
+    everyone.addAll(testCase.optional);
+    return new ArrayList<>(everyone);
+  }
+
+  // Marks the minutes of the window when any of attendees is at an event, occurrence by
+  // occurrence, or, if workingHours is set, outside their working hours.
+  private static boolean[] busyMinutes(
+      Case testCase, Collection<String> attendees, boolean workingHours) {
+    TimeRange window = testCase.window;
+    boolean[] busy = new boolean[window.duration()];
+    for (Event event : testCase.events) {
+      if (Collections.disjoint(event.getAttendees(), attendees)) {
+        continue;
+      }
+
+      Recurrence recurrence = event.getRecurrence();
+      TimeRange when = event.getWhen();
+      for (long i = 0; ; i++) {
+        long start = when.start() + i * (recurrence == null ? 0 : recurrence.period());
+        if (start >= window.end() || (recurrence == null ? i > 0
+            : i >= recurrence.count() || start >= recurrence.until())) {
+          break;
+        }
+        long end = start + when.duration();
+        for (long minute = Math.max(start, window.start()); minute < Math.min(end, window.end());
+            minute++) {
+          busy[(int) (minute - window.start())] = true;
+        }
+      }
+    }
+
+    if (workingHours) {
+      for (String attendee : attendees) {
+        WorkingHours hours = testCase.workingHours.get(attendee);
+        for (int minute = window.start(); hours != null && minute < window.end(); minute++) {
+          if (!isWorking(hours, minute)) {
+            busy[minute - window.start()] = true;
+          }
+        }
+      }
+    }
+    return busy;
+  }
+
+  private static boolean isWorking(WorkingHours hours, int minute) {
+    int local = Math.floorMod(minute + hours.utcOffset(), TimeRange.MINUTES_PER_DAY);
+    return hours.start() < hours.end()
+        ? local >= hours.start() && local < hours.end()
+        : local >= hours.start() || local < hours.end();
+  }
+
+  // busyBefore[t] is how many of the first t minutes are busy.
+  private static int[] busyBefore(boolean[] busy) {
+    int[] counts = new int[busy.length + 1];
+    for (int minute = 0; minute < busy.length; minute++) {
+      counts[minute + 1] = counts[minute] + (busy[minute] ? 1 : 0);
+    }
+    return counts;
+  }
+
+  private static List<TimeRange> freeRuns(TimeRange window, boolean[] busy, long duration) {
+    List<TimeRange> free = new ArrayList<>();
+    int runStart = 0;
+    for (int minute = 0; minute <= busy.length; minute++) {
+      if (minute == busy.length || busy[minute]) {
+        if (minute - runStart >= duration && minute > runStart) {
+          free.add(TimeRange.fromStartEnd(
+              window.start() + runStart, window.start() + minute, false));
+        }
+        runStart = minute + 1;
+      }
+    }
+    return free;
+  }
+
+  private static Case generate(Random random, boolean large) {
+    int people = large ? LARGE_PEOPLE : 1 + random.nextInt(SMALL_PEOPLE);
+    int eventCount = large ? random.nextInt(LARGE_EVENTS) : random.nextInt(SMALL_EVENTS + 1);
+    TimeRange window = randomWindow(random);
+
+    List<Event> events = new ArrayList<>(eventCount);
+    for (int i = 0; i < eventCount; i++) {
+      events.add(randomEvent(random, "Event " + i, window, randomPeople(random, people, 1)));
+    }
+
+    // Working hours are rare enough that most cases still have free time to find.
+    Map<String, WorkingHours> workingHours = new LinkedHashMap<>();
+    if (random.nextInt(4) == 0) {
+      for (String person : randomPeople(random, people, 1)) {
+        workingHours.put(person, randomWorkingHours(random));
+      }
+    }
+
+    List<String> required = randomPeople(random, people, 0);
+    List<String> optional = randomPeople(random, people, 0);
+    int k = random.nextInt(4) == 0 ? 1 + random.nextInt(50) : 1 + random.nextInt(5);
+    return new Case(events, required, optional, randomDuration(random), window, workingHours, k,
+        randomBuffer(random));
+  }
+
+  private static int randomBuffer(Random random) {
+    switch (random.nextInt(3)) {
+      case 0:
+        return Case.EARLIEST;
+      case 1:
+        return Case.FEWEST_FRAGMENTS;
+      default:
+        return random.nextInt(61);
+    }
+  }
+
+  // Mostly a single day, as the servlets ask for, and otherwise a few days or an uneven window.
+  private static TimeRange randomWindow(Random random) {
+    switch (random.nextInt(6)) {
+      case 0:
+        return TimeRange.days(1 + random.nextInt(2), 1 + random.nextInt(MAX_WINDOW_DAYS));
+      case 1:
+        return TimeRange.fromStartDuration(random.nextInt(2 * TimeRange.MINUTES_PER_DAY),
+            1 + random.nextInt(MAX_WINDOW_DAYS * TimeRange.MINUTES_PER_DAY));
+      default:
+        return TimeRange.WHOLE_DAY;
+    }
+  }
+
+  // Mostly one-off events on a single day, with some multi-day and recurring ones mixed in. Events
+  // start up to a day before the window and run up to a day past it.
+  private static Event randomEvent(
+      Random random, String title, TimeRange window, List<String> attendees) {
+    int firstDay = Math.max(TimeRange.getDay(window.start()) - 1, 0);
+    int days = TimeRange.getDay(window.end() - 1) + 2 - firstDay;
+    int dayStart = (firstDay + random.nextInt(days)) * TimeRange.MINUTES_PER_DAY;
+    switch (random.nextInt(8)) {
+      case 0:
+        // Multi-day, ending anywhere up to three days later.
+        return new Event(title, TimeRange.fromStartDuration(dayStart + random.nextInt(
+            TimeRange.MINUTES_PER_DAY), 1 + random.nextInt(3 * TimeRange.MINUTES_PER_DAY)),
+            attendees);
+      case 1:
+        return new Event(title, shift(randomRange(random), dayStart), attendees,
+            randomRecurrence(random, dayStart));
+      default:
+        return new Event(title, shift(randomRange(random), dayStart), attendees);
+    }
+  }
+
+  private static TimeRange shift(TimeRange range, int minutes) {
+    return TimeRange.fromStartDuration(range.start() + minutes, range.duration());
+  }
+
+  // Mostly ordinary meetings, with some empty, whole-day and edge-of-day ranges mixed in.
+  private static TimeRange randomRange(Random random) {
+    int minutes = TimeRange.WHOLE_DAY.duration();
+    switch (random.nextInt(10)) {
+      case 0:
+        return TimeRange.fromStartDuration(random.nextInt(minutes), 0);
+      case 1:
+        return TimeRange.WHOLE_DAY;
+      case 2:
+        return TimeRange.fromStartEnd(random.nextInt(minutes), TimeRange.END_OF_DAY, true);
+      case 3:
+        return TimeRange.fromStartEnd(0, 1 + random.nextInt(minutes), false);
+      default:
+        int start = random.nextInt(minutes);
+        int longest = Math.min(180, minutes - start);
+        return TimeRange.fromStartDuration(start, 1 + random.nextInt(longest));
+    }
+  }
+
+  // Daily and hourly repeats, plus uneven periods that drift across day boundaries. Periods may
+  // be shorter than the event, so occurrences can overlap.
+  private static Recurrence randomRecurrence(Random random, int dayStart) {
+    int period;
+    switch (random.nextInt(3)) {
+      case 0:
+        period = TimeRange.MINUTES_PER_DAY;
+        break;
+      case 1:
+        period = 60;
+        break;
+      default:
+        period = 15 + random.nextInt(600);
+        break;
+    }
+
+    switch (random.nextInt(4)) {
+      case 0:
+        return Recurrence.forever(period);
+      case 1:
+        return Recurrence.times(period, random.nextInt(10));
+      case 2:
+        return Recurrence.until(
+            period, dayStart + random.nextInt(MAX_WINDOW_DAYS * TimeRange.MINUTES_PER_DAY));
+      default:
+        return Recurrence.of(period, random.nextInt(10),
+            dayStart + random.nextInt(MAX_WINDOW_DAYS * TimeRange.MINUTES_PER_DAY));
+    }
+  }
+
+  private static WorkingHours randomWorkingHours(Random random) {
+    int offset = random.nextInt(2 * WorkingHours.MAX_OFFSET + 1) - WorkingHours.MAX_OFFSET;
+    int start = random.nextInt(TimeRange.MINUTES_PER_DAY);
+    int end = random.nextInt(TimeRange.MINUTES_PER_DAY + 1);
+    return WorkingHours.of(offset, start, end == start ? TimeRange.MINUTES_PER_DAY - start : end);
+  }
+
+  private static long randomDuration(Random random) {
+    switch (random.nextInt(9)) {
+      case 0:
+        return 1;
+      case 1:
+        return TimeRange.WHOLE_DAY.duration();
+      case 2:
+        return TimeRange.WHOLE_DAY.duration() + 1;
+      case 3:
+        return 0;
+      default:
+        return 1 + random.nextInt(120);
+    }
+  }
+
+  private static List<String> randomPeople(Random random, int people, int atLeast) {
+    int count = atLeast + random.nextInt(Math.min(people, 4) + 1 - atLeast);
+    List<String> chosen = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      String person = "Person " + random.nextInt(people);
+      if (!chosen.contains(person)) {
+        chosen.add(person);
+      }
+    }
+    return chosen;
+  }
+
+  private static List<TimeRange> run(Engine engine, Case testCase) {
+    return new ArrayList<>(engine.run(testCase, testCase.request()));
+  }
+
+  private static boolean fails(Engine engine, Case testCase) {
+    if (!engine.accepts(testCase)) {
+      return false;
+    }
+
+    try {
+      return !run(engine, testCase).equals(engine.oracle.answer(testCase));
+    } catch (RuntimeException e) {
+      return true;
+    }
+  }
+
+  // Repeatedly applies the first simplification that still fails, until none does.
+  private static Case shrink(Case testCase, Engine engine) {
+    for (int round = 0; round < MAX_SHRINK_ROUNDS; round++) {
+      Case smaller = null;
+      for (Case candidate : simplifications(testCase)) {
+        if (fails(engine, candidate)) {
+          smaller = candidate;
+          break;
+        }
+      }
+      if (smaller == null) {
+        break;
+      }
+      testCase = smaller;
+    }
+    return testCase;
+  }
+
+  // Every case one step simpler than testCase, roughly biggest steps first.
+  private static List<Case> simplifications(Case testCase) {
+    List<Case> candidates = new ArrayList<>();
+    List<Event> events = testCase.events;
+
+    if (!testCase.window.equals(TimeRange.WHOLE_DAY)) {
+      candidates.add(testCase.withWindow(TimeRange.WHOLE_DAY));
+    }
+
+    for (int i = 0; i < events.size(); i++) {
+      List<Event> fewer = new ArrayList<>(events);
+      fewer.remove(i);
+      candidates.add(testCase.withEvents(fewer));
+    }
+
+    for (int i = 0; i < testCase.required.size(); i++) {
+      List<String> fewer = new ArrayList<>(testCase.required);
+      fewer.remove(i);
+      candidates.add(testCase.withAttendees(fewer, testCase.optional));
+    }
+
+    for (int i = 0; i < testCase.optional.size(); i++) {
+      List<String> fewer = new ArrayList<>(testCase.optional);
+      fewer.remove(i);
+      candidates.add(testCase.withAttendees(testCase.required, fewer));
+    }
+
+    for (String attendee : testCase.workingHours.keySet()) {
+      Map<String, WorkingHours> fewer = new LinkedHashMap<>(testCase.workingHours);
+      fewer.remove(attendee);
+      candidates.add(testCase.withWorkingHours(fewer));
+    }
+
+    for (int i = 0; i < events.size(); i++) {
+      Event event = events.get(i);
+      List<String> attendees = new ArrayList<>(event.getAttendees());
+      for (int j = 0; attendees.size() > 1 && j < attendees.size(); j++) {
+        List<String> fewer = new ArrayList<>(attendees);
+        fewer.remove(j);
+        candidates.add(withEvent(testCase, i,
+            new Event(event.getTitle(), event.getWhen(), fewer, event.getRecurrence())));
+      }
+
+      if (event.isRecurring()) {
+        candidates.add(withEvent(testCase, i,
+            new Event(event.getTitle(), event.getWhen(), attendees)));
+      }
+
+      TimeRange when = event.getWhen();
+      if (when.duration() > 1) {
+        candidates.add(withEvent(testCase, i, new Event(event.getTitle(),
+            TimeRange.fromStartDuration(when.start(), when.duration() / 2), attendees,
+            event.getRecurrence())));
+      }
+    }
+
+    if (testCase.k > 1) {
+      candidates.add(testCase.withRanking(1, testCase.buffer));
+    }
+    if (testCase.buffer != Case.EARLIEST) {
+      candidates.add(testCase.withRanking(testCase.k, Case.EARLIEST));
+    }
+    if (testCase.duration > 1) {
+      candidates.add(testCase.withDuration(testCase.duration / 2));
+    }
+    return candidates;
+  }
+
+  private static Case withEvent(Case testCase, int index, Event event) {
+    List<Event> events = new ArrayList<>(testCase.events);
+    events.set(index, event);
+    return testCase.withEvents(events);
+  }
+}
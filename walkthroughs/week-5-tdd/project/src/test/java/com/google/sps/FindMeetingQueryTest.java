@@ -34,21 +34,27 @@ public final class FindMeetingQueryTest {
   // Some people that we can use in our tests.
   private static final String PERSON_A = "Person A";
   private static final String PERSON_B = "Person B";
+  private static final String PERSON_C = "Person C";
 
   // All dates are the first day of the year 2020.
   private static final int TIME_0800AM = TimeRange.getTimeInMinutes(8, 0);
+  private static final int TIME_0815AM = TimeRange.getTimeInMinutes(8, 15);
   private static final int TIME_0830AM = TimeRange.getTimeInMinutes(8, 30);
   private static final int TIME_0900AM = TimeRange.getTimeInMinutes(9, 0);
   private static final int TIME_0930AM = TimeRange.getTimeInMinutes(9, 30);
   private static final int TIME_1000AM = TimeRange.getTimeInMinutes(10, 0);
   private static final int TIME_1100AM = TimeRange.getTimeInMinutes(11, 00);
 
+  private static final int DURATION_15_MINUTES = 15;
   private static final int DURATION_30_MINUTES = 30;
+  private static final int DURATION_45_MINUTES = 45;
   private static final int DURATION_60_MINUTES = 60;
   private static final int DURATION_90_MINUTES = 90;
   private static final int DURATION_1_HOUR = 60;
   private static final int DURATION_2_HOUR = 120;
 
+  private static final long TIME_BUDGET_MILLIS = 10_000;
+
   private FindMeetingQuery query;
 
   @Before
@@ -271,6 +277,648 @@ public final class FindMeetingQueryTest {
     Assert.assertEquals(expected, actual);
   }
 
+  @Test
+  public void minutePrecisionIsKept() {
+    // Events that don't line up with half hours should leave exactly the gap between them.
+    //
+    // Events  : |--A--|    |--A--|
+    // Day     : |---------------------|
+    // Options :       |----|     |----|
+
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0815AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartDuration(TIME_0830AM, DURATION_45_MINUTES),
+            Arrays.asList(PERSON_A)));
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_15_MINUTES);
+
+    Collection<TimeRange> actual = query.query(events, request);
+    Collection<TimeRange> expected =
+        Arrays.asList(TimeRange.fromStartEnd(TIME_0815AM, TIME_0830AM, false),
+            TimeRange.fromStartEnd(TIME_0830AM + DURATION_45_MINUTES, TimeRange.END_OF_DAY, true));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void searchesAcrossMultipleDays() {
+    // An all-day event on the second day splits a three day window in two.
+    int day = TimeRange.WHOLE_DAY.duration();
+    TimeRange window = TimeRange.fromStartDuration(0, 3 * day);
+    Collection<Event> events = Arrays.asList(new Event("Event 1",
+        TimeRange.fromStartDuration(day, day), Arrays.asList(PERSON_A)));
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_2_HOUR);
+
+    Collection<TimeRange> actual = query.query(events, request, window);
+    Collection<TimeRange> expected = Arrays.asList(TimeRange.fromStartDuration(0, day),
+        TimeRange.fromStartDuration(2 * day, day));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void recurringEventBlocksEachOccurrence() {
+    // A daily standup that happens three times, searched over four days. Every way of querying
+    // should agree.
+    TimeRange window = TimeRange.days(0, 4);
+    Event standup = new Event("Standup", TimeRange.fromStartDuration(TIME_0900AM,
+        DURATION_30_MINUTES), Arrays.asList(PERSON_A),
+        Recurrence.times(TimeRange.MINUTES_PER_DAY, 3));
+    Collection<Event> events = Arrays.asList(standup);
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_1_HOUR);
+
+    Collection<TimeRange> expected = Arrays.asList(
+        TimeRange.fromStartEnd(0, TIME_0900AM, false),
+        TimeRange.fromStartEnd(TIME_0930AM, TimeRange.getTimeInMinutes(1, 9, 0), false),
+        TimeRange.fromStartEnd(TimeRange.getTimeInMinutes(1, 9, 30),
+            TimeRange.getTimeInMinutes(2, 9, 0), false),
+        TimeRange.fromStartEnd(TimeRange.getTimeInMinutes(2, 9, 30), window.end(), false));
+
+    Assert.assertEquals(expected, query.query(events, request, window));
+    Assert.assertEquals(expected, query.querySweep(events, request, window));
+    Assert.assertEquals(expected, query.findFreeIntervals(events, request, window).toTimeRanges());
+    Assert.assertEquals(expected, query.query(new EventCalendar(events), request, window));
+    Assert.assertEquals(expected, query.query(new EventIntervalTree(events), request, window));
+  }
+
+  @Test
+  public void recurringEventOnlyCountsWithinWindow() {
+    // A weekly meeting that never ends doesn't touch the days in between.
+    Event weekly = new Event("Weekly", TimeRange.fromStartDuration(TIME_0900AM,
+        DURATION_60_MINUTES), Arrays.asList(PERSON_A),
+        Recurrence.forever(7 * TimeRange.MINUTES_PER_DAY));
+    Collection<Event> events = Arrays.asList(weekly);
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+
+    Collection<TimeRange> midweek = query.query(events, request, TimeRange.day(3));
+    Collection<TimeRange> nextWeek = query.query(events, request, TimeRange.day(7));
+
+    Assert.assertEquals(Arrays.asList(TimeRange.day(3)), midweek);
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(TimeRange.day(7).start(),
+            TimeRange.getTimeInMinutes(7, 9, 0), false),
+            TimeRange.fromStartEnd(TimeRange.getTimeInMinutes(7, 10, 0),
+            TimeRange.day(7).end(), false)),
+        nextWeek);
+  }
+
+  @Test
+  public void optionalAttendeeIsIncludedWhenPossible() {
+    // C is optional and busy all day, so C can't be accommodated. The options should be the same
+    // as if C wasn't invited.
+    //
+    // Events  :       |--A--|     |--B--|
+    //           |-------------C-------------|
+    // Day     : |---------------------------|
+    // Options : |--1--|     |--2--|     |-3-|
+
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartDuration(TIME_0800AM, DURATION_30_MINUTES),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartDuration(TIME_0900AM, DURATION_30_MINUTES),
+            Arrays.asList(PERSON_B)),
+        new Event("Event 3", TimeRange.WHOLE_DAY, Arrays.asList(PERSON_C)));
+
+    MeetingRequest request =
+        new MeetingRequest(Arrays.asList(PERSON_A, PERSON_B), DURATION_30_MINUTES);
+    request.addOptionalAttendee(PERSON_C);
+
+    Collection<TimeRange> actual = query.query(events, request);
+    Collection<TimeRange> expected =
+        Arrays.asList(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0800AM, false),
+            TimeRange.fromStartEnd(TIME_0830AM, TIME_0900AM, false),
+            TimeRange.fromStartEnd(TIME_0930AM, TimeRange.END_OF_DAY, true));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void optionalAttendeeNarrowsOptions() {
+    // C is optional and can make part of the time the required attendees are free.
+    //
+    // Events  :       |--A--|     |--B--|
+    //                       |--C--|
+    // Day     : |---------------------------|
+    // Options : |--1--|           |--2--|
+
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartDuration(TIME_0800AM, DURATION_30_MINUTES),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartDuration(TIME_0900AM, DURATION_30_MINUTES),
+            Arrays.asList(PERSON_B)),
+        new Event("Event 3", TimeRange.fromStartDuration(TIME_0830AM, DURATION_30_MINUTES),
+            Arrays.asList(PERSON_C)));
+
+    MeetingRequest request =
+        new MeetingRequest(Arrays.asList(PERSON_A, PERSON_B), DURATION_30_MINUTES);
+    request.addOptionalAttendee(PERSON_C);
+
+    Collection<TimeRange> actual = query.query(events, request);
+    Collection<TimeRange> expected =
+        Arrays.asList(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0800AM, false),
+            TimeRange.fromStartEnd(TIME_0930AM, TimeRange.END_OF_DAY, true));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void fallsBackToMandatoryAttendees() {
+    // Only the 30 minutes between A's events is free for A, and B is optional and busy then.
+    //
+    // Events  : |--A--|     |----A----|
+    //                 |-B-|
+    // Day     : |---------------------|
+    // Options :       |-----|
+
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0830AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartEnd(TIME_0900AM, TimeRange.END_OF_DAY, true),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 3", TimeRange.fromStartDuration(TIME_0830AM, DURATION_15_MINUTES),
+            Arrays.asList(PERSON_B)));
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+    request.addOptionalAttendee(PERSON_B);
+
+    Collection<TimeRange> actual = query.query(events, request);
+    Collection<TimeRange> expected =
+        Arrays.asList(TimeRange.fromStartDuration(TIME_0830AM, DURATION_30_MINUTES));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void onlyOptionalAttendeesWithGaps() {
+    // With no required attendees, the optional attendees are treated as required.
+    //
+    // Events  :       |--A--|     |--B--|
+    // Day     : |---------------------------|
+    // Options : |--1--|     |--2--|     |-3-|
+
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartDuration(TIME_0800AM, DURATION_30_MINUTES),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartDuration(TIME_0900AM, DURATION_30_MINUTES),
+            Arrays.asList(PERSON_B)));
+
+    MeetingRequest request = new MeetingRequest(NO_ATTENDEES, DURATION_30_MINUTES);
+    request.addOptionalAttendee(PERSON_A);
+    request.addOptionalAttendee(PERSON_B);
+
+    Collection<TimeRange> actual = query.query(events, request);
+    Collection<TimeRange> expected =
+        Arrays.asList(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0800AM, false),
+            TimeRange.fromStartEnd(TIME_0830AM, TIME_0900AM, false),
+            TimeRange.fromStartEnd(TIME_0930AM, TimeRange.END_OF_DAY, true));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void onlyOptionalAttendeesWithNoGaps() {
+    // With no required attendees and no time that suits the optional attendees, there are no
+    // options rather than the whole day.
+    //
+    // Events  : |--A--|     |----B----|
+    //                 |--A--|
+    // Day     : |---------------------|
+    // Options :
+
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0830AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartEnd(TIME_0830AM, TIME_0900AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 3", TimeRange.fromStartEnd(TIME_0900AM, TimeRange.END_OF_DAY, true),
+            Arrays.asList(PERSON_B)));
+
+    MeetingRequest request = new MeetingRequest(NO_ATTENDEES, DURATION_30_MINUTES);
+    request.addOptionalAttendee(PERSON_A);
+    request.addOptionalAttendee(PERSON_B);
+
+    Collection<TimeRange> actual = query.query(events, request);
+    Collection<TimeRange> expected = Arrays.asList();
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void calendarHonorsOptionalAttendees() {
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartDuration(TIME_0800AM, DURATION_30_MINUTES),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartDuration(TIME_0830AM, DURATION_30_MINUTES),
+            Arrays.asList(PERSON_C)));
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+    request.addOptionalAttendee(PERSON_C);
+
+    Assert.assertEquals(
+        query.query(events, request), query.query(new EventCalendar(events), request));
+  }
+
+  @Test
+  public void maximizeOptionalPicksMostAvailable() {
+    // No time suits both optional attendees, so the best slots suit one of them.
+    //
+    // Events  : |--A--|
+    //                 |--------B--------|
+    //           |-----------C-----------|
+    // Day     : |-----------------------------|
+    // Options :       |-------1---------|
+
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0800AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartEnd(TIME_0800AM, TimeRange.END_OF_DAY, true),
+            Arrays.asList(PERSON_B)),
+        new Event("Event 3", TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_1100AM, false),
+            Arrays.asList(PERSON_C)));
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+    request.addOptionalAttendee(PERSON_B);
+    request.addOptionalAttendee(PERSON_C);
+
+    Collection<TimeRange> actual =
+        query.queryMaximizingOptional(events, request, TIME_BUDGET_MILLIS);
+    Collection<TimeRange> expected =
+        Arrays.asList(TimeRange.fromStartEnd(TIME_1100AM, TimeRange.END_OF_DAY, true));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void maximizeOptionalMatchesQueryWhenEveryoneFits() {
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartDuration(TIME_0800AM, DURATION_30_MINUTES),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartDuration(TIME_0900AM, DURATION_60_MINUTES),
+            Arrays.asList(PERSON_B)));
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+    request.addOptionalAttendee(PERSON_B);
+
+    Assert.assertEquals(query.query(events, request),
+        query.queryMaximizingOptional(events, request, TIME_BUDGET_MILLIS));
+  }
+
+  @Test
+  public void maximizeOptionalScalesToManyAttendees() {
+    // 1,000 optional attendees are free only from 9:00 to 9:15, except for one who is busy all
+    // day. The best slot is then 9:00 - 9:15, missing just that one person.
+    List<Event> events = new ArrayList<>();
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_15_MINUTES);
+    for (int i = 0; i < 1000; i++) {
+      String person = "Optional " + i;
+      request.addOptionalAttendee(person);
+      if (i == 0) {
+        events.add(new Event("Busy " + i, TimeRange.WHOLE_DAY, Arrays.asList(person)));
+        continue;
+      }
+      events.add(new Event("Before " + i,
+          TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0900AM, false),
+          Arrays.asList(person)));
+      events.add(new Event("After " + i,
+          TimeRange.fromStartEnd(TIME_0900AM + DURATION_15_MINUTES, TimeRange.END_OF_DAY, true),
+          Arrays.asList(person)));
+    }
+
+    Collection<TimeRange> actual =
+        query.queryMaximizingOptional(events, request, TIME_BUDGET_MILLIS);
+    Collection<TimeRange> expected =
+        Arrays.asList(TimeRange.fromStartDuration(TIME_0900AM, DURATION_15_MINUTES));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void maximizeOptionalIgnoresEmptyEvents() {
+    // B's empty event at 9:00 doesn't rule out a meeting running over it.
+    //
+    // Events  :       |--A--|
+    //                            |B
+    // Day     : |-----------------------------|
+    // Options : |-----|     |-----------------|
+
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartDuration(TIME_0800AM, DURATION_30_MINUTES),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartDuration(TIME_0900AM, 0),
+            Arrays.asList(PERSON_B)));
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+    request.addOptionalAttendee(PERSON_B);
+
+    Collection<TimeRange> actual =
+        query.queryMaximizingOptional(events, request, TIME_BUDGET_MILLIS);
+    Collection<TimeRange> expected =
+        Arrays.asList(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0800AM, false),
+            TimeRange.fromStartEnd(TIME_0830AM, TimeRange.END_OF_DAY, true));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void maximizeOptionalFallsBackWhenOutOfTime() {
+    // With no time to consider optional attendees, the answer suits the required attendees only.
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartDuration(TIME_0800AM, DURATION_30_MINUTES),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartDuration(TIME_0900AM, DURATION_60_MINUTES),
+            Arrays.asList(PERSON_B)));
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+    request.addOptionalAttendee(PERSON_B);
+
+    Collection<TimeRange> actual = query.queryMaximizingOptional(events, request, 0);
+    Collection<TimeRange> expected =
+        Arrays.asList(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0800AM, false),
+            TimeRange.fromStartEnd(TIME_0830AM, TimeRange.END_OF_DAY, true));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void bestEarliestTimes() {
+    // Starts are tried at the start of each gap and every quarter hour after it.
+    //
+    // Events  :                 |--A--|
+    // Day     : |-----------------------------|
+    // Options : |--1--|
+    //              |--2--|
+    //                 |--3--|
+    Collection<Event> events = Arrays.asList(new Event("Event 1",
+        TimeRange.fromStartDuration(TIME_0830AM, DURATION_30_MINUTES), Arrays.asList(PERSON_A)));
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+
+    List<TimeRange> actual =
+        query.queryBest(events, request, TimeRange.WHOLE_DAY, 3, SlotPreference.EARLIEST);
+    List<TimeRange> expected = Arrays.asList(TimeRange.fromStartDuration(0, DURATION_30_MINUTES),
+        TimeRange.fromStartDuration(15, DURATION_30_MINUTES),
+        TimeRange.fromStartDuration(30, DURATION_30_MINUTES));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void workingHoursAcrossTimeZones() {
+    // Person A works 9:00 to 17:00 UTC and Person B 9:00 to 17:00 in UTC-5, which overlap from
+    // 14:00 to 17:00 UTC. Person C is optional but only works mornings, so is left out.
+    //
+    // Events  :               |--A--|
+    // A hours :       |-------------------|
+    // B hours :               |-------------------|
+    // Day     : |---------------------------------------|
+    // Options :                     |-----|
+    int time1400 = TimeRange.getTimeInMinutes(14, 0);
+    int time1500 = TimeRange.getTimeInMinutes(15, 0);
+    int time1700 = TimeRange.getTimeInMinutes(17, 0);
+    WorkingHoursDirectory workingHours = new WorkingHoursDirectory();
+    workingHours.set(PERSON_A, WorkingHours.of(0, TIME_0900AM, time1700));
+    workingHours.set(PERSON_B, WorkingHours.of(-300, TIME_0900AM, time1700));
+    workingHours.set(PERSON_C, WorkingHours.of(0, TIME_0800AM, TIME_1100AM));
+    FindMeetingQuery zoneQuery = new FindMeetingQuery(workingHours);
+
+    Collection<Event> events = Arrays.asList(new Event("Event 1",
+        TimeRange.fromStartEnd(time1400, time1500, false), Arrays.asList(PERSON_A)));
+    MeetingRequest request =
+        new MeetingRequest(Arrays.asList(PERSON_A, PERSON_B), DURATION_30_MINUTES);
+    request.addOptionalAttendee(PERSON_C);
+
+    Collection<TimeRange> expected =
+        Arrays.asList(TimeRange.fromStartEnd(time1500, time1700, false));
+
+    Assert.assertEquals(expected, zoneQuery.query(events, request));
+    Assert.assertEquals(expected, zoneQuery.query(new EventCalendar(events), request));
+    Assert.assertEquals(Arrays.asList(TimeRange.fromStartDuration(time1500, DURATION_30_MINUTES)),
+        zoneQuery.queryBest(events, request, TimeRange.WHOLE_DAY, 1, SlotPreference.EARLIEST));
+  }
+
+  @Test
+  public void bestTimesLeaveFewestFragments() {
+    // The gap that fits the meeting exactly is best, then the start of the next gap.
+    //
+    // Events  : |-----A-----|  |--A--|    |-----A-----|
+    // Day     : |-------------------------------------|
+    // Options :             |1|      |2|
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(0, TIME_0800AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartEnd(TIME_0830AM, TIME_1000AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 3", TimeRange.fromStartEnd(TIME_1100AM, TimeRange.END_OF_DAY, true),
+            Arrays.asList(PERSON_A)));
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+
+    List<TimeRange> actual = query.queryBest(
+        events, request, TimeRange.WHOLE_DAY, 2, SlotPreference.FEWEST_FRAGMENTS);
+    List<TimeRange> expected =
+        Arrays.asList(TimeRange.fromStartDuration(TIME_0800AM, DURATION_30_MINUTES),
+            TimeRange.fromStartDuration(TIME_1000AM, DURATION_30_MINUTES));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void bestTimesKeepABuffer() {
+    // Only 8:15 and later leave 15 minutes after the end of Event 1.
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(0, TIME_0800AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartEnd(TIME_1000AM, TimeRange.END_OF_DAY, true),
+            Arrays.asList(PERSON_A)));
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+
+    List<TimeRange> actual = query.queryBest(
+        events, request, TimeRange.WHOLE_DAY, 2, SlotPreference.buffer(DURATION_15_MINUTES));
+    List<TimeRange> expected =
+        Arrays.asList(TimeRange.fromStartDuration(TIME_0815AM, DURATION_30_MINUTES),
+            TimeRange.fromStartDuration(TIME_0830AM, DURATION_30_MINUTES));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void bestTimesAcrossManyDays() {
+    // Person A is busy every day but the last of a 30 day window, which a single answer must find.
+    int days = 30;
+    Event busy = new Event("Event 1", TimeRange.WHOLE_DAY, Arrays.asList(PERSON_A),
+        Recurrence.times(TimeRange.MINUTES_PER_DAY, days - 1));
+    Collection<Event> events = Arrays.asList(busy);
+    EventCalendar calendar = new EventCalendar(events);
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_1_HOUR);
+
+    TimeRange window = TimeRange.days(0, days);
+    List<TimeRange> expected = Arrays.asList(
+        TimeRange.fromStartDuration(TimeRange.day(days - 1).start(), DURATION_1_HOUR));
+
+    Assert.assertEquals(expected,
+        query.queryBest(events, request, window, 1, SlotPreference.EARLIEST));
+    Assert.assertEquals(expected,
+        query.queryBest(calendar, request, window, 1, SlotPreference.EARLIEST));
+  }
+
+  @Test
+  public void bestTimesPreferOptionalAttendees() {
+    // B is optional and busy first thing, so the best times come after B's event.
+    Collection<Event> events = Arrays.asList(new Event("Event 1",
+        TimeRange.fromStartEnd(0, TIME_0900AM, false), Arrays.asList(PERSON_B)));
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+    request.addOptionalAttendee(PERSON_B);
+
+    List<TimeRange> actual =
+        query.queryBest(events, request, TimeRange.WHOLE_DAY, 1, SlotPreference.EARLIEST);
+
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartDuration(TIME_0900AM, DURATION_30_MINUTES)), actual);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void bestTimesNeedPositiveK() {
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+
+    query.queryBest(NO_EVENTS, request, TimeRange.WHOLE_DAY, 0, SlotPreference.EARLIEST);
+  }
+
+  @Test
+  public void parallelOccupancyMatchesSerial() {
+    // Enough events for several partitions, in an organization large enough that the requested
+    // people still have some free time.
+    CalendarGenerator generator = new CalendarGenerator(2020, 100_000);
+    List<Event> eventList = generator.events(50_000, CalendarGenerator.Density.SPARSE);
+    Event[] events = eventList.toArray(new Event[eventList.size()]);
+    MeetingRequest request = generator.request(20, 10, DURATION_30_MINUTES);
+
+    OccupancyMask serialMandatory = new OccupancyMask(TimeRange.WHOLE_DAY);
+    OccupancyMask serialOptional = new OccupancyMask(TimeRange.WHOLE_DAY);
+    FindMeetingQuery.getOccupancy(
+        events, 0, events.length, request, serialMandatory, serialOptional);
+    OccupancyMask parallelMandatory = new OccupancyMask(TimeRange.WHOLE_DAY);
+    OccupancyMask parallelOptional = new OccupancyMask(TimeRange.WHOLE_DAY);
+    FindMeetingQuery.getOccupancyParallel(events, request, parallelMandatory, parallelOptional);
+
+    Assert.assertFalse(serialMandatory.isEmpty());
+    Assert.assertFalse(serialMandatory.freeRanges(1).isEmpty());
+    Assert.assertEquals(serialMandatory.freeRanges(1), parallelMandatory.freeRanges(1));
+    Assert.assertEquals(serialOptional.freeRanges(1), parallelOptional.freeRanges(1));
+  }
+
+  @Test
+  public void queryAllKeepsRequestOrder() {
+    // Answer a batch large enough to be split across tasks, and check each answer against the
+    // single query for the same request.
+    Collection<Event> events = Arrays.asList(Events.events);
+    List<MeetingRequest> requests = new ArrayList<>();
+    for (Event event : events) {
+      for (String attendee : event.getAttendees()) {
+        requests.add(new MeetingRequest(Arrays.asList(attendee), DURATION_30_MINUTES));
+      }
+    }
+
+    List<Collection<TimeRange>> actual = query.queryAll(events, requests);
+
+    Assert.assertEquals(requests.size(), actual.size());
+    for (int i = 0; i < requests.size(); i++) {
+      Assert.assertEquals(query.query(events, requests.get(i)), actual.get(i));
+    }
+  }
+
+  @Test
+  public void queryAllWithNoRequests() {
+    List<MeetingRequest> requests = Collections.emptyList();
+
+    Assert.assertEquals(Collections.emptyList(), query.queryAll(NO_EVENTS, requests));
+  }
+
+  @Test
+  public void sweepMatchesQueryOnSampleEvents() {
+    // The sweep-line mode should agree with the mask-based query for every single attendee.
+    Collection<Event> events = Arrays.asList(Events.events);
+
+    for (Event event : events) {
+      for (String attendee : event.getAttendees()) {
+        MeetingRequest request = new MeetingRequest(Arrays.asList(attendee), DURATION_30_MINUTES);
+        Assert.assertEquals(query.query(events, request), query.querySweep(events, request));
+      }
+    }
+  }
+
+  @Test
+  public void sweepMergesOverlappingAndNestedEvents() {
+    // Events  :    |--A--|  |----B----|
+    //                 |--A--|   |-B-|
+    // Day     : |---------------------------|
+    // Options : |--|                   |----|
+
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartDuration(TIME_0800AM, DURATION_30_MINUTES),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartDuration(TIME_0815AM, DURATION_45_MINUTES),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 3", TimeRange.fromStartDuration(TIME_0900AM, DURATION_2_HOUR),
+            Arrays.asList(PERSON_B)),
+        new Event("Event 4", TimeRange.fromStartDuration(TIME_0930AM, DURATION_30_MINUTES),
+            Arrays.asList(PERSON_B)));
+
+    MeetingRequest request =
+        new MeetingRequest(Arrays.asList(PERSON_A, PERSON_B), DURATION_15_MINUTES);
+
+    Collection<TimeRange> actual = query.querySweep(events, request);
+    Collection<TimeRange> expected =
+        Arrays.asList(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0800AM, false),
+            TimeRange.fromStartEnd(TIME_0900AM + DURATION_2_HOUR, TimeRange.END_OF_DAY, true));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void sweepSkipsGapsThatAreTooShort() {
+    // Events  : |--A--| |--A--|
+    // Day     : |---------------------|
+    // Options :                |------|
+
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0800AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartEnd(TIME_0815AM, TIME_1000AM, false),
+            Arrays.asList(PERSON_A)));
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+
+    Collection<TimeRange> actual = query.querySweep(events, request);
+    Collection<TimeRange> expected =
+        Arrays.asList(TimeRange.fromStartEnd(TIME_1000AM, TimeRange.END_OF_DAY, true));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void sweepIgnoresEmptyEvents() {
+    // Events  :       |A (no length)
+    // Day     : |---------------------|
+    // Options : |---------------------|
+
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartDuration(TIME_0800AM, 0), Arrays.asList(PERSON_A)));
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+
+    Collection<TimeRange> actual = query.querySweep(events, request);
+    Collection<TimeRange> expected = Arrays.asList(TimeRange.WHOLE_DAY);
+
+    Assert.assertEquals(expected, actual);
+  }
+
   @Test
   public void noEventsToOccupy() {
     // Pass in no events. This should result in no slots being considered as occupied.
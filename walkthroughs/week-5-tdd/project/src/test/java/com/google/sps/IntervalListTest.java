@@ -0,0 +1,123 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.Collection;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class IntervalListTest {
+  private static IntervalList of(int... bounds) {
+    IntervalList list = new IntervalList();
+    for (int i = 0; i < bounds.length; i += 2) {
+      list.add(bounds[i], bounds[i + 1]);
+    }
+    return list;
+  }
+
+  @Test
+  public void packedRangeRoundTrip() {
+    long packed = PackedRange.fromStartDuration(540, 30);
+
+    Assert.assertEquals(540, PackedRange.start(packed));
+    Assert.assertEquals(30, PackedRange.duration(packed));
+    Assert.assertEquals(570, PackedRange.end(packed));
+    Assert.assertEquals(TimeRange.fromStartDuration(540, 30), PackedRange.toTimeRange(packed));
+    Assert.assertEquals(packed, PackedRange.fromTimeRange(TimeRange.fromStartDuration(540, 30)));
+  }
+
+  @Test
+  public void packedRangesSortByStart() {
+    Assert.assertTrue(
+        PackedRange.fromStartDuration(100, 500) < PackedRange.fromStartDuration(101, 1));
+  }
+
+  @Test
+  public void addSortsAndMerges() {
+    // Out of order, overlapping, touching and empty ranges.
+    IntervalList list = of(50, 60, 0, 10, 5, 20, 20, 30, 40, 40);
+
+    Assert.assertEquals(2, list.size());
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(0, 30, false), TimeRange.fromStartEnd(50, 60, false)),
+        list.toTimeRanges());
+  }
+
+  @Test
+  public void union() {
+    //  a : |---|   |---|
+    //  b :   |---|       |--|
+    Assert.assertEquals(
+        of(0, 30, 40, 50, 60, 70), of(0, 10, 20, 30).union(of(5, 25, 40, 50, 60, 70)));
+  }
+
+  @Test
+  public void intersection() {
+    //  a : |-------|   |---|
+    //  b :   |--| |-----|
+    Assert.assertEquals(
+        of(5, 10, 12, 15, 20, 25), of(0, 15, 20, 30).intersection(of(5, 10, 12, 25)));
+  }
+
+  @Test
+  public void intersectionOfDisjointListsIsEmpty() {
+    Assert.assertTrue(of(0, 10).intersection(of(10, 20)).isEmpty());
+  }
+
+  @Test
+  public void subtract() {
+    //  a : |----------|   |---|
+    //  b :   |--| |-----------|
+    Assert.assertEquals(of(0, 5, 10, 12), of(0, 20, 30, 40).subtract(of(5, 10, 12, 40)));
+  }
+
+  @Test
+  public void subtractNothing() {
+    Assert.assertEquals(of(0, 20), of(0, 20).subtract(new IntervalList()));
+  }
+
+  @Test
+  public void gapsWithinWindow() {
+    IntervalList busy = of(0, 60, 100, 130, 200, 300);
+
+    IntervalList actual = busy.gaps(TimeRange.fromStartEnd(50, 250, false), 30);
+    IntervalList expected = of(60, 100, 130, 200);
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void gapsOfEmptyListIsWindow() {
+    Assert.assertEquals(Arrays.asList(TimeRange.WHOLE_DAY),
+        new IntervalList().gaps(TimeRange.WHOLE_DAY, 60).toTimeRanges());
+  }
+
+  @Test
+  public void queryIntervalsMatchesQuery() {
+    Collection<Event> events = Arrays.asList(Events.events);
+    FindMeetingQuery query = new FindMeetingQuery();
+
+    for (Event event : events) {
+      MeetingRequest request = new MeetingRequest(event.getAttendees(), 30);
+      request.addOptionalAttendee("Liam");
+      Assert.assertEquals(query.query(events, request), query.queryIntervals(events, request));
+    }
+  }
+}
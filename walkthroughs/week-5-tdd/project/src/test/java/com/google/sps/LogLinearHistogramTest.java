@@ -0,0 +1,87 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class LogLinearHistogramTest {
+  @Test
+  public void emptyHistogram() {
+    LogLinearHistogram histogram = new LogLinearHistogram();
+
+    Assert.assertEquals(0, histogram.count());
+    Assert.assertEquals(0, histogram.sum());
+    Assert.assertEquals(0, histogram.valueAtQuantile(0.99));
+  }
+
+  @Test
+  public void smallValuesAreExact() {
+    LogLinearHistogram histogram = new LogLinearHistogram();
+    for (int value = 1; value <= 10; value++) {
+      histogram.record(value);
+    }
+
+    Assert.assertEquals(10, histogram.count());
+    Assert.assertEquals(55, histogram.sum());
+    Assert.assertEquals(1, histogram.valueAtQuantile(0));
+    Assert.assertEquals(5, histogram.valueAtQuantile(0.5));
+    Assert.assertEquals(9, histogram.valueAtQuantile(0.9));
+    Assert.assertEquals(10, histogram.valueAtQuantile(1));
+  }
+
+  @Test
+  public void largeValuesAreWithinRelativeError() {
+    LogLinearHistogram histogram = new LogLinearHistogram();
+    long value = 123_456_789L;
+    histogram.record(value);
+
+    long reported = histogram.valueAtQuantile(0.5);
+    Assert.assertTrue(reported >= value);
+    Assert.assertTrue(reported - value <= value / 32);
+  }
+
+  @Test
+  public void bucketsCoverEveryValueInOrder() {
+    long[] values = {0, 1, 31, 32, 33, 63, 64, 65, 1_000, 1L << 40, Long.MAX_VALUE};
+    int previous = -1;
+    for (long value : values) {
+      int bucket = LogLinearHistogram.bucketOf(value);
+
+      Assert.assertTrue(bucket >= previous);
+      Assert.assertTrue(LogLinearHistogram.lowestValueIn(bucket) <= value);
+      Assert.assertTrue(LogLinearHistogram.highestValueIn(bucket) >= value);
+      previous = bucket;
+    }
+  }
+
+  @Test
+  public void negativeValuesAreRecordedAsZero() {
+    LogLinearHistogram histogram = new LogLinearHistogram();
+    histogram.record(-5);
+
+    Assert.assertEquals(1, histogram.count());
+    Assert.assertEquals(0, histogram.valueAtQuantile(1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void quantileOutOfRange() {
+    new LogLinearHistogram().valueAtQuantile(1.5);
+  }
+}
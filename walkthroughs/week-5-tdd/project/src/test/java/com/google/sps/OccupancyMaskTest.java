@@ -0,0 +1,140 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.Collection;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class OccupancyMaskTest {
+  private static final int MINUTES_IN_WEEK = 7 * 24 * 60;
+
+  @Test
+  public void emptyMaskIsOneFreeRange() {
+    OccupancyMask mask = new OccupancyMask(TimeRange.WHOLE_DAY);
+
+    Assert.assertTrue(mask.isEmpty());
+    Assert.assertEquals(Arrays.asList(TimeRange.WHOLE_DAY), mask.freeRanges(1));
+  }
+
+  @Test
+  public void occupyWithinOneWord() {
+    OccupancyMask mask = new OccupancyMask(0, 64);
+    mask.occupy(10, 20);
+
+    Assert.assertFalse(mask.isOccupied(9));
+    Assert.assertTrue(mask.isOccupied(10));
+    Assert.assertTrue(mask.isOccupied(19));
+    Assert.assertFalse(mask.isOccupied(20));
+  }
+
+  @Test
+  public void occupyAcrossWords() {
+    // Spans the tail of word 0, all of word 1 and the head of word 2.
+    OccupancyMask mask = new OccupancyMask(0, 200);
+    mask.occupy(60, 130);
+
+    Assert.assertEquals(60, mask.nextOccupied(0));
+    Assert.assertEquals(130, mask.nextFree(60));
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(0, 60, false), TimeRange.fromStartEnd(130, 200, false)),
+        mask.freeRanges(1));
+  }
+
+  @Test
+  public void occupyOnWordBoundaries() {
+    OccupancyMask mask = new OccupancyMask(0, 256);
+    mask.occupy(64, 128);
+
+    Assert.assertFalse(mask.isOccupied(63));
+    Assert.assertTrue(mask.isOccupied(64));
+    Assert.assertTrue(mask.isOccupied(127));
+    Assert.assertFalse(mask.isOccupied(128));
+  }
+
+  @Test
+  public void rangesOutsideWindowAreClipped() {
+    OccupancyMask mask = new OccupancyMask(100, 100);
+    mask.occupy(0, 120);
+    mask.occupy(190, 500);
+
+    Assert.assertFalse(mask.isOccupied(99));
+    Assert.assertFalse(mask.isOccupied(200));
+    Assert.assertEquals(Arrays.asList(TimeRange.fromStartEnd(120, 190, false)), mask.freeRanges(1));
+  }
+
+  @Test
+  public void fullyOccupiedMaskHasNoFreeRanges() {
+    OccupancyMask mask = new OccupancyMask(TimeRange.WHOLE_DAY);
+    mask.occupy(TimeRange.WHOLE_DAY);
+
+    Assert.assertEquals(TimeRange.WHOLE_DAY.end(), mask.nextFree(0));
+    Assert.assertTrue(mask.freeRanges(1).isEmpty());
+  }
+
+  @Test
+  public void freeRangesRespectMinimumDuration() {
+    OccupancyMask mask = new OccupancyMask(0, 100);
+    mask.occupy(10, 20);
+    mask.occupy(40, 100);
+
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(20, 40, false)), mask.freeRanges(15));
+  }
+
+  @Test
+  public void orAndCombineMasks() {
+    OccupancyMask a = new OccupancyMask(0, 300);
+    OccupancyMask b = new OccupancyMask(0, 300);
+    a.occupy(0, 100);
+    b.occupy(50, 150);
+
+    OccupancyMask union = a.copy();
+    union.or(b);
+    OccupancyMask intersection = a.copy();
+    intersection.and(b);
+
+    Assert.assertEquals(Arrays.asList(TimeRange.fromStartEnd(150, 300, false)), union.freeRanges(1));
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(0, 50, false), TimeRange.fromStartEnd(100, 300, false)),
+        intersection.freeRanges(1));
+    // The originals are untouched by operations on copies.
+    Assert.assertTrue(a.isOccupied(0));
+    Assert.assertFalse(a.isOccupied(120));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void cannotCombineDifferentWindows() {
+    new OccupancyMask(0, 100).or(new OccupancyMask(0, 200));
+  }
+
+  @Test
+  public void coversMultipleDays() {
+    OccupancyMask mask = new OccupancyMask(0, MINUTES_IN_WEEK);
+    // Busy from 9am on day 2 until 5pm on day 4.
+    mask.occupy(2 * 1440 + 540, 4 * 1440 + 1020);
+
+    Collection<TimeRange> actual = mask.freeRanges(60);
+    Collection<TimeRange> expected = Arrays.asList(TimeRange.fromStartEnd(0, 2 * 1440 + 540, false),
+        TimeRange.fromStartEnd(4 * 1440 + 1020, MINUTES_IN_WEEK, false));
+
+    Assert.assertEquals(expected, actual);
+  }
+}
@@ -0,0 +1,123 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class PersistentHashMapTest {
+  /** A key whose hash is chosen by the test, so collisions can be forced. */
+  private static final class Key {
+    private final String name;
+    private final int hash;
+
+    Key(String name, int hash) {
+      this.name = name;
+      this.hash = hash;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof Key && name.equals(((Key) other).name);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  @Test
+  public void putLeavesOriginalAlone() {
+    PersistentHashMap<String, Integer> empty = PersistentHashMap.empty();
+    PersistentHashMap<String, Integer> one = empty.put("a", 1);
+    PersistentHashMap<String, Integer> two = one.put("a", 2);
+
+    Assert.assertNull(empty.get("a"));
+    Assert.assertEquals(Integer.valueOf(1), one.get("a"));
+    Assert.assertEquals(Integer.valueOf(2), two.get("a"));
+    Assert.assertEquals(1, two.size());
+  }
+
+  @Test
+  public void removeLeavesOriginalAlone() {
+    PersistentHashMap<String, Integer> map =
+        PersistentHashMap.<String, Integer>empty().put("a", 1).put("b", 2);
+    PersistentHashMap<String, Integer> removed = map.remove("a");
+
+    Assert.assertEquals(Integer.valueOf(1), map.get("a"));
+    Assert.assertNull(removed.get("a"));
+    Assert.assertEquals(Integer.valueOf(2), removed.get("b"));
+    Assert.assertEquals(1, removed.size());
+  }
+
+  @Test
+  public void removeMissingKeyReturnsSameMap() {
+    PersistentHashMap<String, Integer> map = PersistentHashMap.<String, Integer>empty().put("a", 1);
+
+    Assert.assertSame(map, map.remove("b"));
+  }
+
+  @Test
+  public void collidingKeysAreKeptApart() {
+    Key a = new Key("a", 7);
+    Key b = new Key("b", 7);
+    Key c = new Key("c", 7);
+    PersistentHashMap<Key, String> map =
+        PersistentHashMap.<Key, String>empty().put(a, "A").put(b, "B").put(c, "C");
+
+    Assert.assertEquals("B", map.get(b));
+    Assert.assertEquals(3, map.size());
+
+    map = map.remove(b);
+    Assert.assertNull(map.get(b));
+    Assert.assertEquals("A", map.get(a));
+    Assert.assertEquals("C", map.get(c));
+    Assert.assertEquals(2, map.entries().size());
+  }
+
+  @Test
+  public void matchesHashMap() {
+    // Half the keys share 37 hashes, so collisions and deep trees get exercised as well as wide
+    // ones.
+    Random random = new Random(1);
+    Map<Key, Integer> expected = new HashMap<>();
+    PersistentHashMap<Key, Integer> actual = PersistentHashMap.empty();
+    for (int i = 0; i < 20_000; i++) {
+      int name = random.nextInt(2_000);
+      Key key = new Key("key " + name, name < 1_000 ? name % 37 : name * 1_000_003);
+      if (random.nextInt(3) == 0) {
+        expected.remove(key);
+        actual = actual.remove(key);
+      } else {
+        expected.put(key, i);
+        actual = actual.put(key, i);
+      }
+    }
+
+    Assert.assertEquals(expected.size(), actual.size());
+    Assert.assertEquals(expected.size(), actual.entries().size());
+    for (Map.Entry<Key, Integer> entry : actual.entries()) {
+      Assert.assertEquals(expected.get(entry.getKey()), entry.getValue());
+    }
+  }
+}
@@ -0,0 +1,124 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class RecurrenceTest {
+  private static final String PERSON_A = "Person A";
+
+  private static final int TIME_0900AM = TimeRange.getTimeInMinutes(9, 0);
+
+  private static final int DURATION_30_MINUTES = 30;
+
+  private static final int DAY = TimeRange.MINUTES_PER_DAY;
+
+  private static final TimeRange FIRST = TimeRange.fromStartDuration(TIME_0900AM,
+      DURATION_30_MINUTES);
+
+  private static Event repeating(Recurrence recurrence) {
+    return new Event("Event 1", FIRST, Arrays.asList(PERSON_A), recurrence);
+  }
+
+  private static TimeRange onDay(int day) {
+    return TimeRange.fromStartDuration(day * DAY + TIME_0900AM, DURATION_30_MINUTES);
+  }
+
+  @Test
+  public void oneOffEventOccursOnce() {
+    Event event = new Event("Event 1", FIRST, Arrays.asList(PERSON_A));
+
+    Assert.assertFalse(event.isRecurring());
+    Assert.assertEquals(Arrays.asList(FIRST), event.occurrences(TimeRange.WHOLE_DAY));
+    Assert.assertEquals(Collections.emptyList(), event.occurrences(TimeRange.day(1)));
+    Assert.assertEquals(FIRST.end(), event.lastEnd());
+  }
+
+  @Test
+  public void onlyOccurrencesInWindowAreListed() {
+    Event event = repeating(Recurrence.forever(DAY));
+
+    List<TimeRange> expected = Arrays.asList(onDay(1000), onDay(1001), onDay(1002));
+
+    Assert.assertEquals(expected, event.occurrences(TimeRange.days(1000, 3)));
+    Assert.assertEquals(Integer.MAX_VALUE, event.lastEnd());
+  }
+
+  @Test
+  public void windowEdgesAreExclusive() {
+    // A window that ends as an occurrence starts, or starts as one ends, doesn't include it.
+    Event event = repeating(Recurrence.forever(DAY));
+
+    TimeRange before = TimeRange.fromStartEnd(0, onDay(1).start(), false);
+    TimeRange after = TimeRange.fromStartEnd(onDay(1).end(), 2 * DAY, false);
+
+    Assert.assertEquals(Arrays.asList(FIRST), event.occurrences(before));
+    Assert.assertEquals(Collections.emptyList(), event.occurrences(after));
+  }
+
+  @Test
+  public void countLimitsOccurrences() {
+    Event event = repeating(Recurrence.times(DAY, 3));
+
+    Assert.assertEquals(Arrays.asList(onDay(1), onDay(2)), event.occurrences(TimeRange.days(1, 5)));
+    Assert.assertEquals(onDay(2).end(), event.lastEnd());
+  }
+
+  @Test
+  public void untilLimitsOccurrences() {
+    // Nothing may start at or after day 2, 9:00.
+    Event event = repeating(Recurrence.until(DAY, onDay(2).start()));
+
+    Assert.assertEquals(Arrays.asList(FIRST, onDay(1)), event.occurrences(TimeRange.days(0, 5)));
+    Assert.assertEquals(onDay(1).end(), event.lastEnd());
+  }
+
+  @Test
+  public void recurrenceIsPartOfEquality() {
+    Event daily = repeating(Recurrence.forever(DAY));
+
+    Assert.assertEquals(daily, repeating(Recurrence.forever(DAY)));
+    Assert.assertNotEquals(daily, repeating(Recurrence.forever(2 * DAY)));
+    Assert.assertNotEquals(daily, new Event("Event 1", FIRST, Arrays.asList(PERSON_A)));
+  }
+
+  @Test
+  public void occurrencesFarFromTheFirstAreExact() {
+    // The occurrence in the window is 4 * 1,000,000,000 minutes after the first, more than fits
+    // in an int.
+    int period = 1_000_000_000;
+    TimeRange first = TimeRange.fromStartDuration(-2 * period, DURATION_30_MINUTES);
+    Event event =
+        new Event("Event 1", first, Arrays.asList(PERSON_A), Recurrence.forever(period));
+    TimeRange window = TimeRange.fromStartEnd(period + period / 2, Integer.MAX_VALUE, false);
+
+    TimeRange expected = TimeRange.fromStartDuration(2 * period, DURATION_30_MINUTES);
+
+    Assert.assertEquals(Arrays.asList(expected), event.occurrences(window));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void periodMustBePositive() {
+    Recurrence.forever(0);
+  }
+}
@@ -0,0 +1,79 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the pairwise {@code TimeRange} primitives the scheduler is built on.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TimeRangeBenchmark {
+  private static final int RANGES = 1024;
+
+  private final TimeRange[] ranges = new TimeRange[RANGES];
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = new Random(2020);
+    for (int i = 0; i < RANGES; i++) {
+      int start = random.nextInt(TimeRange.END_OF_DAY);
+      ranges[i] = TimeRange.fromStartDuration(start, random.nextInt(TimeRange.END_OF_DAY - start));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RANGES)
+  public void overlaps(Blackhole blackhole) {
+    for (int i = 0; i < RANGES; i++) {
+      blackhole.consume(ranges[i].overlaps(ranges[(i + 1) % RANGES]));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RANGES)
+  public void containsRange(Blackhole blackhole) {
+    for (int i = 0; i < RANGES; i++) {
+      blackhole.consume(ranges[i].contains(ranges[(i + 1) % RANGES]));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RANGES)
+  public void containsPoint(Blackhole blackhole) {
+    for (int i = 0; i < RANGES; i++) {
+      blackhole.consume(ranges[i].contains(ranges[(i + 1) % RANGES].start()));
+    }
+  }
+}
@@ -0,0 +1,114 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class WorkingHoursTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+
+  private static final int TIME_0600AM = TimeRange.getTimeInMinutes(6, 0);
+  private static final int TIME_0900AM = TimeRange.getTimeInMinutes(9, 0);
+  private static final int TIME_1400PM = TimeRange.getTimeInMinutes(14, 0);
+  private static final int TIME_1700PM = TimeRange.getTimeInMinutes(17, 0);
+  private static final int TIME_2200PM = TimeRange.getTimeInMinutes(22, 0);
+
+  // UTC-5.
+  private static final int OFFSET_NEW_YORK = -300;
+
+  @Test
+  public void localHoursAreFreeInUtc() {
+    WorkingHours hours = WorkingHours.of(0, TIME_0900AM, TIME_1700PM);
+    OccupancyMask occupancy = new OccupancyMask(TimeRange.WHOLE_DAY);
+
+    hours.occupyOffHours(occupancy);
+
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(TIME_0900AM, TIME_1700PM, false)),
+        occupancy.freeRanges(1));
+  }
+
+  @Test
+  public void offsetShiftsWorkingHours() {
+    // 9:00 to 17:00 in New York is 14:00 to 22:00 UTC.
+    WorkingHours hours = WorkingHours.of(OFFSET_NEW_YORK, TIME_0900AM, TIME_1700PM);
+    OccupancyMask occupancy = new OccupancyMask(TimeRange.WHOLE_DAY);
+
+    hours.occupyOffHours(occupancy);
+
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(TIME_1400PM, TIME_2200PM, false)),
+        occupancy.freeRanges(1));
+  }
+
+  @Test
+  public void overnightShiftCrossesMidnight() {
+    WorkingHours hours = WorkingHours.of(0, TIME_2200PM, TIME_0600AM);
+    OccupancyMask occupancy = new OccupancyMask(TimeRange.days(0, 2));
+
+    hours.occupyOffHours(occupancy);
+
+    // The shift from the day before the window runs until 6:00 on the first day.
+    Assert.assertEquals(Arrays.asList(
+        TimeRange.fromStartEnd(0, TIME_0600AM, false),
+        TimeRange.fromStartEnd(TIME_2200PM, TimeRange.day(1).start() + TIME_0600AM, false),
+        TimeRange.fromStartEnd(TimeRange.day(1).start() + TIME_2200PM, TimeRange.day(2).start(),
+            false)),
+        occupancy.freeRanges(1));
+  }
+
+  @Test
+  public void equalProfilesAreShared() {
+    WorkingHoursDirectory directory = new WorkingHoursDirectory();
+    directory.set(PERSON_A, WorkingHours.of(0, TIME_0900AM, TIME_1700PM));
+    directory.set(PERSON_B, WorkingHours.of(0, TIME_0900AM, TIME_1700PM));
+
+    Assert.assertSame(directory.get(PERSON_A), directory.get(PERSON_B));
+    Assert.assertTrue(directory.remove(PERSON_A));
+    Assert.assertNull(directory.get(PERSON_A));
+    Assert.assertFalse(directory.remove(PERSON_A));
+  }
+
+  @Test
+  public void directoryCombinesAttendeesHours() {
+    WorkingHoursDirectory directory = new WorkingHoursDirectory();
+    directory.set(PERSON_A, WorkingHours.of(0, TIME_0900AM, TIME_1700PM));
+    directory.set(PERSON_B, WorkingHours.of(OFFSET_NEW_YORK, TIME_0900AM, TIME_1700PM));
+    OccupancyMask occupancy = new OccupancyMask(TimeRange.WHOLE_DAY);
+
+    directory.occupyOffHours(Arrays.asList(PERSON_A, PERSON_B, "Nobody"), occupancy);
+
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(TIME_1400PM, TIME_1700PM, false)),
+        occupancy.freeRanges(1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void offsetOutOfRange() {
+    WorkingHours.of(15 * 60, TIME_0900AM, TIME_1700PM);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void emptyShift() {
+    WorkingHours.of(0, TIME_0900AM, TIME_0900AM);
+  }
+}